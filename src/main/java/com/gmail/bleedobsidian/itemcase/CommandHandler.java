@@ -20,6 +20,7 @@ import com.gmail.bleedobsidian.itemcase.commands.CreateCommand;
 import com.gmail.bleedobsidian.itemcase.commands.ModifyCommand;
 import com.gmail.bleedobsidian.itemcase.commands.DestroyCommand;
 import com.gmail.bleedobsidian.itemcase.commands.OrderCommand;
+import com.gmail.bleedobsidian.itemcase.commands.ReloadCommand;
 import com.gmail.bleedobsidian.itemcase.commands.StorageCommand;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -65,6 +66,9 @@ public final class CommandHandler implements CommandExecutor {
             case "storage":
                 new StorageCommand().execute(sender, label, args);
                 break;
+            case "reload":
+                new ReloadCommand().execute(sender, label, args);
+                break;
             default:
                 this.showHelp(sender, label);
                 break;
@@ -81,17 +85,12 @@ public final class CommandHandler implements CommandExecutor {
      */
     private void showHelp(CommandSender sender, String label) {
         
-        // Get translator.
-        LanguageTranslator translator = ItemCaseCore.instance.getTranslator();
-        
-        // Set placeholder to blank.
-        translator.setPlaceholder("%COMMAND%", "");
-        
-        // Set label placeholder.
-        translator.setPlaceholder("%LABEL%", label);
+        // Set command placeholder to blank and set label placeholder.
+        Placeholders placeholders = Placeholders.of("%COMMAND%", "")
+                .with("%LABEL%", label);
         
         // Set placeholder.
-        String command = "/" + label + " [create/order/destroy/modify/storage]";
+        String command = "/" + label + " [create/order/destroy/modify/storage/reload]";
         
         // Check if sender is a player or console.
         if(sender instanceof Player) {
@@ -102,14 +101,11 @@ public final class CommandHandler implements CommandExecutor {
             // Get chat logger.
             ChatLogger logger = ItemCaseCore.instance.getChatLogger();
             
-            // Send message to player.
-            logger.message(player, "command.itemcase-help");
-            
-            // Send message to player.
-            logger.message(player, command);
-            
-            // Send message to player.
-            logger.message(player, "command.command-help");
+            // Send help screen to player.
+            logger.screen(player, "help:" + label, (batch) -> batch
+                    .add("command.itemcase-help", placeholders)
+                    .add(command)
+                    .add("command.command-help", placeholders));
             
         } else {
             
@@ -117,13 +113,13 @@ public final class CommandHandler implements CommandExecutor {
             GenericLogger logger = ItemCaseCore.instance.getGenericLogger();
             
             // Send console message.
-            logger.message(sender, "command.itemcase-help");
+            logger.message(sender, "command.itemcase-help", placeholders);
             
             // Send console message.
             logger.message(sender, command);
             
             // Send console message.
-            logger.message(sender, "command.command-help");
+            logger.message(sender, "command.command-help", placeholders);
         }
     }
 }
@@ -14,10 +14,12 @@
  */
 package com.gmail.bleedobsidian.itemcase;
 
+import com.gmail.bleedobsidian.itemcase.configurations.SnapshotFile;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import org.bukkit.configuration.file.FileConfiguration;
@@ -189,8 +191,13 @@ public class ConfigurationFile {
         // Create reference to output file.
         File outputFile = new File(plugin.getDataFolder(), this.name);
         
-        // Attempt to save file.
-        this.file.save(outputFile);
+        // Serialize file.
+        byte[] contents = this.file.saveToString()
+                .getBytes(StandardCharsets.UTF_8);
+        
+        // Attempt to save file, replacing the old file atomically.
+        SnapshotFile.write(outputFile, 0, 0,
+                output -> output.write(contents));
     }
     
     /**
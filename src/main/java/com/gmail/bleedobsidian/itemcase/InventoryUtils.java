@@ -14,6 +14,7 @@
  */
 package com.gmail.bleedobsidian.itemcase;
 
+import java.util.Collection;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 
@@ -55,4 +56,53 @@ public final class InventoryUtils {
         return stock;
     }
     
+    /**
+     * Copy the contents of the given Inventory, so that later changes to the
+     * Inventory are not seen in the copy.
+     * 
+     * @param inventory Inventory.
+     * @return Copy of contents.
+     */
+    public static ItemStack[] copy(Inventory inventory) {
+        
+        // Get contents.
+        ItemStack[] contents = inventory.getContents();
+        
+        // For every itemstack.
+        for(int i = 0; i < contents.length; i++) {
+            
+            // If content is null, skip.
+            if(contents[i] == null)
+                continue;
+            
+            // Copy itemstack.
+            contents[i] = contents[i].clone();
+        }
+        
+        // Return copy.
+        return contents;
+    }
+    
+    /**
+     * Sum the amounts of the given ItemStacks.
+     * 
+     * @param itemstacks ItemStacks.
+     * @return Total amount.
+     */
+    public static int sum(Collection<ItemStack> itemstacks) {
+        
+        // Define total.
+        int total = 0;
+        
+        // For every itemstack.
+        for(ItemStack itemstack : itemstacks) {
+            
+            // Add amount to total.
+            total += itemstack.getAmount();
+        }
+        
+        // Return total.
+        return total;
+    }
+    
 }
@@ -20,10 +20,15 @@ import com.gmail.bleedobsidian.itemcase.loggers.GenericLogger;
 import com.gmail.bleedobsidian.itemcase.loggers.ChatLogger;
 import com.gmail.bleedobsidian.itemcase.Itemcase.ItemcaseListener;
 import com.gmail.bleedobsidian.itemcase.configurations.ConfigFile;
+import com.gmail.bleedobsidian.itemcase.configurations.ConfigFile.Settings;
+import com.gmail.bleedobsidian.itemcase.configurations.FileWatcher;
 import com.gmail.bleedobsidian.itemcase.managers.ItemcaseManager;
 import com.gmail.bleedobsidian.itemcase.managers.OrderManager;
+import com.gmail.bleedobsidian.itemcase.managers.SettlementManager;
 import com.sk89q.worldguard.bukkit.WorldGuardPlugin;
 import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import net.milkbowl.vault.economy.Economy;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.RegisteredServiceProvider;
@@ -93,10 +98,20 @@ public final class ItemCaseCore extends JavaPlugin {
      */
     private Economy economyProvider;
     
+    /**
+     * Settles order payments with the economy provider, if there is one.
+     */
+    private SettlementManager settlementManager;
+    
     /**
      * WorldGuard.
      */
     private WorldGuardPlugin worldGuard;
+    
+    /**
+     * Watcher that reloads changed files, or null if not watching.
+     */
+    private FileWatcher fileWatcher;
 
     @Override
     public void onEnable() {
@@ -132,14 +147,19 @@ public final class ItemCaseCore extends JavaPlugin {
         // Log.
         this.consoleLogger.info("console.info.config-loaded");
         
-        // Set language placeholder and log.
-        this.translator.setPlaceholder("%LANGUAGE%",
-                this.configFile.getLocale().name());
-        this.consoleLogger.info("console.info.locale");
+        // Log language.
+        this.consoleLogger.info("console.info.locale", Placeholders.of(
+                "%LANGUAGE%", this.configFile.getLocale().name()));
+        
+        // Keep each player's language up to date.
+        this.translator.registerListener();
         
         // Initialize ItemcaseManager.
         this.itemcaseManager.registerListener();
         
+        // Cancel orders of players that leave or stop using them.
+        this.orderManager.registerListener();
+        
         // Register ItemcaseListener.
         this.getServer().getPluginManager().registerEvents(
                 new ItemcaseListener(), this);
@@ -150,21 +170,40 @@ public final class ItemCaseCore extends JavaPlugin {
         // Set command executor.
         this.getCommand("itemcase").setExecutor(new CommandHandler());
         
+        // Watch files if enabled.
+        this.updateFileWatcher();
+        
         // Attempt to load Vault.
         this.loadVault();
         
         // Attempt to load WorldGuard.
         this.loadWorldGuard();
         
-        // Set version placeholder and log.
-        this.translator.setPlaceholder("%VERSION%",
-                this.getDescription().getVersion());
-        this.consoleLogger.info("console.info.enabled");
+        // Log version.
+        this.consoleLogger.info("console.info.enabled", Placeholders.of(
+                "%VERSION%", this.getDescription().getVersion()));
     }
     
     @Override
     public void onDisable() {
         
+        // If watching files.
+        if(this.fileWatcher != null) {
+            
+            // Stop watching.
+            this.fileWatcher.stop();
+            this.fileWatcher = null;
+        }
+        
+        // If settling payments.
+        if(this.settlementManager != null) {
+            
+            // Finish settlements in progress, so their goods are handed over
+            // or given back before itemcases are saved.
+            this.settlementManager.close();
+            this.settlementManager = null;
+        }
+        
         // Unload all itemcases.
         this.itemcaseManager.unloadItemcases();
         
@@ -172,6 +211,113 @@ public final class ItemCaseCore extends JavaPlugin {
         this.consoleLogger.info("console.info.unloaded");
     }
     
+    /**
+     * Reload the configuration and language files, applying any changes to
+     * the running Itemcases without reloading them. Every file is loaded
+     * before anything is applied, so if any file fails to load the previous
+     * contents of all of them are kept.
+     * 
+     * @return If every file was reloaded successfully.
+     */
+    public boolean reload() {
+        
+        // Keep current settings to compare against.
+        Settings previous = this.configFile.getSettings();
+        
+        // Attempt to reload configuration file.
+        try {
+            
+            // Load configuration file.
+            this.configFile.load(this);
+            
+        } catch (IOException e) {
+            
+            // Display error.
+            this.consoleLogger.severe("Failed to reload configuration file.",
+                    e);
+            
+            // Keep previous settings.
+            return false;
+        }
+        
+        // Get reloaded settings.
+        Settings settings = this.configFile.getSettings();
+        
+        // Attempt to reload translator with given locale.
+        if(!this.translator.load(this, settings.getLocale())) {
+            
+            // Failed to load, so keep previous settings too.
+            this.configFile.restore(previous);
+            return false;
+        }
+        
+        // Apply changes to running itemcases.
+        this.itemcaseManager.applySettings(previous, settings);
+        
+        // Start or stop watching files if changed.
+        this.updateFileWatcher();
+        
+        // Screens must be rendered with the new translations.
+        this.chatLogger.clearScreens();
+        
+        // Log.
+        this.consoleLogger.info("console.info.reloaded");
+        
+        // Successfully reloaded.
+        return true;
+    }
+    
+    /**
+     * Start or stop watching files for changes, as set in the configuration
+     * file.
+     */
+    private void updateFileWatcher() {
+        
+        // If files should not be watched.
+        if(!this.configFile.isWatchingFiles()) {
+            
+            // If watching files.
+            if(this.fileWatcher != null) {
+                
+                // Stop watching.
+                this.fileWatcher.stop();
+                this.fileWatcher = null;
+            }
+            
+            // Exit.
+            return;
+        }
+        
+        // If already watching files.
+        if(this.fileWatcher != null) {
+            
+            // Exit.
+            return;
+        }
+        
+        // Create watcher.
+        FileWatcher watcher = new FileWatcher(this.getDataFolder(),
+                this::reload);
+        
+        // Attempt to start watching.
+        try {
+            
+            // Start.
+            watcher.start();
+            
+        } catch (IOException e) {
+            
+            // Display error.
+            this.consoleLogger.severe("Failed to watch files for changes.", e);
+            
+            // Exit.
+            return;
+        }
+        
+        // Set watcher.
+        this.fileWatcher = watcher;
+    }
+    
     /**
      * Attempt to load Vault.
      */
@@ -207,6 +353,21 @@ public final class ItemCaseCore extends JavaPlugin {
         // Set economy provider.
         this.economyProvider = rsp.getProvider();
         
+        // Settle payments on a worker thread, unless configured not to.
+        Executor worker = Runnable::run;
+        if(this.configFile.isEconomyAsync()) {
+            worker = Executors.newSingleThreadExecutor((runnable) -> {
+                
+                // Create named thread.
+                return new Thread(runnable, "ItemCase Economy");
+            });
+        }
+        
+        // Start settlement manager.
+        this.settlementManager =
+                new SettlementManager(this.economyProvider, worker);
+        this.settlementManager.start();
+        
         // Set true.
         this.hasVault = true;
     }
@@ -310,6 +471,13 @@ public final class ItemCaseCore extends JavaPlugin {
         return this.economyProvider;
     }
     
+    /**
+     * @return SettlementManager, if the server has Vault.
+     */
+    public SettlementManager getSettlementManager() {
+        return this.settlementManager;
+    }
+    
     /**
      * @return WorldGuard.
      */
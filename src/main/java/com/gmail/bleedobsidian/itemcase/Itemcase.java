@@ -15,18 +15,19 @@
 
 package com.gmail.bleedobsidian.itemcase;
 
+import com.gmail.bleedobsidian.itemcase.configurations.ConfigFile.Settings;
+import com.gmail.bleedobsidian.itemcase.managers.DisplayItemRegistry;
 import com.gmail.bleedobsidian.itemcase.managers.ItemcaseManager;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.UUID;
 import org.apache.commons.lang.Validate;
 import org.bukkit.Bukkit;
-import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.OfflinePlayer;
-import org.bukkit.World;
-import org.bukkit.entity.Entity;
+import org.bukkit.entity.HumanEntity;
 import org.bukkit.entity.Item;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -39,24 +40,39 @@ import org.bukkit.event.entity.ItemDespawnEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
-import org.bukkit.metadata.FixedMetadataValue;
-import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.util.Vector;
 
 /**
  * Handler of an Itemcase.
  *
+ * An Itemcase is the holder of its storage inventories, so a storage
+ * inventory leads straight back to its Itemcase.
+ *
  * @author Jesse Prescott (BleedObsidian)
  */
-public final class Itemcase {
+public final class Itemcase implements InventoryHolder {
     
     /**
      * The name of the inventory for Itemcase storage.
      */
     public static final String INVENTORY_NAME = "ItemCase Storage";
     
+    /**
+     * The prefix of the display name given to every display item.
+     */
+    public static final String DISPLAY_NAME_PREFIX =
+            "com.gmail.bleedobsidian.itemcase:";
+    
+    /**
+     * The pickup delay given to every display item. This is the largest delay
+     * the server allows and is treated as infinite, so display items can
+     * never be picked up. It also acts as a cheap marker of display items.
+     */
+    public static final int DISPLAY_PICKUP_DELAY = Short.MAX_VALUE;
+    
     /**
      * Types of Itemcase.
      */
@@ -68,11 +84,13 @@ public final class Itemcase {
     };
     
     /**
-     * Storage types.
+     * Storage types. Virtual storage holds any number of the item as a
+     * quantity rather than in an inventory.
      */
     public static enum StorageType {
         FINITE,
-        INFINITE
+        INFINITE,
+        VIRTUAL
     }
     
     /**
@@ -86,19 +104,19 @@ public final class Itemcase {
     private final Location location;
     
     /**
-     * The chunk that this itemcase is in.
+     * The X coordinate of the chunk that this itemcase is in.
      */
-    private final Chunk chunk;
+    private final int chunkX;
     
     /**
-     * The owner of this itemcase.
+     * The Z coordinate of the chunk that this itemcase is in.
      */
-    private final OfflinePlayer owner;
+    private final int chunkZ;
     
     /**
-     * This itemcase's task.
+     * The owner of this itemcase.
      */
-    private ItemcaseTask task;
+    private final OfflinePlayer owner;
     
     /**
      * The active item that is currently on display.
@@ -120,6 +138,32 @@ public final class Itemcase {
      */
     private Inventory storage;
     
+    /**
+     * The number of items in storage that match the ItemStack, kept up to
+     * date as stock is taken and added. -1 if it needs to be counted.
+     */
+    private int stock = -1;
+    
+    /**
+     * The number of items in virtual storage, not counting any in its view.
+     */
+    private long quantity;
+    
+    /**
+     * An inventory showing part of virtual storage while it is open, or null.
+     */
+    private Inventory view;
+    
+    /**
+     * A copy of the contents of finite storage when it was opened, or null.
+     */
+    private ItemStack[] opened;
+    
+    /**
+     * The quantity of virtual storage when its view was opened.
+     */
+    private long openedQuantity;
+    
     /**
      * The buy price of this itemcase.
      */
@@ -157,11 +201,12 @@ public final class Itemcase {
         // Set location.
         this.location = location;
         
-        // Set the chunk. Accessing the chunk with location.getChunk() when we
-        // need it causes the chunk to load, meaning the chunk appears as always
-        // loaded. Storing it now means we can actually see when it becomes
-        // unloaded.
-        this.chunk = location.getChunk();
+        // Set the chunk coordinates. Accessing the chunk with
+        // location.getChunk() causes the chunk to load, meaning the chunk
+        // appears as always loaded. Storing the coordinates means we can ask
+        // the world if it is loaded without loading it.
+        this.chunkX = location.getBlockX() >> 4;
+        this.chunkZ = location.getBlockZ() >> 4;
         
         // Set owner.
         this.owner = owner;
@@ -172,30 +217,23 @@ public final class Itemcase {
      */
     public void spawnItem()  {
         
-        // Get the world that this itemcase is in.
-        World world = this.location.getWorld();
-        
-        // If task task was previously cancelled or never made.
-        if(this.task == null || this.task.isCancelled()) {
-            
-            // Schedule itemcase task to execute every 200 server 
-            // ticks (10 secs).
-            this.task = new ItemcaseTask(this);
-            this.task.runTaskTimer(ItemCaseCore.instance, 0, 200);
-        }
-        
         // Check if the chunk is currently loaded.
-        if(!world.isChunkLoaded(this.chunk)) {
+        if(!this.isChunkLoaded()) {
             
             // Not loaded, so don't try to spawn display item.
             return;
         }
         
+        // Get display item registry.
+        DisplayItemRegistry registry = 
+                ItemCaseCore.instance.getItemcaseManager().getDisplayItems();
+        
         // If there was a display item previously.
         if(this.displayItem != null) {
             
             // Remove this item.
             this.displayItem.remove();
+            registry.unregister(this.displayItem);
         }
         
         // Get the location to spawn the display item at.
@@ -206,7 +244,7 @@ public final class Itemcase {
         
         // Set display name to random UUID to prevent graphical item stacking.
         ItemMeta metadata = itemStack.getItemMeta();
-        metadata.setDisplayName("com.gmail.bleedobsidian.itemcase:" +
+        metadata.setDisplayName(Itemcase.DISPLAY_NAME_PREFIX +
                 UUID.randomUUID().toString());
         itemStack.setItemMeta(metadata);
         
@@ -214,10 +252,13 @@ public final class Itemcase {
         this.displayItem = this.location.getWorld().dropItem(
                 displayItemSpawnLocation, itemStack);
         
-        // Add custom metadata so we know that this item is a display item and
+        // Register the item so we know that this item is a display item and
         // shouldn't be picked up by players and which itemcase it belongs to.
-        this.displayItem.setMetadata("ItemCase", new FixedMetadataValue(
-                ItemCaseCore.instance, this.location.toVector()));
+        registry.register(this, this.displayItem);
+        
+        // Mark the item as a display item in a way that can be checked
+        // without touching its ItemStack.
+        this.displayItem.setPickupDelay(Itemcase.DISPLAY_PICKUP_DELAY);
         
         // Prevent the item from having a random veloctiy when spawning so that
         // it falls directly down in to the middle of the block.
@@ -229,38 +270,160 @@ public final class Itemcase {
      */
     public void despawnItem() {
         
-        // Cancel running task.
-        this.task.cancel();
+        // If there is no display item, for instance because the chunk was
+        // never loaded.
+        if(this.displayItem == null) {
+            
+            // Exit.
+            return;
+        }
         
         // Remove current display item from world.
         this.displayItem.remove();
+        ItemCaseCore.instance.getItemcaseManager().getDisplayItems()
+                .unregister(this.displayItem);
+        this.displayItem = null;
+    }
+    
+    /**
+     * Check if this itemcase's display item is for some reason dead or has
+     * been moved. This is particularly useful when servers use anti-lag
+     * plugins that forcibly kill entities or a player has somehow caused an
+     * item to move. Called periodically by the
+     * {@link com.gmail.bleedobsidian.itemcase.managers.MaintenanceScheduler}.
+     * 
+     * Duplicate and orphaned display items are cleaned up when their chunk
+     * loads by the
+     * {@link com.gmail.bleedobsidian.itemcase.managers.DisplayItemRegistry}.
+     */
+    public void maintain() {
+        
+        // If chunk is not currently loaded.
+        if(!this.isChunkLoaded()) {
+            
+            // Dont bother checking.
+            return;
+        }
+        
+        // Get the default display item location.
+        Location location = this.location;
+        
+        // Get settings.
+        Settings settings = ItemCaseCore.instance.getConfigFile().getSettings();
+        
+        // Check if this block still exists.
+        if(!settings.getMaterials().contains(location.getBlock().getType())) {
+            
+            // Set to default.
+            location.getBlock().setType(settings.getDefaultMaterial());
+            
+            // Material may have changed between slab and non-slab, so
+            // update the blocks this itemcase protects.
+            ItemCaseCore.instance.getItemcaseManager()
+                    .refreshProtection(this);
+        }
+        
+        // If the display item has for some reason despawned (usually because
+        // of anti-lag plugins) or its chunk has been reloaded without us
+        // noticing.
+        if(this.displayItem == null || !this.displayItem.isValid()) {
+            
+            // Spawn a new item.
+            this.spawnItem();
+        }
+
+        // Get the current location of the display item.
+        double x = this.getDisplayItem().getLocation().getX();
+        double y = this.getDisplayItem().getLocation().getBlockY();
+        double z = this.getDisplayItem().getLocation().getZ();
+        
+        // Get the correct spawn location of the display item.
+        Location displayItemSpawnLocation = 
+                this.getDisplayItemSpawnLocation();
+
+        // Check if the display item has for some reason moved.
+        if(x != displayItemSpawnLocation.getX() ||
+                y != displayItemSpawnLocation.getBlockY() ||
+                z != displayItemSpawnLocation.getZ()) {
+
+            // Move the display item back to where it should be.
+            this.getDisplayItem().teleport(
+                    displayItemSpawnLocation);
+        }
     }
     
     /**
      * Checks if a given item entity is an itemcase display item of any kind.
+     * This is cheap for display items that are currently registered and for
+     * ordinary items, so is safe to call from frequent events.
      * 
      * @param item Item.
      * @return Boolean.
      */
-    private static boolean isItemcaseDisplayItem(Item item) {
-
-        // If item does not have a display name, it can't be a display item.
-        if(!item.getItemStack().getItemMeta().hasDisplayName()) {
+    public static boolean isDisplayItem(Item item) {
+        
+        // If this item is a registered display item.
+        if(ItemCaseCore.instance.getItemcaseManager().getDisplayItems()
+                .getItemcase(item.getUniqueId()) != null) {
+            return true;
+        }
+        
+        // If the item does not carry the display item marker, it can't be a
+        // display item we have spawned.
+        if(item.getPickupDelay() != Itemcase.DISPLAY_PICKUP_DELAY) {
             return false;
         }
+        
+        // The marker could have been set by another plugin, so confirm with
+        // the display name.
+        return Itemcase.isItemcaseDisplayItem(item);
+    }
+    
+    /**
+     * Checks if a given item entity is an itemcase display item of any kind
+     * by its display name. This copies the item's ItemMeta, so prefer
+     * {@link #isDisplayItem(org.bukkit.entity.Item)} on frequent paths.
+     * 
+     * @param item Item.
+     * @return Boolean.
+     */
+    public static boolean isItemcaseDisplayItem(Item item) {
+        
+        // Get itemstack.
+        ItemStack itemStack = item.getItemStack();
+        
+        // If item has no meta, it can't have a display name.
+        if(!itemStack.hasItemMeta()) {
+            return false;
+        }
+        
+        // Get meta.
+        ItemMeta metadata = itemStack.getItemMeta();
 
-        // Attempt to split display name by ':'
-        String[] displayNameParts = 
-                item.getItemStack().getItemMeta().getDisplayName().split(":");
-
-        // If display name does not have exactly two parts, it can't be a
-        // display item.
-        if(displayNameParts.length != 2) {
+        // If item does not have a display name, it can't be a display item.
+        if(!metadata.hasDisplayName()) {
             return false;
         }
 
         // Check if item belongs to us, if it does return true.
-        return displayNameParts[0].equals("com.gmail.bleedobsidian.itemcase");
+        return metadata.getDisplayName().startsWith(
+                Itemcase.DISPLAY_NAME_PREFIX);
+    }
+    
+    /**
+     * Checks if the given material is a slab. Display items sit inside the
+     * top half of slabs, otherwise they sit in the block above.
+     * 
+     * @param type Material.
+     * @return Boolean.
+     */
+    public static boolean isSlab(Material type) {
+        
+        // Return if material is any kind of slab.
+        return type == Material.STEP ||
+                type == Material.STONE_SLAB2 ||
+                type == Material.WOOD_STEP ||
+                type == Material.PURPUR_SLAB;
     }
     
     /**
@@ -277,15 +440,35 @@ public final class Itemcase {
             return;
         }
         
+        // If storage is virtual.
+        if(this.storageType == StorageType.VIRTUAL) {
+            
+            // Take from quantity.
+            this.quantity = Math.max(0, this.quantity - amount);
+            
+            // Save change in stock.
+            ItemCaseCore.instance.getItemcaseManager().saveStock(this);
+            
+            // Exit.
+            return;
+        }
+        
         // Get items.
         ItemStack items = this.itemStack.clone();
         items.setAmount(amount);
         
         // Remove from storage.
-        this.storage.removeItem(items);
+        HashMap<Integer, ItemStack> missing = this.storage.removeItem(items);
+        
+        // If stock is being counted.
+        if(this.stock >= 0) {
+            
+            // Subtract the items that were actually removed.
+            this.stock -= amount - InventoryUtils.sum(missing.values());
+        }
         
-        // Save.
-        ItemCaseCore.instance.getItemcaseManager().saveItemcases(this);
+        // Save change in stock.
+        ItemCaseCore.instance.getItemcaseManager().saveStock(this);
     }
     
      /**
@@ -302,15 +485,35 @@ public final class Itemcase {
             return;
         }
         
+        // If storage is virtual.
+        if(this.storageType == StorageType.VIRTUAL) {
+            
+            // Add to quantity.
+            this.quantity += amount;
+            
+            // Save change in stock.
+            ItemCaseCore.instance.getItemcaseManager().saveStock(this);
+            
+            // Exit.
+            return;
+        }
+        
         // Get items.
         ItemStack items = this.itemStack.clone();
         items.setAmount(amount);
         
         // Add to storage.
-        this.storage.addItem(items);
+        HashMap<Integer, ItemStack> leftover = this.storage.addItem(items);
         
-        // Save.
-        ItemCaseCore.instance.getItemcaseManager().saveItemcases(this);
+        // If stock is being counted.
+        if(this.stock >= 0) {
+            
+            // Add the items that actually fit.
+            this.stock += amount - InventoryUtils.sum(leftover.values());
+        }
+        
+        // Save change in stock.
+        ItemCaseCore.instance.getItemcaseManager().saveStock(this);
     }
     
     /**
@@ -326,17 +529,194 @@ public final class Itemcase {
             return true;
         }
         
+        // If storage is virtual.
+        if(this.storageType == StorageType.VIRTUAL) {
+            
+            // Return if quantity is enough.
+            return this.quantity >= amount;
+        }
+        
         // Return if storage contains enough.
-        return this.storage.containsAtLeast(this.itemStack, amount);
+        return this.getStockLevel() >= amount;
     }
     
     /**
      * @return The amount of stock this itemcase has.
      */
-    public int getStockLevel() {
+    public long getStockLevel() {
+        
+        // If storage is virtual.
+        if(this.storageType == StorageType.VIRTUAL) {
+            
+            // Return quantity.
+            return this.quantity;
+        }
+        
+        // If stock needs counting, or someone has storage open and could be
+        // moving items right now.
+        if(this.stock < 0 || !this.storage.getViewers().isEmpty()) {
+            
+            // Count storage.
+            this.stock = InventoryUtils.count(this.storage, this.itemStack);
+        }
         
         // Return count.
-        return InventoryUtils.count(this.storage, this.itemStack);
+        return this.stock;
+    }
+    
+    /**
+     * Count the storage again after it has been changed by something other
+     * than {@link #takeStock(int)} or {@link #addStock(int)}, such as a
+     * player closing it.
+     */
+    public void syncStock() {
+        
+        // Count storage.
+        this.stock = InventoryUtils.count(this.storage, this.itemStack);
+    }
+    
+    /**
+     * Get the inventory to show a player for this itemcase's storage. Virtual
+     * storage is shown as an inventory holding as much of its quantity as
+     * fits, which is taken out of the quantity until the view is closed.
+     * 
+     * @return Inventory.
+     */
+    public Inventory openStorage() {
+        
+        // If storage is not virtual.
+        if(this.storageType != StorageType.VIRTUAL) {
+            
+            // If nobody has storage open yet.
+            if(this.storage.getViewers().isEmpty()) {
+                
+                // Remember contents, to tell if they change.
+                this.opened = InventoryUtils.copy(this.storage);
+            }
+            
+            // Return storage.
+            return this.storage;
+        }
+        
+        // If view is already open.
+        if(this.view != null) {
+            
+            // Share view.
+            return this.view;
+        }
+        
+        // Remember quantity, to tell if it changes.
+        this.openedQuantity = this.quantity;
+        
+        // Create view.
+        this.view = Bukkit.createInventory(this, 54, Itemcase.INVENTORY_NAME);
+        
+        // Fill as many slots as quantity allows.
+        int size = this.itemStack.getMaxStackSize();
+        for(int slot = 0; slot < 54 && this.quantity > 0; slot++) {
+            
+            // Create stack.
+            ItemStack items = this.itemStack.clone();
+            items.setAmount((int) Math.min(size, this.quantity));
+            
+            // Move from quantity into view.
+            this.view.setItem(slot, items);
+            this.quantity -= items.getAmount();
+        }
+        
+        // Return view.
+        return this.view;
+    }
+    
+    /**
+     * Called when a player closes this itemcase's storage. Finite storage is
+     * counted again. Once the last player closes a virtual storage view, the
+     * items in it are put back into the quantity and anything else is given
+     * to the player.
+     * 
+     * @param player Player that closed storage.
+     * @return If the last player closed storage and its contents changed
+     * while it was open.
+     */
+    public boolean closeStorage(HumanEntity player) {
+        
+        // If storage is finite.
+        if(this.storageType == StorageType.FINITE) {
+            
+            // Recount stock, as items may have been moved.
+            this.syncStock();
+            
+            // If other players are still viewing storage.
+            if(this.storage.getViewers().size() > 1) {
+                
+                // Wait for the last to close.
+                return false;
+            }
+            
+            // Compare contents with when storage was opened.
+            boolean changed = this.opened == null ||
+                    !Arrays.equals(this.opened, this.storage.getContents());
+            
+            // Forget contents.
+            this.opened = null;
+            
+            // Return if changed.
+            return changed;
+        }
+        
+        // If there is no view, or other players are still viewing it.
+        if(this.view == null || this.view.getViewers().size() > 1) {
+            
+            // Exit.
+            return false;
+        }
+        
+        // For every item in view.
+        for(ItemStack content : this.view.getContents()) {
+            
+            // If slot is empty, skip.
+            if(content == null) {
+                continue;
+            }
+            
+            // If item belongs in this storage.
+            if(content.isSimilar(this.itemStack)) {
+                
+                // Put back into quantity.
+                this.quantity += content.getAmount();
+                continue;
+            }
+            
+            // Give back to player, dropping what doesn't fit.
+            for(ItemStack leftover :
+                    player.getInventory().addItem(content).values()) {
+                player.getWorld().dropItem(player.getLocation(), leftover);
+            }
+        }
+        
+        // Forget view.
+        this.view = null;
+        
+        // Return if quantity changed.
+        return this.quantity != this.openedQuantity;
+    }
+    
+    /**
+     * @return The inventory players see for this itemcase's storage, its
+     * virtual storage view if open.
+     */
+    @Override
+    public Inventory getInventory() {
+        
+        // If view is open.
+        if(this.view != null) {
+            
+            // Return view.
+            return this.view;
+        }
+        
+        // Return storage.
+        return this.storage;
     }
     
     /**
@@ -357,6 +737,34 @@ public final class Itemcase {
         return this.location;
     }
 
+    /**
+     * @return The X coordinate of the chunk that this itemcase is in.
+     */
+    public int getChunkX() {
+        
+        // Chunk X.
+        return this.chunkX;
+    }
+    
+    /**
+     * @return The Z coordinate of the chunk that this itemcase is in.
+     */
+    public int getChunkZ() {
+        
+        // Chunk Z.
+        return this.chunkZ;
+    }
+    
+    /**
+     * @return If the chunk that this itemcase is in is loaded.
+     */
+    public boolean isChunkLoaded() {
+        
+        // Ask world without causing the chunk to load.
+        return this.location.getWorld().isChunkLoaded(this.chunkX,
+                this.chunkZ);
+    }
+
     /**
      * @return The owner of this itemcase.
      */
@@ -375,6 +783,15 @@ public final class Itemcase {
         return this.displayItem;
     }
     
+    /**
+     * @param displayItem The current entity instance of the display item.
+     */
+    public void setDisplayItem(Item displayItem) {
+        
+        // Set display item.
+        this.displayItem = displayItem;
+    }
+    
     /**
      * @param type Type.
      */
@@ -394,9 +811,44 @@ public final class Itemcase {
     }
     
     /**
+     * Close this itemcase's storage for every player viewing it, putting the
+     * items in an open virtual storage view back into its quantity.
+     */
+    public void closeStorageViewers() {
+        
+        // Get storage that players may have open.
+        Inventory open = this.view != null ? this.view : this.storage;
+        
+        // If there is storage.
+        if(open != null) {
+            
+            // Close it for every viewer.
+            for(HumanEntity viewer : new ArrayList<>(open.getViewers())) {
+                viewer.closeInventory();
+            }
+        }
+    }
+    
+    /**
+     * Set the storage type, moving stock into the new storage where it can
+     * be. Virtual storage is only made finite if its stock fits.
+     * 
      * @param storageType StorageType.
+     * @return If the storage type was set.
      */
-    public void setStorageType(StorageType storageType) {
+    public boolean setStorageType(StorageType storageType) {
+        
+        // Close storage, so nothing is moved while it changes.
+        this.closeStorageViewers();
+        
+        // If toggling from virtual to finite and stock would not fit.
+        if(this.storageType == StorageType.VIRTUAL &&
+                storageType == StorageType.FINITE &&
+                this.quantity > 54L * this.itemStack.getMaxStackSize()) {
+            
+            // Refuse, rather than lose stock.
+            return false;
+        }
         
         // If toggling from finite to infinite.
         if(this.storageType == StorageType.FINITE &&
@@ -404,11 +856,83 @@ public final class Itemcase {
             
             // Set storage.
             this.storage = 
-                    Bukkit.createInventory(null, 54, Itemcase.INVENTORY_NAME);
+                    Bukkit.createInventory(this, 54, Itemcase.INVENTORY_NAME);
+            
+            // Stock must be counted.
+            this.stock = -1;
+        }
+        
+        // If toggling from finite storage to virtual. A new itemcase being
+        // loaded has no storage yet.
+        if(this.storageType == StorageType.FINITE &&
+                storageType == StorageType.VIRTUAL && this.storage != null) {
+            
+            // Move stock into quantity, leaving anything else in storage.
+            this.quantity = InventoryUtils.count(this.storage, this.itemStack);
+            ItemStack items = this.itemStack.clone();
+            items.setAmount((int) this.quantity);
+            this.storage.removeItem(items);
+        }
+        
+        // If toggling from virtual to anything else.
+        if(this.storageType == StorageType.VIRTUAL &&
+                storageType != StorageType.VIRTUAL) {
+            
+            // Create storage.
+            this.storage = 
+                    Bukkit.createInventory(this, 54, Itemcase.INVENTORY_NAME);
+            
+            // If toggling to finite.
+            if(storageType == StorageType.FINITE) {
+                
+                // Move as much of quantity into storage as fits.
+                int size = this.itemStack.getMaxStackSize();
+                for(int slot = 0; slot < 54 && this.quantity > 0; slot++) {
+                    ItemStack items = this.itemStack.clone();
+                    items.setAmount((int) Math.min(size, this.quantity));
+                    this.storage.setItem(slot, items);
+                    this.quantity -= items.getAmount();
+                }
+            }
+            
+            // Clear quantity.
+            this.quantity = 0;
+            
+            // Stock must be counted.
+            this.stock = -1;
         }
         
         // Set storage type.
         this.storageType= storageType;
+        
+        // Set.
+        return true;
+    }
+    
+    /**
+     * @return The number of items in virtual storage, including any in an
+     * open view.
+     */
+    public long getQuantity() {
+        
+        // If view is not open.
+        if(this.view == null) {
+            
+            // Return quantity.
+            return this.quantity;
+        }
+        
+        // Return quantity plus view.
+        return this.quantity + InventoryUtils.count(this.view, this.itemStack);
+    }
+    
+    /**
+     * @param quantity The number of items in virtual storage.
+     */
+    public void setQuantity(long quantity) {
+        
+        // Set quantity.
+        this.quantity = quantity;
     }
     
     /**
@@ -427,6 +951,9 @@ public final class Itemcase {
         
         // Set inventory.
         this.storage = inventory;
+        
+        // Stock must be counted, as inventory may still be filled.
+        this.stock = -1;
     }
     
     /**
@@ -486,10 +1013,7 @@ public final class Itemcase {
         double relY = 0;
         
         // If block is a slab.
-        if(type == Material.STEP ||
-                type == Material.STONE_SLAB2 ||
-                type == Material.WOOD_STEP ||
-                type == Material.PURPUR_SLAB) {
+        if(Itemcase.isSlab(type)) {
             
             // Set relY.
             relY = 0.6;
@@ -521,7 +1045,7 @@ public final class Itemcase {
         public void onEntityPickupItem(EntityPickupItemEvent event) {
 
             // If this item entity is a display item.
-            if(Itemcase.isItemcaseDisplayItem(event.getItem())) {
+            if(Itemcase.isDisplayItem(event.getItem())) {
                 
                 // Prevent this item from being picked up.
                 event.setCancelled(true);
@@ -532,7 +1056,7 @@ public final class Itemcase {
         public void onItemDespawn(ItemDespawnEvent event) {
 
             // If this item entity is a display item.
-            if(Itemcase.isItemcaseDisplayItem(event.getEntity())) {
+            if(Itemcase.isDisplayItem(event.getEntity())) {
 
                 // Prevent this item from despawning.
                 event.setCancelled(true);
@@ -545,16 +1069,14 @@ public final class Itemcase {
             // Get ItemcaseManager.
             ItemcaseManager itemcaseManager = 
                     ItemCaseCore.instance.getItemcaseManager();
-
-            // For every Itemcase.
-            for(Itemcase itemcase : itemcaseManager.getItemcases()) {
+            
+            // Check if this block was an itemcase, or could be one that is
+            // still loading.
+            if(itemcaseManager.isItemcase(event.getBlock().getLocation()) ||
+                    itemcaseManager.isLoading(event.getBlock().getWorld())) {
                 
-                // Check if this block was an itemcase.
-                if(itemcase.location.equals(event.getBlock().getLocation())) {
-                    
-                    // Cancel the event.
-                    event.setCancelled(true);
-                }
+                // Cancel the event.
+                event.setCancelled(true);
             }
         }
         
@@ -564,34 +1086,13 @@ public final class Itemcase {
             // Get ItemcaseManager.
             ItemcaseManager itemcaseManager = 
                     ItemCaseCore.instance.getItemcaseManager();
-
-            // For every Itemcase.
-            for(Itemcase itemcase : itemcaseManager.getItemcases()) {
-                
-                // Get block type.
-                Material type = itemcase.getLocation().getBlock().getType();
-                
-                // Check if the block placed was on an itemcase.
-                if(itemcase.location.equals(event.getBlock().getLocation())) {
-                    
-                    // Cancel the event.
-                    event.setCancelled(true);
-                }
+            
+            // Check if the block placed was on an itemcase or 1 above a
+            // non-slab itemcase.
+            if(itemcaseManager.isProtected(event.getBlock().getLocation())) {
                 
-                // If not a slab.
-                if(type != Material.STEP &&
-                    type != Material.WOOD_STEP &&
-                    type != Material.STONE_SLAB2 &&
-                    type != Material.PURPUR_SLAB) {
-                    
-                    // Check if the block placed was 1 above an itemcase.
-                    if(itemcase.location.clone().add(0, 1, 0)
-                            .equals(event.getBlock().getLocation())) {
-
-                        // Cancel the event.
-                        event.setCancelled(true);
-                    }
-                }
+                // Cancel the event.
+                event.setCancelled(true);
             }
         }
         
@@ -653,143 +1154,4 @@ public final class Itemcase {
             event.setCancelled(true);
         }
     }
-    
-    /**
-     * A runnable task that is executed every 10 seconds to check if an 
-     * itemcase's display item is for some reason dead or has been moved. This
-     * is particularly useful when servers use anti-lag plugins that forcibly
-     * kill entities or a player has somehow caused an item to move.
-     */
-    public final class ItemcaseTask extends BukkitRunnable {
-        
-        /**
-         * The itemcase that this task is for.
-         */
-        private final Itemcase itemcase;
-        
-        /**
-         * Constructor.
-         * 
-         * @param itemcase The itemcase this task is for.
-         */
-        public ItemcaseTask(Itemcase itemcase) {
-            
-            // Set itemcase.
-            this.itemcase = itemcase;
-        }
-
-        @Override
-        public void run() {
-            
-            // If chunk is not currently loaded.
-            if(!this.itemcase.chunk.isLoaded()) {
-                
-                // Dont bother running this task.
-                return;
-            }
-            
-            // Get the default display item location.
-            Location location = this.itemcase.getLocation();
-            
-            // List of valid materials.
-            ArrayList<Material> materials = 
-                    ItemCaseCore.instance.getConfigFile().getMaterials();
-            
-            // Check if this block still exists.
-            if(!materials.contains(location.getBlock().getType())) {
-                
-                // Set to default.
-                location.getBlock().setType(materials.get(0));
-            }
-            
-            // Get all entites near itemcase. (Uses quite a large area just in
-            // case item is not where it should be).
-            Collection<Entity> entities = location.getWorld().getNearbyEntities(
-                    location, 5f, 5f, 5f);
-            
-            // A counter to count how many itemcase items are nearby.
-            int numberOfItemcaseItems = 0;
-            
-            // Loop through every entity.
-            for(Entity entity : entities) {
-                
-                // If the entity is not an item, skip.
-                if(!(entity instanceof Item)) {
-                    continue;
-                }
-                
-                // Check the entity is an ItemCase display item.
-                if(entity.hasMetadata("ItemCase")) {
-                    
-                    // Get the vector location that belongs to this itemcase 
-                    // item.
-                    Vector entityVector = (Vector) ((FixedMetadataValue) 
-                            entity.getMetadata("ItemCase").get(0)).value();
-                    
-                    // Check that the entity is an item for this itemcase only.
-                    if(entityVector.getBlockX() != 
-                            this.itemcase.location.getBlockX() ||
-                            entityVector.getBlockY() != 
-                            this.itemcase.location.getBlockY() ||
-                            entityVector.getBlockZ() != 
-                            this.itemcase.location.getBlockZ()) {
-                        
-                        // Skip if not.
-                        continue;
-                    }
-                    
-                    // Increment counter.
-                    numberOfItemcaseItems++;
-                    
-                    // If the entity is not the current item we know about, we
-                    // must have a duplicate caused by nms.
-                    if(this.itemcase.getDisplayItem().getUniqueId().compareTo(
-                            entity.getUniqueId()) != 0) {
-                        
-                        // Remove this item.
-                        entity.remove();
-                    } else {
-                        
-                        // If the item on the floor has the same UUID, update 
-                        // the reference just in case it has changed.
-                        this.itemcase.displayItem = (Item) entity;
-                    }
-                    
-                // If the item has no metadata but is some form of display item.
-                } else if(Itemcase.isItemcaseDisplayItem((Item) entity)) {
-                    
-                    // Remove this item as it is probably left over from a
-                    // restart hence no metadata.
-                    entity.remove();
-                }
-            }
-            
-            // If there were no itemcase items nearby.
-            if(numberOfItemcaseItems == 0) {
-                
-                // Spawn a new item as for some reason the item has despawned
-                // (usually because of anti-lag plugins.)
-                this.itemcase.spawnItem();
-            }
-
-            // Get the current location of the display item.
-            double x = this.itemcase.getDisplayItem().getLocation().getX();
-            double y = this.itemcase.getDisplayItem().getLocation().getBlockY();
-            double z = this.itemcase.getDisplayItem().getLocation().getZ();
-            
-            // Get the correct spawn location of the display item.
-            Location displayItemSpawnLocation = 
-                    this.itemcase.getDisplayItemSpawnLocation();
-
-            // Check if the display item has for some reason moved.
-            if(x != displayItemSpawnLocation.getX() ||
-                    y != displayItemSpawnLocation.getBlockY() ||
-                    z != displayItemSpawnLocation.getZ()) {
-
-                // Move the display item back to where it should be.
-                this.itemcase.getDisplayItem().teleport(
-                        displayItemSpawnLocation);
-            }
-        }
-    }
-}
\ No newline at end of file
+}
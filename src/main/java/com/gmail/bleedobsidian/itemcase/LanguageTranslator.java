@@ -15,52 +15,88 @@
 package com.gmail.bleedobsidian.itemcase;
 
 import com.gmail.bleedobsidian.itemcase.configurations.LanguageFile;
+import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
-import java.util.Map.Entry;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerLocaleChangeEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 
 /**
  * Utility class used for communicating in different dialects.
  * 
+ * Every language with a language file is loaded and compiled at once, and
+ * players are sent messages in the language of their client, falling back to
+ * the default language. The language each player resolves to is cached
+ * until their client language changes or they leave.
+ * 
+ * Placeholder values are given with each message rather than held here, so
+ * messages can be translated from any thread.
+ * 
  * @author Jesse Prescott (BleedObsidian).
  */
 public final class LanguageTranslator {
     
     /**
-     * Supported languages.
+     * Languages that have a language file in the jar.
      */
     public static enum Language {
         EN
     };
     
     /**
-     * The language file for the chosen language.
+     * Compiled translations of the default language, keyed by message key.
      */
-    private LanguageFile file;
+    private volatile HashMap<String, MessageTemplate> templates =
+            new HashMap<>();
     
     /**
-     * A hash map of placeholders.
+     * Compiled translations of every loaded language, keyed by uppercase
+     * language code. Keys missing from a language use the default language.
      */
-    private HashMap<String, String> placeholders = new HashMap<>();
+    private volatile HashMap<String, HashMap<String, MessageTemplate>>
+            languages = new HashMap<>();
     
     /**
-     * Load corresponding language file.
+     * The code of the default language.
+     */
+    private volatile String defaultLanguage;
+    
+    /**
+     * The code of the language each player has resolved to, keyed by player
+     * UUID.
+     */
+    private final ConcurrentHashMap<UUID, String> players =
+            new ConcurrentHashMap<>();
+    
+    /**
+     * Load the given default language and every other language that has a
+     * language file. If the default language fails to load, any previously
+     * loaded languages are kept.
      * 
      * @param plugin JavaPlugin.
-     * @param language Language to communicate in.
+     * @param language Default language to communicate in.
      * @return If loading was successful.
      */
     public boolean load(JavaPlugin plugin, Language language) {
         
         // Create language file.
-        this.file = new LanguageFile(language);
+        LanguageFile file = new LanguageFile(language);
         
         // Attempt to load language file.
         try {
             
             // Load language file.
-            this.file.load(plugin);
+            file.load(plugin);
             
         } catch (IOException e) {
             
@@ -72,6 +108,56 @@ public final class LanguageTranslator {
             return false;
         }
         
+        // Compile default translations.
+        HashMap<String, MessageTemplate> templates = file.compile();
+        
+        // Create map of languages.
+        HashMap<String, HashMap<String, MessageTemplate>> languages =
+                new HashMap<>();
+        languages.put(language.name(), templates);
+        
+        // For every other language with a language file.
+        for(String code : this.getLanguageCodes(plugin)) {
+            
+            // If already loaded.
+            if(languages.containsKey(code.toUpperCase(Locale.ROOT))) {
+                continue;
+            }
+            
+            // Create language file.
+            LanguageFile other = new LanguageFile(code);
+            
+            // Attempt to load language file.
+            try {
+                
+                // Load language file.
+                other.load(plugin);
+                
+            } catch (IOException e) {
+                
+                // Log and skip.
+                ItemCaseCore.instance.getConsoleLogger().warning(
+                        "Failed to load language file: " + code);
+                continue;
+            }
+            
+            // Compile translations on top of default translations.
+            HashMap<String, MessageTemplate> translations =
+                    new HashMap<>(templates);
+            translations.putAll(other.compile());
+            
+            // Add language.
+            languages.put(code.toUpperCase(Locale.ROOT), translations);
+        }
+        
+        // Replace previous languages.
+        this.templates = templates;
+        this.languages = languages;
+        this.defaultLanguage = language.name();
+        
+        // Players must resolve their language again.
+        this.players.clear();
+        
         // Successfully loaded.
         return true;
     }
@@ -84,31 +170,70 @@ public final class LanguageTranslator {
      */
     public String getTranslation(String key) {
         
-        // Get raw translation.
-        String translation = this.file.getRawTranslation(key);
+        // Translate without placeholders.
+        return this.getTranslation(key, Placeholders.NONE);
+    }
+    
+    /**
+     * Get translation in the default language with the given placeholder
+     * values filled in.
+     * 
+     * @param key Message key.
+     * @param placeholders Placeholder values.
+     * @return String.
+     */
+    public String getTranslation(String key, Placeholders placeholders) {
         
-        // For every placeholder.
-        for(Entry<String, String> entry : this.placeholders.entrySet()) {
+        // Translate in default language.
+        return this.translate(this.templates, key, placeholders);
+    }
+    
+    /**
+     * Get translation in the given player's language with the given
+     * placeholder values filled in.
+     * 
+     * @param player Player.
+     * @param key Message key.
+     * @param placeholders Placeholder values.
+     * @return String.
+     */
+    public String getTranslation(Player player, String key,
+            Placeholders placeholders) {
+        
+        // Get translations of player's language.
+        HashMap<String, MessageTemplate> templates =
+                this.languages.get(this.getLanguage(player));
+        
+        // If languages have been reloaded since.
+        if(templates == null) {
             
-            // Replace the placeholder with given value if placeholder is
-            // present in string.
-            translation = translation.replace(entry.getKey(), entry.getValue());
+            // Use default language.
+            templates = this.templates;
         }
-       
-        // Return translation.
-        return translation;
+        
+        // Translate in player's language.
+        return this.translate(templates, key, placeholders);
     }
     
     /**
-     * Set the value of a given placeholder.
-     * 
-     * @param placeholder Placeholder.
-     * @param value Value.
+     * @param player Player.
+     * @return The code of the language the given player is sent messages in.
      */
-    public void setPlaceholder(String placeholder, String value) {
+    public String getLanguage(Player player) {
+        
+        // Get cached language of player.
+        String language = this.players.get(player.getUniqueId());
         
-        // Update HashMap.
-        this.placeholders.put(placeholder, value);
+        // If player has not been resolved yet.
+        if(language == null) {
+            
+            // Resolve and cache.
+            language = this.resolve(player.getLocale());
+            this.players.put(player.getUniqueId(), language);
+        }
+        
+        // Return language.
+        return language;
     }
     
     /**
@@ -119,14 +244,158 @@ public final class LanguageTranslator {
      */
     public boolean isKey(String string) {
         
-        // If the file is not loaded yet.
-        if(!this.file.isLoaded()) {
+        // Check if a translation exists for this key, there are none until
+        // the language file is loaded.
+        return this.templates.containsKey(string);
+    }
+    
+    /**
+     * Register the event listener for this class.
+     */
+    public void registerListener() {
+        
+        // Register listener with bukkit.
+        Bukkit.getPluginManager().registerEvents(
+                new LanguageTranslatorListener(), ItemCaseCore.instance);
+    }
+    
+    /**
+     * Translate the given key with the given translations.
+     * 
+     * @param templates Compiled translations.
+     * @param key Message key.
+     * @param placeholders Placeholder values.
+     * @return String.
+     */
+    private String translate(HashMap<String, MessageTemplate> templates,
+            String key, Placeholders placeholders) {
+        
+        // Get compiled translation.
+        MessageTemplate template = templates.get(key);
+        
+        // If there is no such translation.
+        if(template == null) {
             
-            // Return false as we cant do translations yet.
-            return false;
+            // Return key as is.
+            return key;
+        }
+        
+        // Return translation with placeholders filled in.
+        return template.render(placeholders);
+    }
+    
+    /**
+     * Get the language for the given client locale, for example en_us. The
+     * full locale is preferred, then just its language, then the default
+     * language.
+     * 
+     * @param locale Client locale.
+     * @return Language code.
+     */
+    private String resolve(String locale) {
+        
+        // If client has not sent a locale.
+        if(locale == null) {
+            
+            // Use default language.
+            return this.defaultLanguage;
+        }
+        
+        // Get languages.
+        HashMap<String, HashMap<String, MessageTemplate>> languages =
+                this.languages;
+        
+        // Convert to code.
+        String code = locale.toUpperCase(Locale.ROOT);
+        
+        // If full locale has a language.
+        if(languages.containsKey(code)) {
+            return code;
+        }
+        
+        // If locale has a region.
+        if(code.indexOf('_') != -1) {
+            
+            // Remove region.
+            code = code.substring(0, code.indexOf('_'));
+            
+            // If language without region exists.
+            if(languages.containsKey(code)) {
+                return code;
+            }
+        }
+        
+        // Use default language.
+        return this.defaultLanguage;
+    }
+    
+    /**
+     * @param plugin JavaPlugin.
+     * @return The code of every language that has a language file, either in
+     * the jar or in the data folder.
+     */
+    private LinkedHashSet<String> getLanguageCodes(JavaPlugin plugin) {
+        
+        // Create set.
+        LinkedHashSet<String> codes = new LinkedHashSet<>();
+        
+        // For every language in the jar.
+        for(Language language : Language.values()) {
+            
+            // Add code.
+            codes.add(language.name());
         }
         
-        // Check if key exists and return result.
-        return this.file.hasKey(string);
+        // Get files in languages folder.
+        File[] files = new File(plugin.getDataFolder(), "languages")
+                .listFiles();
+        
+        // If there is no languages folder.
+        if(files == null) {
+            
+            // Return languages in jar.
+            return codes;
+        }
+        
+        // For every file.
+        for(File file : files) {
+            
+            // Get name.
+            String name = file.getName();
+            
+            // If file is a language file.
+            if(name.endsWith(".yml")) {
+                
+                // Add code.
+                codes.add(name.substring(0, name.length() - 4));
+            }
+        }
+        
+        // Return codes.
+        return codes;
+    }
+    
+    /**
+     * A bukkit listener for the LanguageTranslator. Used to keep the cached
+     * language of each player up to date.
+     */
+    private final class LanguageTranslatorListener implements Listener {
+        
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onPlayerLocaleChangeEvent(PlayerLocaleChangeEvent event) {
+            
+            // Resolve new locale and cache.
+            LanguageTranslator.this.players.put(
+                    event.getPlayer().getUniqueId(),
+                    LanguageTranslator.this.resolve(event.getLocale()));
+        }
+        
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onPlayerQuitEvent(PlayerQuitEvent event) {
+            
+            // Forget player.
+            LanguageTranslator.this.players.remove(
+                    event.getPlayer().getUniqueId());
+        }
     }
 }
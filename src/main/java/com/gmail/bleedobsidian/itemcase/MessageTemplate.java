@@ -0,0 +1,228 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase;
+
+import java.util.ArrayList;
+
+/**
+ * A translation compiled once into literal segments and placeholder slots, so
+ * that it can be rendered in a single pass no matter how many placeholders
+ * have been set.
+ *
+ * A placeholder is a name of uppercase letters, digits and underscores
+ * between two percent signs, for example %ITEM_NAME%. A placeholder that has
+ * no value is rendered as it was written.
+ *
+ * Templates are immutable and can be rendered from any thread.
+ *
+ * @author Jesse Prescott (BleedObsidian)
+ */
+public final class MessageTemplate {
+
+    /**
+     * A builder per thread, reused for every render.
+     */
+    private static final ThreadLocal<StringBuilder> BUILDER =
+            ThreadLocal.withInitial(StringBuilder::new);
+
+    /**
+     * Literal text and placeholders, in order. Placeholders include their
+     * percent signs.
+     */
+    private final String[] segments;
+
+    /**
+     * If each segment is a placeholder.
+     */
+    private final boolean[] placeholders;
+
+    /**
+     * The length of the literal text, used to size the builder.
+     */
+    private final int length;
+
+    /**
+     * Constructor.
+     *
+     * @param segments Segments.
+     * @param placeholders If each segment is a placeholder.
+     * @param length Length of literal text.
+     */
+    private MessageTemplate(String[] segments, boolean[] placeholders,
+            int length) {
+
+        // Set fields.
+        this.segments = segments;
+        this.placeholders = placeholders;
+        this.length = length;
+    }
+
+    /**
+     * Compile the given translation.
+     *
+     * @param translation Translation.
+     * @return MessageTemplate.
+     */
+    public static MessageTemplate compile(String translation) {
+
+        // Create lists of segments.
+        ArrayList<String> segments = new ArrayList<>();
+        ArrayList<Boolean> placeholders = new ArrayList<>();
+
+        // Start of the current literal segment.
+        int literal = 0;
+
+        // Length of literal text.
+        int length = 0;
+
+        // Find first possible placeholder.
+        int start = translation.indexOf('%');
+
+        // While there is a possible placeholder.
+        while(start != -1) {
+
+            // Find end of placeholder.
+            int end = translation.indexOf('%', start + 1);
+
+            // If there is no end.
+            if(end == -1) {
+                break;
+            }
+
+            // If this is not a placeholder name.
+            if(!MessageTemplate.isName(translation, start + 1, end)) {
+
+                // The closing sign may start the next placeholder.
+                start = end;
+                continue;
+            }
+
+            // If there is literal text before placeholder.
+            if(start > literal) {
+
+                // Add literal.
+                segments.add(translation.substring(literal, start));
+                placeholders.add(false);
+                length += start - literal;
+            }
+
+            // Add placeholder.
+            segments.add(translation.substring(start, end + 1));
+            placeholders.add(true);
+
+            // Continue after placeholder.
+            literal = end + 1;
+            start = translation.indexOf('%', literal);
+        }
+
+        // If there is literal text left.
+        if(literal < translation.length()) {
+
+            // Add literal.
+            segments.add(translation.substring(literal));
+            placeholders.add(false);
+            length += translation.length() - literal;
+        }
+
+        // Convert to arrays.
+        boolean[] flags = new boolean[placeholders.size()];
+        for(int i = 0; i < flags.length; i++) {
+            flags[i] = placeholders.get(i);
+        }
+
+        // Return template.
+        return new MessageTemplate(segments.toArray(new String[0]), flags,
+                length);
+    }
+
+    /**
+     * Render this template with the given placeholder values.
+     *
+     * @param values Placeholder values.
+     * @return Rendered string.
+     */
+    public String render(Placeholders values) {
+
+        // If there is nothing to replace.
+        if(this.segments.length == 1 && !this.placeholders[0]) {
+
+            // Return literal as is.
+            return this.segments[0];
+        }
+
+        // Get this thread's builder.
+        StringBuilder builder = MessageTemplate.BUILDER.get();
+        builder.setLength(0);
+        builder.ensureCapacity(this.length + 16 * this.segments.length);
+
+        // For every segment.
+        for(int i = 0; i < this.segments.length; i++) {
+
+            // Get segment.
+            String segment = this.segments[i];
+
+            // If segment is a placeholder.
+            if(this.placeholders[i]) {
+
+                // Get value.
+                String value = values.get(segment);
+
+                // If value is set.
+                if(value != null) {
+
+                    // Use value instead.
+                    segment = value;
+                }
+            }
+
+            // Append segment.
+            builder.append(segment);
+        }
+
+        // Return rendered string.
+        return builder.toString();
+    }
+
+    /**
+     * @param string String.
+     * @param start Start index, inclusive.
+     * @param end End index, exclusive.
+     * @return If the given part of the string is a valid placeholder name.
+     */
+    private static boolean isName(String string, int start, int end) {
+
+        // If empty.
+        if(start == end) {
+            return false;
+        }
+
+        // For every character.
+        for(int i = start; i < end; i++) {
+
+            // Get character.
+            char character = string.charAt(i);
+
+            // If not an uppercase letter, digit or underscore.
+            if(!(character >= 'A' && character <= 'Z') &&
+                    !(character >= '0' && character <= '9') &&
+                    character != '_') {
+                return false;
+            }
+        }
+
+        // Valid name.
+        return true;
+    }
+}
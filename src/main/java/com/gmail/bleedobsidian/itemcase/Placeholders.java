@@ -0,0 +1,122 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of placeholder values to render a single message with.
+ * Adding a value returns a new set, so a set can be shared between threads
+ * and reused as the base of other messages.
+ *
+ * @author Jesse Prescott (BleedObsidian)
+ */
+public final class Placeholders {
+
+    /**
+     * A set with no values.
+     */
+    public static final Placeholders NONE =
+            new Placeholders(new String[0], new String[0]);
+
+    /**
+     * Placeholders, including percent signs.
+     */
+    private final String[] placeholders;
+
+    /**
+     * The value of each placeholder.
+     */
+    private final String[] values;
+
+    /**
+     * Constructor.
+     *
+     * @param placeholders Placeholders.
+     * @param values Values.
+     */
+    private Placeholders(String[] placeholders, String[] values) {
+
+        // Set fields.
+        this.placeholders = placeholders;
+        this.values = values;
+    }
+
+    /**
+     * @param placeholder Placeholder, including percent signs.
+     * @param value Value.
+     * @return A set with only the given value.
+     */
+    public static Placeholders of(String placeholder, String value) {
+
+        // Return new set.
+        return Placeholders.NONE.with(placeholder, value);
+    }
+
+    /**
+     * @param placeholder Placeholder, including percent signs.
+     * @param value Value.
+     * @return A copy of this set with the given value added, replacing any
+     * previous value of the placeholder.
+     */
+    public Placeholders with(String placeholder, String value) {
+
+        // For every placeholder.
+        for(int i = 0; i < this.placeholders.length; i++) {
+
+            // If placeholder already has a value.
+            if(this.placeholders[i].equals(placeholder)) {
+
+                // Copy values and replace value.
+                String[] values = this.values.clone();
+                values[i] = value;
+
+                // Return new set.
+                return new Placeholders(this.placeholders, values);
+            }
+        }
+
+        // Copy and add placeholder.
+        int length = this.placeholders.length;
+        String[] placeholders = Arrays.copyOf(this.placeholders, length + 1);
+        String[] values = Arrays.copyOf(this.values, length + 1);
+        placeholders[length] = placeholder;
+        values[length] = value;
+
+        // Return new set.
+        return new Placeholders(placeholders, values);
+    }
+
+    /**
+     * @param placeholder Placeholder, including percent signs.
+     * @return The value of the given placeholder, or null if it has none.
+     */
+    public String get(String placeholder) {
+
+        // For every placeholder.
+        for(int i = 0; i < this.placeholders.length; i++) {
+
+            // If found.
+            if(this.placeholders[i].equals(placeholder)) {
+
+                // Return value.
+                return this.values[i];
+            }
+        }
+
+        // No value.
+        return null;
+    }
+}
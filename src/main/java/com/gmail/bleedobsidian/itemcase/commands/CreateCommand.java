@@ -17,9 +17,9 @@ package com.gmail.bleedobsidian.itemcase.commands;
 import com.gmail.bleedobsidian.itemcase.Command;
 import com.gmail.bleedobsidian.itemcase.loggers.ChatLogger;
 import com.gmail.bleedobsidian.itemcase.ItemCaseCore;
-import com.gmail.bleedobsidian.itemcase.LanguageTranslator;
+import com.gmail.bleedobsidian.itemcase.Placeholders;
 import com.sk89q.worldguard.bukkit.WorldGuardPlugin;
-import java.util.ArrayList;
+import java.util.Set;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.command.CommandSender;
@@ -72,7 +72,7 @@ public final class CreateCommand implements Command {
         }
         
         // List of materials that can be used as itemcases.
-        ArrayList<Material> materials =
+        Set<Material> materials =
                 ItemCaseCore.instance.getConfigFile().getMaterials();
         
         // The target location.
@@ -84,6 +84,17 @@ public final class CreateCommand implements Command {
         // Get the players target block.
         target = player.getTargetBlock(null, 5).getLocation();
         
+        // Check if itemcases in this world are still loading.
+        if(ItemCaseCore.instance.getItemcaseManager().isLoading(
+                target.getWorld())) {
+            
+            // Show message.
+            chatLogger.message(player, "command.create.loading");
+            
+            // Exit.
+            return;
+        }
+        
         // Check if itemcase already exists here.
         if(ItemCaseCore.instance.getItemcaseManager().isItemcase(target)) {
             
@@ -166,17 +177,14 @@ public final class CreateCommand implements Command {
         // Get chat logger.
         ChatLogger chatLogger = ItemCaseCore.instance.getChatLogger();
         
-        // Get translator.
-        LanguageTranslator translator = ItemCaseCore.instance.getTranslator();
-        
         // Set placeholder.
-        translator.setPlaceholder("%COMMAND%", "/" + label + " create");
-        
-        // Show command help.
-        chatLogger.message(player, "command.itemcase-help");
+        Placeholders placeholders =
+                Placeholders.of("%COMMAND%", "/" + label + " create");
         
-        // Show specific help.
-        chatLogger.message(player, "command.create.help");
+        // Show command help and specific help.
+        chatLogger.screen(player, "help.create:" + label, (batch) -> batch
+                .add("command.itemcase-help", placeholders)
+                .add("command.create.help"));
         
         // Return.
         return true;
@@ -18,7 +18,7 @@ import com.gmail.bleedobsidian.itemcase.Command;
 import com.gmail.bleedobsidian.itemcase.loggers.ChatLogger;
 import com.gmail.bleedobsidian.itemcase.ItemCaseCore;
 import com.gmail.bleedobsidian.itemcase.Itemcase;
-import com.gmail.bleedobsidian.itemcase.LanguageTranslator;
+import com.gmail.bleedobsidian.itemcase.Placeholders;
 import com.gmail.bleedobsidian.itemcase.managers.ItemcaseManager;
 import org.bukkit.Location;
 import org.bukkit.OfflinePlayer;
@@ -140,17 +140,14 @@ public final class DestroyCommand implements Command {
         // Get chat logger.
         ChatLogger chatLogger = ItemCaseCore.instance.getChatLogger();
         
-        // Get translator.
-        LanguageTranslator translator = ItemCaseCore.instance.getTranslator();
-        
         // Set placeholder.
-        translator.setPlaceholder("%COMMAND%", "/" + label + " destroy");
-        
-        // Show command help.
-        chatLogger.message(player, "command.itemcase-help");
+        Placeholders placeholders =
+                Placeholders.of("%COMMAND%", "/" + label + " destroy");
         
-        // Show specific help.
-        chatLogger.message(player, "command.destroy.help");
+        // Show command help and specific help.
+        chatLogger.screen(player, "help.destroy:" + label, (batch) -> batch
+                .add("command.itemcase-help", placeholders)
+                .add("command.destroy.help"));
         
         return true;
     }
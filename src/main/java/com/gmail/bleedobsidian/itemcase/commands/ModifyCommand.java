@@ -20,12 +20,14 @@ import com.gmail.bleedobsidian.itemcase.ItemCaseCore;
 import com.gmail.bleedobsidian.itemcase.Itemcase;
 import com.gmail.bleedobsidian.itemcase.Itemcase.StorageType;
 import com.gmail.bleedobsidian.itemcase.Itemcase.Type;
-import com.gmail.bleedobsidian.itemcase.LanguageTranslator;
+import com.gmail.bleedobsidian.itemcase.Placeholders;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
 
 /**
  * A command handler for the 'modify' command.
@@ -269,7 +271,7 @@ public final class ModifyCommand implements Command {
             
             // Set storage.
             itemcase.setStorage(Bukkit.createInventory(
-                    null, 54, Itemcase.INVENTORY_NAME));
+                    itemcase, 54, Itemcase.INVENTORY_NAME));
         }
         
         // Save itemcase.
@@ -309,8 +311,16 @@ public final class ModifyCommand implements Command {
             // Finite.
             case "finite":
                 
-                // Set storage type.
-                itemcase.setStorageType(StorageType.FINITE);
+                // Set storage type, unless virtual stock is more than
+                // finite storage can hold.
+                if(!itemcase.setStorageType(StorageType.FINITE)) {
+                    
+                    // Show message.
+                    chatLogger.message(player, "command.modify.too-much-stock");
+                    
+                    // Exit.
+                    return;
+                }
                 
                 // Break.
                 break;
@@ -334,6 +344,32 @@ public final class ModifyCommand implements Command {
                 // Break.
                 break;
                 
+            // Virtual.
+            case "virtual":
+                
+                // If itemcase is already virtual.
+                if(itemcase.getStorageType() == StorageType.VIRTUAL) {
+                    
+                    // Break.
+                    break;
+                }
+                
+                // Get previous storage type.
+                StorageType previous = itemcase.getStorageType();
+                
+                // Set storage type.
+                itemcase.setStorageType(StorageType.VIRTUAL);
+                
+                // If storage was finite.
+                if(previous == StorageType.FINITE) {
+                    
+                    // Give player anything left in storage.
+                    this.giveLeftovers(player, itemcase.getStorage());
+                }
+                
+                // Break.
+                break;
+                
             // Default.
             default:
                 
@@ -351,6 +387,34 @@ public final class ModifyCommand implements Command {
         chatLogger.message(player, "command.modify.success");
     }
     
+    /**
+     * Give a player everything in the given inventory, dropping whatever
+     * doesn't fit at their feet, and clear it.
+     * 
+     * @param player Player.
+     * @param inventory Inventory.
+     */
+    private void giveLeftovers(Player player, Inventory inventory) {
+        
+        // For every item in inventory.
+        for(ItemStack content : inventory.getContents()) {
+            
+            // If slot is empty, skip.
+            if(content == null) {
+                continue;
+            }
+            
+            // Give to player, dropping what doesn't fit.
+            for(ItemStack leftover :
+                    player.getInventory().addItem(content).values()) {
+                player.getWorld().dropItem(player.getLocation(), leftover);
+            }
+        }
+        
+        // Clear inventory.
+        inventory.clear();
+    }
+    
     /**
      * Buy Price flag.
      * 
@@ -526,39 +590,21 @@ public final class ModifyCommand implements Command {
      */
     private void showHelp(Player player, String label) {
         
-        // Get translator.
-        LanguageTranslator translator = ItemCaseCore.instance.getTranslator();
-        
         // Set placeholder.
-        translator.setPlaceholder("%COMMAND%", 
+        Placeholders placeholders = Placeholders.of("%COMMAND%", 
                 "/" + label + " modify [flag] [value]");
             
         // Get chat logger.
         ChatLogger logger = ItemCaseCore.instance.getChatLogger();
 
-        // Send message to player.
-        logger.message(player, "command.itemcase-help");
-
-        // Send message to player.
-        logger.message(player, "command.modify.help");
-
-        // Send flag help.
-        logger.message(player, "[flag] [value]:");
-
-        // Send flag help.
-        logger.message(player, 
-                "   type [showcase/shop_buy/shop_sell/shop_multi]");
-
-        // Send flag help.
-        logger.message(player, 
-                "   storage_type [finite/infinite]");
-
-        // Send flag help.
-        logger.message(player, 
-                "   buy_price [price]");
-
-        // Send flag help.
-        logger.message(player, 
-                "   sell_price [price]");
+        // Send help and flag help to player.
+        logger.screen(player, "help.modify:" + label, (batch) -> batch
+                .add("command.itemcase-help", placeholders)
+                .add("command.modify.help")
+                .add("[flag] [value]:")
+                .add("   type [showcase/shop_buy/shop_sell/shop_multi]")
+                .add("   storage_type [finite/infinite/virtual]")
+                .add("   buy_price [price]")
+                .add("   sell_price [price]"));
     }
 }
@@ -20,12 +20,13 @@ import com.gmail.bleedobsidian.itemcase.ItemCaseCore;
 import com.gmail.bleedobsidian.itemcase.Itemcase;
 import com.gmail.bleedobsidian.itemcase.Itemcase.StorageType;
 import com.gmail.bleedobsidian.itemcase.Itemcase.Type;
-import com.gmail.bleedobsidian.itemcase.LanguageTranslator;
+import com.gmail.bleedobsidian.itemcase.Placeholders;
 import com.gmail.bleedobsidian.itemcase.managers.OrderManager.ItemcaseOrder;
+import com.gmail.bleedobsidian.itemcase.managers.SettlementManager.Result;
 import net.md_5.bungee.api.ChatColor;
 import net.milkbowl.vault.economy.Economy;
-import net.milkbowl.vault.economy.EconomyResponse;
-import net.milkbowl.vault.economy.EconomyResponse.ResponseType;
+import org.bukkit.Location;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
@@ -119,26 +120,16 @@ public final class OrderCommand implements Command {
         // Get chat logger.
         ChatLogger chatLogger = ItemCaseCore.instance.getChatLogger();
         
-        // Get translator.
-        LanguageTranslator translator = ItemCaseCore.instance.getTranslator();
+        // Set placeholders.
+        Placeholders placeholders = Placeholders.of("%COMMAND%", "")
+                .with("%LABEL%", label);
         
-        // Set placeholder.
-        translator.setPlaceholder("%COMMAND%", "");
-        
-        // Show command help.
-        chatLogger.message(player, "command.itemcase-help");
-        
-        // Set placeholder.
-        translator.setPlaceholder("%LABEL%", label);
-        
-        // Show specific help.
-        chatLogger.message(player, "command.order.help-amount");
-        
-        // Show specific help.
-        chatLogger.message(player, "command.order.help-buy");
-        
-        // Show specific help.
-        chatLogger.message(player, "command.order.help-sell");
+        // Show command help and specific help.
+        chatLogger.screen(player, "help.order:" + label, (batch) -> batch
+                .add("command.itemcase-help", placeholders)
+                .add("command.order.help-amount", placeholders)
+                .add("command.order.help-buy", placeholders)
+                .add("command.order.help-sell", placeholders));
     }
     
     /**
@@ -179,8 +170,8 @@ public final class OrderCommand implements Command {
         // Get chat logger.
         ChatLogger chatLogger = ItemCaseCore.instance.getChatLogger();
         
-        // Get translator.
-        LanguageTranslator translator = ItemCaseCore.instance.getTranslator();
+        // Placeholder values.
+        Placeholders placeholders = Placeholders.NONE;
         
         // Check if player has permission.
         if(!player.hasPermission("itemcase.buy")) {
@@ -237,12 +228,13 @@ public final class OrderCommand implements Command {
             }
             
             // Set amount placeholder.
-            translator.setPlaceholder("%AMOUNT%", 
+            placeholders = placeholders.with("%AMOUNT%", 
                     "" + ChatColor.GOLD + itemcase.getStockLevel() +
                             ChatColor.RESET);
 
             // Send message.
-            chatLogger.message(player, "command.order.not-enough-stock");
+            chatLogger.message(player, "command.order.not-enough-stock",
+                    placeholders);
             
             // Exit.
             return;
@@ -290,91 +282,102 @@ public final class OrderCommand implements Command {
         money += ChatColor.RESET;
         
         // Set placeholder.
-        translator.setPlaceholder("%MONEY%", money);
-
-        // If player does not have enough money.
-        if(economyProvider.getBalance(player,
-                player.getWorld().getName()) < total) {
-
-            // Send message.
-            chatLogger.message(player, "command.order.not-enough-money");
+        placeholders = placeholders.with("%MONEY%", money);
 
+        // If player is already settling a payment.
+        if(this.isSettling(player)) {
+            
             // Exit.
             return;
         }
         
-        // Create blank response.
-        EconomyResponse response1 = 
-                new EconomyResponse(0, 0, ResponseType.SUCCESS, null);
-
-        // If itemcase is not infinite.
-        if(itemcase.getStorageType() == StorageType.FINITE) {
-            
-            // Deposit money to owner.
-            response1 = economyProvider.depositPlayer(
-                    order.getItemcase().getOwner(),
-                    player.getWorld().getName(), total);
-        }
-
-        // Withdraw money from player.
-        EconomyResponse response2 = economyProvider.withdrawPlayer(
-                player, player.getWorld().getName(), total);
-
-        // If successful.
-        if(response1.transactionSuccess() && response2.transactionSuccess()) {
-
-            // Give player items.
-            itemstack.setAmount(order.getAmount());
-            player.getInventory().addItem(itemstack);
-
-            // Remove items from storage.
-            itemcase.takeStock(order.getAmount());
-            
-            // Mark order as completed.
-            ItemCaseCore.instance.getOrderManager().completeOrder(player);
+        // Get amount, as the order may change while settling.
+        int amount = order.getAmount();
+        
+        // Reserve stock, so it can't be sold twice while settling.
+        itemcase.takeStock(amount);
+        
+        // Get owner, who is only paid if storage is not infinite.
+        OfflinePlayer owner =
+                itemcase.getStorageType() != StorageType.INFINITE ?
+                itemcase.getOwner() : null;
+        
+        // Placeholder values for when settled.
+        Placeholders settled = placeholders;
+        
+        // Keep itemcase in use until settled.
+        ItemCaseCore.instance.getOrderManager().startSettling(itemcase);
+        
+        // Settle payment from player to owner on worker.
+        ItemCaseCore.instance.getSettlementManager().transfer(
+                player.getUniqueId(), player, owner,
+                player.getWorld().getName(), total, (result) -> 
+                        this.settledBuy(player, itemcase, amount, owner,
+                                settled, result));
+    }
+    
+    /**
+     * Finish buying once the payment has been settled, handing over the
+     * reserved stock or putting it back.
+     * 
+     * @param player Player.
+     * @param itemcase Itemcase.
+     * @param amount Amount bought.
+     * @param owner Owner that was paid, or null.
+     * @param placeholders Placeholder values.
+     * @param result Result of the settlement.
+     */
+    private void settledBuy(Player player, Itemcase itemcase, int amount,
+            OfflinePlayer owner, Placeholders placeholders, Result result) {
+        
+        // Get chat logger.
+        ChatLogger chatLogger = ItemCaseCore.instance.getChatLogger();
+        
+        // Itemcase is no longer in use by this payment.
+        ItemCaseCore.instance.getOrderManager().finishSettling(itemcase);
+        
+        // If payment was not made.
+        if(result != Result.SUCCESS) {
             
-            // Send message.
-            chatLogger.message(player, "command.order.withdrew");
+            // Put reserved stock back.
+            this.restock(itemcase, amount);
             
-            // If owner is online and itemcase is not infinite.
-            if(itemcase.getStorageType() == StorageType.FINITE && 
-                    order.getItemcase().getOwner().isOnline()) {
-                
-                // Get owner.
-                Player owner = order.getItemcase().getOwner().getPlayer();
-                
-                // Set placeholder.
-                translator.setPlaceholder("%PLAYER%", player.getDisplayName());
-                
-                // If item has custom display name.
-                if(itemcase.getItemStack().getItemMeta().hasDisplayName()) {
-
-                    // Set placeholder.
-                    translator.setPlaceholder("%ITEM_NAME%", 
-                            ChatColor.GOLD + 
-                                itemcase.getItemStack().getItemMeta()
-                                .getDisplayName() + ChatColor.RESET);
-                } else {
-
-                    // Set placeholder.
-                    translator.setPlaceholder("%ITEM_NAME%", 
-                            ChatColor.GOLD + 
-                                    itemcase.getItemStack().getType().name()  
-                                    + ChatColor.RESET);
-                }
-                
-                // Set placeholder.
-                translator.setPlaceholder("%AMOUNT%", "" + ChatColor.GOLD + 
-                        order.getAmount() + ChatColor.RESET);
+            // If player could not afford it.
+            if(result == Result.INSUFFICIENT_FUNDS) {
                 
                 // Send message.
-                chatLogger.message(owner, "command.order.bought-from");
+                chatLogger.message(player, "command.order.not-enough-money",
+                        placeholders);
+                
+                // Exit.
+                return;
             }
-        } else {
-
-            // Show message.
-            chatLogger.message(player, "command.order.failed");
-
+            
+            // Report failure.
+            this.failed(player, player, owner, result);
+            
+            // Exit.
+            return;
+        }
+        
+        // Give player items.
+        ItemStack itemstack = itemcase.getItemStack().clone();
+        itemstack.setAmount(amount);
+        this.give(player, itemstack);
+        
+        // Mark order as completed.
+        ItemCaseCore.instance.getOrderManager().completeOrder(player);
+        
+        // Send message.
+        chatLogger.message(player, "command.order.withdrew", placeholders);
+        
+        // If owner was paid and is online.
+        if(owner != null && owner.isOnline()) {
+            
+            // Send message.
+            chatLogger.message(owner.getPlayer(), "command.order.bought-from",
+                    this.ownerPlaceholders(player, itemcase, amount,
+                            placeholders));
         }
     }
     
@@ -390,8 +393,8 @@ public final class OrderCommand implements Command {
         // Get chat logger.
         ChatLogger chatLogger = ItemCaseCore.instance.getChatLogger();
         
-        // Get translator.
-        LanguageTranslator translator = ItemCaseCore.instance.getTranslator();
+        // Placeholder values.
+        Placeholders placeholders = Placeholders.NONE;
         
         // Check if player has permission.
         if(!player.hasPermission("itemcase.sell")) {
@@ -487,95 +490,256 @@ public final class OrderCommand implements Command {
         money += ChatColor.RESET;
         
         // Set placeholder.
-        translator.setPlaceholder("%MONEY%", money);
-
-        // If owner does not have enough money and storage is finite.
-        if(order.getItemcase().getStorageType() == StorageType.FINITE &&
-                (economyProvider.getBalance(order.getItemcase().getOwner(),
-                player.getWorld().getName()) < total)) {
+        placeholders = placeholders.with("%MONEY%", money);
 
+        // If player is already settling a payment.
+        if(this.isSettling(player)) {
+            
+            // Exit.
+            return;
+        }
+        
+        // Get amount, as the order may change while settling.
+        int amount = order.getAmount();
+        
+        // Reserve items, so they can't be sold twice while settling.
+        itemstack.setAmount(amount);
+        player.getInventory().removeItem(itemstack);
+        
+        // Get owner, who only pays if storage is not infinite.
+        OfflinePlayer owner =
+                itemcase.getStorageType() != StorageType.INFINITE ?
+                itemcase.getOwner() : null;
+        
+        // Placeholder values for when settled.
+        Placeholders settled = placeholders;
+        
+        // Keep itemcase in use until settled.
+        ItemCaseCore.instance.getOrderManager().startSettling(itemcase);
+        
+        // Settle payment from owner to player on worker.
+        ItemCaseCore.instance.getSettlementManager().transfer(
+                player.getUniqueId(), owner, player,
+                player.getWorld().getName(), total, (result) -> 
+                        this.settledSell(player, itemcase, itemstack, owner,
+                                settled, result));
+    }
+    
+    /**
+     * Finish selling once the payment has been settled, adding the reserved
+     * items to stock or giving them back.
+     * 
+     * @param player Player.
+     * @param itemcase Itemcase.
+     * @param itemstack Items sold.
+     * @param owner Owner that paid, or null.
+     * @param placeholders Placeholder values.
+     * @param result Result of the settlement.
+     */
+    private void settledSell(Player player, Itemcase itemcase,
+            ItemStack itemstack, OfflinePlayer owner,
+            Placeholders placeholders, Result result) {
+        
+        // Get chat logger.
+        ChatLogger chatLogger = ItemCaseCore.instance.getChatLogger();
+        
+        // Itemcase is no longer in use by this payment.
+        ItemCaseCore.instance.getOrderManager().finishSettling(itemcase);
+        
+        // If payment was not made.
+        if(result != Result.SUCCESS) {
+            
+            // Give reserved items back.
+            this.give(player, itemstack);
+            
+            // If owner could not afford it.
+            if(result == Result.INSUFFICIENT_FUNDS) {
+                
+                // Send message.
+                chatLogger.message(player,
+                        "command.order.owner-not-enough-money");
+                
+                // Exit.
+                return;
+            }
+            
+            // Report failure.
+            this.failed(player, owner, player, result);
+            
+            // Exit.
+            return;
+        }
+        
+        // Add stock to storage.
+        this.restock(itemcase, itemstack.getAmount());
+        
+        // Mark order as completed.
+        ItemCaseCore.instance.getOrderManager().completeOrder(player);
+        
+        // Send message.
+        chatLogger.message(player, "command.order.deposit", placeholders);
+        
+        // If owner paid and is online.
+        if(owner != null && owner.isOnline()) {
+            
             // Send message.
-            chatLogger.message(player, "command.order.owner-not-enough-money");
-
+            chatLogger.message(owner.getPlayer(), "command.order.sold-to",
+                    this.ownerPlaceholders(player, itemcase,
+                            itemstack.getAmount(), placeholders));
+        }
+    }
+    
+    /**
+     * @param player Player.
+     * @return If the given player is settling a payment, in which case they
+     * are told to wait.
+     */
+    private boolean isSettling(Player player) {
+        
+        // If player is not settling.
+        if(!ItemCaseCore.instance.getSettlementManager().isSettling(
+                player.getUniqueId())) {
+            
+            // False.
+            return false;
+        }
+        
+        // Send message.
+        ItemCaseCore.instance.getChatLogger().message(player,
+                "command.order.settling");
+        
+        // True.
+        return true;
+    }
+    
+    /**
+     * Give items to a player, dropping whatever doesn't fit at their feet.
+     * 
+     * @param player Player.
+     * @param itemstack Items.
+     */
+    private void give(Player player, ItemStack itemstack) {
+        
+        // If player has left.
+        if(!player.isOnline()) {
+            
+            // Drop where they left, so the items are not lost.
+            player.getWorld().dropItem(player.getLocation(), itemstack);
+            
             // Exit.
             return;
         }
         
-        // Create blank response.
-        EconomyResponse response1 = 
-                new EconomyResponse(0, 0, ResponseType.SUCCESS, null);
-
-        // If itemcase is not infinite.
-        if(itemcase.getStorageType() == StorageType.FINITE) {
+        // Give items, dropping what doesn't fit.
+        for(ItemStack leftover :
+                player.getInventory().addItem(itemstack).values()) {
+            player.getWorld().dropItem(player.getLocation(), leftover);
+        }
+    }
+    
+    /**
+     * Add stock to the given itemcase, if it is still the itemcase at its
+     * location. Otherwise it has been destroyed or replaced while settling,
+     * so the stock is dropped where it was instead of being added to an
+     * itemcase that is no longer saved.
+     * 
+     * @param itemcase Itemcase.
+     * @param amount Amount.
+     */
+    private void restock(Itemcase itemcase, int amount) {
+        
+        // If storage is infinite, stock is never taken or added.
+        if(itemcase.getStorageType() == StorageType.INFINITE) {
             
-            // Withdraw money from owner.
-            response1 = economyProvider.withdrawPlayer(
-                    order.getItemcase().getOwner(),
-                    player.getWorld().getName(), total);
+            // Exit.
+            return;
         }
         
-        // Deposit money to player.
-        EconomyResponse response2 = economyProvider.depositPlayer(
-                player,
-                player.getWorld().getName(), total);
-
-        // If successful.
-        if(response1.transactionSuccess() && response2.transactionSuccess()) {
-
-            // Remove items from player.
-            itemstack.setAmount(order.getAmount());
-            player.getInventory().removeItem(itemstack);
-
-            // Add stock to storage.
-            itemcase.addStock(order.getAmount());
+        // If itemcase is still the one at its location.
+        if(ItemCaseCore.instance.getItemcaseManager().getItemcase(
+                itemcase.getLocation()) == itemcase) {
             
-            // Mark order as completed.
-            ItemCaseCore.instance.getOrderManager().completeOrder(player);
+            // Add stock.
+            itemcase.addStock(amount);
             
-            // Send message.
-            chatLogger.message(player, "command.order.deposit");
+            // Exit.
+            return;
+        }
+        
+        // Get location above itemcase and the size of a stack.
+        Location location = itemcase.getLocation().clone().add(0.5, 1, 0.5);
+        int stackSize = Math.max(1, itemcase.getItemStack().getMaxStackSize());
+        
+        // Drop stock a stack at a time.
+        while(amount > 0) {
             
-            // If owner is online and itemcase is not infinite.
-            if(itemcase.getStorageType() == StorageType.FINITE && 
-                    order.getItemcase().getOwner().isOnline()) {
-                
-                // Get owner.
-                Player owner = order.getItemcase().getOwner().getPlayer();
-                
-                // Set placeholder.
-                translator.setPlaceholder("%PLAYER%", player.getDisplayName());
-                
-                // If item has custom display name.
-                if(itemcase.getItemStack().getItemMeta().hasDisplayName()) {
-
-                    // Set placeholder.
-                    translator.setPlaceholder("%ITEM_NAME%", 
-                            ChatColor.GOLD + 
-                                itemcase.getItemStack().getItemMeta()
-                                .getDisplayName() + ChatColor.RESET);
-                } else {
-
-                    // Set placeholder.
-                    translator.setPlaceholder("%ITEM_NAME%", 
-                            ChatColor.GOLD + 
-                                    itemcase.getItemStack().getType().name()  
-                                    + ChatColor.RESET);
-                }
-                
-                // Set placeholder.
-                translator.setPlaceholder("%AMOUNT%", "" + ChatColor.GOLD + 
-                        order.getAmount() + ChatColor.RESET);
-                
-                // Send message.
-                chatLogger.message(owner, "command.order.sold-to");
-            }
+            // Create stack.
+            ItemStack stack = itemcase.getItemStack().clone();
+            stack.setAmount(Math.min(amount, stackSize));
             
-        } else {
+            // Drop stack.
+            location.getWorld().dropItem(location, stack);
+            amount -= stack.getAmount();
+        }
+    }
+    
+    /**
+     * Tell a player their payment failed, and log it if money was lost.
+     * 
+     * @param player Player.
+     * @param from Payer, or null.
+     * @param to Payee, or null.
+     * @param result Result of the settlement.
+     */
+    private void failed(Player player, OfflinePlayer from, OfflinePlayer to,
+            Result result) {
+        
+        // Show message.
+        ItemCaseCore.instance.getChatLogger().message(player,
+                "command.order.failed");
+        
+        // If money was taken and could not be given back.
+        if(result == Result.UNRECOVERED) {
+            
+            // Log, so it can be sorted out by hand.
+            ItemCaseCore.instance.getConsoleLogger().severe(
+                    "Payment from " + from.getName() + " to " + to.getName() +
+                    " failed after it was taken, and could not be given " +
+                    "back. It must be refunded by hand.");
+        }
+    }
+    
+    /**
+     * @param player Player that ordered.
+     * @param itemcase Itemcase.
+     * @param amount Amount.
+     * @param placeholders Placeholder values.
+     * @return Placeholder values for the message sent to the owner.
+     */
+    private Placeholders ownerPlaceholders(Player player, Itemcase itemcase,
+            int amount, Placeholders placeholders) {
+        
+        // Set placeholder.
+        placeholders = placeholders.with("%PLAYER%", player.getDisplayName());
+        
+        // If item has custom display name.
+        if(itemcase.getItemStack().getItemMeta().hasDisplayName()) {
 
-            // Show message.
-            chatLogger.message(player, "command.order.failed");
+            // Set placeholder.
+            placeholders = placeholders.with("%ITEM_NAME%", 
+                    ChatColor.GOLD + itemcase.getItemStack().getItemMeta()
+                            .getDisplayName() + ChatColor.RESET);
+        } else {
 
+            // Set placeholder.
+            placeholders = placeholders.with("%ITEM_NAME%", 
+                    ChatColor.GOLD + itemcase.getItemStack().getType().name()
+                            + ChatColor.RESET);
         }
+        
+        // Set placeholder.
+        return placeholders.with("%AMOUNT%",
+                "" + ChatColor.GOLD + amount + ChatColor.RESET);
     }
     
     /**
@@ -633,16 +797,12 @@ public final class OrderCommand implements Command {
         ItemCaseCore.instance.getOrderManager().getOrder(player)
                 .setAmount(amount);
 
-        // Get translator.
-        LanguageTranslator translator = 
-                ItemCaseCore.instance.getTranslator();
-            
         // Set placeholder.
-        translator.setPlaceholder("%AMOUNT%", "" + ChatColor.GOLD + amount +
-                ChatColor.RESET);
+        Placeholders placeholders = Placeholders.of("%AMOUNT%",
+                "" + ChatColor.GOLD + amount + ChatColor.RESET);
         
         // Show message.
-        chatLogger.message(player, "command.order.amount-update");
+        chatLogger.message(player, "command.order.amount-update", placeholders);
         
         // Exit.
         return;
@@ -0,0 +1,156 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase.commands;
+
+import com.gmail.bleedobsidian.itemcase.Command;
+import com.gmail.bleedobsidian.itemcase.ItemCaseCore;
+import com.gmail.bleedobsidian.itemcase.Placeholders;
+import com.gmail.bleedobsidian.itemcase.loggers.ChatLogger;
+import com.gmail.bleedobsidian.itemcase.loggers.GenericLogger;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+/**
+ * A command handler for the 'reload' command.
+ * 
+ * @author Jesse Prescott (BleedObsidian)
+ */
+public final class ReloadCommand implements Command {
+
+    @Override
+    public void execute(CommandSender sender, String label,
+            String[] args) {
+        
+        // Check if sender is asking for help.
+        if(this.isAskingForHelp(sender, label, args)) {
+            
+            // Exit.
+            return;
+        }
+        
+        // Check if sender has permission.
+        if(!sender.hasPermission("itemcase.reload")) {
+            
+            // Send message.
+            this.message(sender, "command.permission");
+            
+            // Exit.
+            return;
+        }
+        
+        // Attempt to reload.
+        if(!ItemCaseCore.instance.reload()) {
+            
+            // Send message.
+            this.message(sender, "command.reload.failed");
+            
+            // Exit.
+            return;
+        }
+        
+        // Send message.
+        this.message(sender, "command.reload.success");
+    }
+    
+    /**
+     * Send the given message to the given sender, in chat if they are a
+     * player.
+     * 
+     * @param sender CommandSender.
+     * @param string Message key or message.
+     */
+    private void message(CommandSender sender, String string) {
+        
+        // Send message without placeholders.
+        this.message(sender, string, Placeholders.NONE);
+    }
+    
+    /**
+     * Send the given message to the given sender with the given placeholder
+     * values filled in, in chat if they are a player.
+     * 
+     * @param sender CommandSender.
+     * @param string Message key or message.
+     * @param placeholders Placeholder values.
+     */
+    private void message(CommandSender sender, String string,
+            Placeholders placeholders) {
+        
+        // Check if sender is a player or console.
+        if(sender instanceof Player) {
+            
+            // Get chat logger.
+            ChatLogger logger = ItemCaseCore.instance.getChatLogger();
+            
+            // Send message to player.
+            logger.message((Player) sender, string, placeholders);
+            
+        } else {
+            
+            // Get generic logger.
+            GenericLogger logger = ItemCaseCore.instance.getGenericLogger();
+            
+            // Send message.
+            logger.message(sender, string, placeholders);
+        }
+    }
+    
+    /**
+     * @return If the command sender is asking for help about this command.
+     */
+    public boolean isAskingForHelp(CommandSender sender, String label,
+            String[] args) {
+        
+        // If args length equals 2.
+        if(args.length != 2) {
+            
+            // False.
+            return false;
+        }
+        
+        // Get argument.
+        String argument = args[1];
+        
+        // If not equal to help.
+        if(!argument.equalsIgnoreCase("help")) {
+            
+            return false;
+        }
+        
+        // Set placeholder.
+        Placeholders placeholders =
+                Placeholders.of("%COMMAND%", "/" + label + " reload");
+        
+        // If sender is a player.
+        if(sender instanceof Player) {
+            
+            // Show command help and specific help.
+            ItemCaseCore.instance.getChatLogger().screen((Player) sender,
+                    "help.reload:" + label, (batch) -> batch
+                    .add("command.itemcase-help", placeholders)
+                    .add("command.reload.help"));
+            
+            return true;
+        }
+        
+        // Show command help.
+        this.message(sender, "command.itemcase-help", placeholders);
+        
+        // Show specific help.
+        this.message(sender, "command.reload.help");
+        
+        return true;
+    }
+}
@@ -20,7 +20,7 @@ import com.gmail.bleedobsidian.itemcase.ItemCaseCore;
 import com.gmail.bleedobsidian.itemcase.Itemcase;
 import com.gmail.bleedobsidian.itemcase.Itemcase.StorageType;
 import com.gmail.bleedobsidian.itemcase.Itemcase.Type;
-import com.gmail.bleedobsidian.itemcase.LanguageTranslator;
+import com.gmail.bleedobsidian.itemcase.Placeholders;
 import org.bukkit.Location;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.command.CommandSender;
@@ -129,7 +129,7 @@ public final class StorageCommand implements Command {
         }
         
         // Open itemcase storage to player.
-        player.openInventory(itemcase.getStorage());
+        player.openInventory(itemcase.openStorage());
     }
     
     /**
@@ -156,17 +156,14 @@ public final class StorageCommand implements Command {
         // Get chat logger.
         ChatLogger chatLogger = ItemCaseCore.instance.getChatLogger();
         
-        // Get translator.
-        LanguageTranslator translator = ItemCaseCore.instance.getTranslator();
-        
         // Set placeholder.
-        translator.setPlaceholder("%COMMAND%", "/" + label + " storage");
-        
-        // Show command help.
-        chatLogger.message(player, "command.itemcase-help");
+        Placeholders placeholders =
+                Placeholders.of("%COMMAND%", "/" + label + " storage");
         
-        // Show specific help.
-        chatLogger.message(player, "command.storage.help");
+        // Show command help and specific help.
+        chatLogger.screen(player, "help.storage:" + label, (batch) -> batch
+                .add("command.itemcase-help", placeholders)
+                .add("command.storage.help"));
         
         // Return.
         return true;
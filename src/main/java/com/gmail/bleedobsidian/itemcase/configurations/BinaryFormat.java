@@ -0,0 +1,781 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase.configurations;
+
+import com.gmail.bleedobsidian.itemcase.Itemcase;
+import com.gmail.bleedobsidian.itemcase.Itemcase.StorageType;
+import com.gmail.bleedobsidian.itemcase.Itemcase.Type;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.UUID;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.World;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.io.BukkitObjectInputStream;
+import org.bukkit.util.io.BukkitObjectOutputStream;
+
+/**
+ * A compact binary format for Itemcase saves.
+ *
+ * A file starts with a header of {@link #MAGIC}, the format version and the
+ * number of records. Each record is prefixed with its length so that it can
+ * be kept as-is until its Itemcase changes. Every ItemStack within a record is
+ * written at the end of it by a single BukkitObjectOutputStream, so the
+ * stream header is only written once per record. Records from versions 1 and
+ * 2, which wrote every ItemStack with its own stream, are upgraded on read.
+ *
+ * @author Jesse Prescott (BleedObsidian)
+ */
+public final class BinaryFormat {
+
+    /**
+     * The first four bytes of every binary itemcase file, "ICWF".
+     */
+    public static final int MAGIC = 0x49435746;
+
+    /**
+     * The current version of this format.
+     */
+    public static final int VERSION = 3;
+
+    /**
+     * This class only has static methods.
+     */
+    private BinaryFormat() {
+    }
+
+    /**
+     * Encode the given Itemcase as a record.
+     *
+     * @param itemcase Itemcase.
+     * @return Record.
+     * @throws IOException
+     */
+    public static byte[] encode(Itemcase itemcase) throws IOException {
+
+        // Create output.
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+
+        // Write block coordinates.
+        output.writeInt(itemcase.getLocation().getBlockX());
+        output.writeInt(itemcase.getLocation().getBlockY());
+        output.writeInt(itemcase.getLocation().getBlockZ());
+
+        // Write type.
+        output.writeUTF(itemcase.getType().name());
+
+        // Write owner.
+        UUID owner = itemcase.getOwner().getUniqueId();
+        output.writeLong(owner.getMostSignificantBits());
+        output.writeLong(owner.getLeastSignificantBits());
+
+        // Items, written together at the end.
+        ArrayList<ItemStack> items = new ArrayList<>();
+        items.add(itemcase.getItemStack());
+
+        // If itemcase is a shop.
+        if(itemcase.getType() != Type.SHOWCASE) {
+
+            // Write storage type.
+            output.writeUTF(itemcase.getStorageType().name());
+
+            // If shop has finite storage.
+            if(itemcase.getStorageType() == StorageType.FINITE) {
+
+                // Write inventory, adding its items.
+                BinaryFormat.writeInventory(output, itemcase.getStorage(),
+                        items);
+            }
+
+            // If shop has virtual storage.
+            if(itemcase.getStorageType() == StorageType.VIRTUAL) {
+
+                // Write quantity.
+                output.writeLong(itemcase.getQuantity());
+            }
+
+            // If this itemcase buys.
+            if(itemcase.getType() == Type.SHOP_BUY ||
+                    itemcase.getType() == Type.SHOP_MULTI) {
+
+                // Write buy price.
+                output.writeDouble(itemcase.getBuyPrice());
+            }
+
+            // If this itemcase sells.
+            if(itemcase.getType() == Type.SHOP_SELL ||
+                    itemcase.getType() == Type.SHOP_MULTI) {
+
+                // Write sell price.
+                output.writeDouble(itemcase.getSellPrice());
+            }
+        }
+
+        // Write items with one stream.
+        output.flush();
+        try(BukkitObjectOutputStream stream =
+                new BukkitObjectOutputStream(bytes)) {
+
+            // For every item.
+            for(ItemStack item : items) {
+
+                // Write item.
+                stream.writeObject(item);
+            }
+        }
+
+        // Return record.
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decode an Itemcase from the given record.
+     *
+     * @param record Record.
+     * @param world The world the Itemcase is in.
+     * @return Itemcase.
+     * @throws IOException
+     */
+    public static Itemcase decode(byte[] record, World world)
+            throws IOException {
+
+        // Create input.
+        DataInputStream input = new DataInputStream(
+                new ByteArrayInputStream(record));
+
+        // Read location.
+        Location location = new Location(world, input.readInt(),
+                input.readInt(), input.readInt());
+
+        // Read type.
+        Type type = Type.valueOf(input.readUTF());
+
+        // Read owner.
+        UUID uuid = new UUID(input.readLong(), input.readLong());
+        OfflinePlayer owner = Bukkit.getOfflinePlayer(uuid);
+
+        // Shop fields, which are read before the items at the end.
+        StorageType storageType = null;
+        int size = 0;
+        String name = null;
+        int[] slots = new int[0];
+        long quantity = 0;
+        double buyPrice = 0;
+        double sellPrice = 0;
+
+        // If itemcase is a shop.
+        if(type != Type.SHOWCASE) {
+
+            // Read storage type.
+            storageType = StorageType.valueOf(input.readUTF());
+
+            // If itemcase has finite storage.
+            if(storageType == StorageType.FINITE) {
+
+                // Read size, name and slots with items.
+                size = input.readInt();
+                name = input.readUTF();
+                slots = new int[input.readInt()];
+                for(int i = 0; i < slots.length; i++) {
+                    slots[i] = input.readInt();
+                }
+            }
+
+            // If itemcase has virtual storage.
+            if(storageType == StorageType.VIRTUAL) {
+
+                // Read quantity.
+                quantity = input.readLong();
+            }
+
+            // If this itemcase buys.
+            if(type == Type.SHOP_BUY || type == Type.SHOP_MULTI) {
+
+                // Read buy price.
+                buyPrice = input.readDouble();
+            }
+
+            // If this itemcase sells.
+            if(type == Type.SHOP_SELL || type == Type.SHOP_MULTI) {
+
+                // Read sell price.
+                sellPrice = input.readDouble();
+            }
+        }
+
+        // Read items from one stream.
+        try(BukkitObjectInputStream items = new BukkitObjectInputStream(
+                input)) {
+
+            // Create itemcase object.
+            Itemcase itemcase = new Itemcase(type,
+                    (ItemStack) items.readObject(), location, owner);
+
+            // If itemcase is not a shop.
+            if(storageType == null) {
+
+                // Return itemcase.
+                return itemcase;
+            }
+
+            // Set storage type.
+            itemcase.setStorageType(storageType);
+
+            // If itemcase has finite storage.
+            if(storageType == StorageType.FINITE) {
+
+                // Create inventory.
+                Inventory inventory =
+                        Bukkit.createInventory(itemcase, size, name);
+
+                // For every slot with an item.
+                for(int slot : slots) {
+
+                    // Read item.
+                    inventory.setItem(slot, (ItemStack) items.readObject());
+                }
+
+                // Set storage.
+                itemcase.setStorage(inventory);
+            }
+
+            // If itemcase has virtual storage.
+            if(storageType == StorageType.VIRTUAL) {
+
+                // Set quantity.
+                itemcase.setQuantity(quantity);
+            }
+
+            // If this itemcase buys.
+            if(type == Type.SHOP_BUY || type == Type.SHOP_MULTI) {
+
+                // Set buy price.
+                itemcase.setBuyPrice(buyPrice);
+            }
+
+            // If this itemcase sells.
+            if(type == Type.SHOP_SELL || type == Type.SHOP_MULTI) {
+
+                // Set sell price.
+                itemcase.setSellPrice(sellPrice);
+            }
+
+            // Return itemcase.
+            return itemcase;
+
+        } catch (ClassNotFoundException e) {
+
+            // Rethrow.
+            throw new IOException("Failed to decode item.", e);
+        }
+    }
+
+    /**
+     * Upgrade the given record of version 1 or 2 to the current version.
+     *
+     * @param record Record.
+     * @return Upgraded record.
+     * @throws IOException
+     */
+    public static byte[] upgrade(byte[] record) throws IOException {
+
+        // Decode and encode again, the world not being needed for either.
+        return BinaryFormat.encode(BinaryFormat.decodeLegacy(record, null));
+    }
+
+    /**
+     * Decode an Itemcase from the given record of version 1 or 2, in which
+     * every ItemStack is a separate blob.
+     *
+     * @param record Record.
+     * @param world The world the Itemcase is in.
+     * @return Itemcase.
+     * @throws IOException
+     */
+    private static Itemcase decodeLegacy(byte[] record, World world)
+            throws IOException {
+
+        // Create input.
+        DataInputStream input = new DataInputStream(
+                new ByteArrayInputStream(record));
+
+        // Read location.
+        Location location = new Location(world, input.readInt(),
+                input.readInt(), input.readInt());
+
+        // Read type.
+        Type type = Type.valueOf(input.readUTF());
+
+        // Read owner.
+        UUID uuid = new UUID(input.readLong(), input.readLong());
+        OfflinePlayer owner = Bukkit.getOfflinePlayer(uuid);
+
+        // Read itemstack.
+        ItemStack itemstack = BinaryFormat.readItem(input);
+
+        // Create itemcase object.
+        Itemcase itemcase = new Itemcase(type, itemstack, location, owner);
+
+        // If itemcase is a shop.
+        if(type != Type.SHOWCASE) {
+
+            // Read storage type.
+            StorageType storageType = StorageType.valueOf(input.readUTF());
+
+            // Set storage type.
+            itemcase.setStorageType(storageType);
+
+            // If itemcase has finite storage.
+            if(storageType == StorageType.FINITE) {
+
+                // Read inventory.
+                itemcase.setStorage(
+                        BinaryFormat.readInventory(input, itemcase));
+            }
+
+            // If itemcase has virtual storage.
+            if(storageType == StorageType.VIRTUAL) {
+
+                // Read quantity.
+                itemcase.setQuantity(input.readLong());
+            }
+
+            // If this itemcase buys.
+            if(type == Type.SHOP_BUY || type == Type.SHOP_MULTI) {
+
+                // Read buy price.
+                itemcase.setBuyPrice(input.readDouble());
+            }
+
+            // If this itemcase sells.
+            if(type == Type.SHOP_SELL || type == Type.SHOP_MULTI) {
+
+                // Read sell price.
+                itemcase.setSellPrice(input.readDouble());
+            }
+        }
+
+        // Return itemcase.
+        return itemcase;
+    }
+
+    /**
+     * Decode only the block coordinates of the Itemcase in the given record.
+     *
+     * @param record Record.
+     * @return Block X, Y and Z coordinates.
+     * @throws IOException
+     */
+    public static int[] decodeCoordinates(byte[] record) throws IOException {
+
+        // Create input.
+        DataInputStream input = new DataInputStream(
+                new ByteArrayInputStream(record));
+
+        // Read block coordinates.
+        return new int[] {input.readInt(), input.readInt(), input.readInt()};
+    }
+
+    /**
+     * Encode the stock of the given Itemcase as a stock record. Like a
+     * record it starts with block coordinates, but then only holds the
+     * quantity, or the amount in each storage slot, so it is much smaller
+     * and quicker to encode.
+     *
+     * @param itemcase Itemcase.
+     * @return Stock record.
+     * @throws IOException
+     */
+    public static byte[] encodeStock(Itemcase itemcase) throws IOException {
+
+        // Create output.
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+
+        // Write block coordinates.
+        output.writeInt(itemcase.getLocation().getBlockX());
+        output.writeInt(itemcase.getLocation().getBlockY());
+        output.writeInt(itemcase.getLocation().getBlockZ());
+
+        // Write storage type.
+        output.writeUTF(itemcase.getStorageType().name());
+
+        // If shop has virtual storage.
+        if(itemcase.getStorageType() == StorageType.VIRTUAL) {
+
+            // Write quantity.
+            output.writeLong(itemcase.getQuantity());
+        }
+
+        // If shop has finite storage.
+        if(itemcase.getStorageType() == StorageType.FINITE) {
+
+            // Get storage.
+            Inventory storage = itemcase.getStorage();
+
+            // Write size.
+            output.writeInt(storage.getSize());
+
+            // For every slot.
+            for(int i = 0; i < storage.getSize(); i++) {
+
+                // Get item.
+                ItemStack item = storage.getItem(i);
+
+                // If slot is empty.
+                if(item == null) {
+
+                    // Write nothing.
+                    output.writeByte(0);
+
+                // If slot holds stock.
+                } else if(item.isSimilar(itemcase.getItemStack())) {
+
+                    // Write amount.
+                    output.writeByte(item.getAmount());
+
+                } else {
+
+                    // Write other item, which is left as saved.
+                    output.writeByte(-1);
+                }
+            }
+        }
+
+        // Return stock record.
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Set the stock of the given Itemcase from the given stock record. Any
+     * slot that held something other than stock is left alone.
+     *
+     * @param stock Stock record.
+     * @param itemcase Itemcase.
+     * @throws IOException
+     */
+    public static void decodeStock(byte[] stock, Itemcase itemcase)
+            throws IOException {
+
+        // Create input.
+        DataInputStream input = new DataInputStream(
+                new ByteArrayInputStream(stock));
+
+        // Skip block coordinates.
+        input.skipBytes(12);
+
+        // If storage type has changed since.
+        if(StorageType.valueOf(input.readUTF()) !=
+                itemcase.getStorageType()) {
+
+            // Stock no longer applies.
+            return;
+        }
+
+        // If shop has virtual storage.
+        if(itemcase.getStorageType() == StorageType.VIRTUAL) {
+
+            // Read quantity.
+            itemcase.setQuantity(input.readLong());
+        }
+
+        // If shop has finite storage.
+        if(itemcase.getStorageType() == StorageType.FINITE) {
+
+            // Get storage.
+            Inventory storage = itemcase.getStorage();
+
+            // Read size.
+            int size = input.readInt();
+
+            // For every slot.
+            for(int i = 0; i < size; i++) {
+
+                // Read amount.
+                int amount = input.readByte();
+
+                // If slot held another item or no longer exists.
+                if(amount < 0 || i >= storage.getSize()) {
+
+                    // Skip.
+                    continue;
+                }
+
+                // Create stock.
+                ItemStack item = null;
+                if(amount > 0) {
+                    item = itemcase.getItemStack().clone();
+                    item.setAmount(amount);
+                }
+
+                // Set slot.
+                storage.setItem(i, item);
+            }
+        }
+    }
+
+    /**
+     * Read every record from the given file.
+     *
+     * @param file File.
+     * @return List of records.
+     * @throws IOException
+     */
+    public static ArrayList<byte[]> read(File file) throws IOException {
+
+        // Open file.
+        try(DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+
+            // Check this is a binary itemcase file.
+            if(input.readInt() != BinaryFormat.MAGIC) {
+                throw new IOException("Not a binary itemcase file: " +
+                        file.getPath());
+            }
+
+            // Read version.
+            int version = input.readInt();
+
+            // Check version is supported.
+            if(version > BinaryFormat.VERSION) {
+                throw new IOException("Unsupported binary itemcase file " +
+                        "version " + version + ": " + file.getPath());
+            }
+
+            // Read number of records.
+            int count = input.readInt();
+
+            // Create list.
+            ArrayList<byte[]> records = new ArrayList<>(count);
+
+            // For every record.
+            for(int i = 0; i < count; i++) {
+
+                // Read record.
+                byte[] record = new byte[input.readInt()];
+                input.readFully(record);
+
+                // Add to list, upgrading it if it is from an older version.
+                records.add(version < BinaryFormat.VERSION ?
+                        BinaryFormat.upgrade(record) : record);
+            }
+
+            // Return records.
+            return records;
+        }
+    }
+
+    /**
+     * Write the given records to the given file.
+     *
+     * @param file File.
+     * @param records Records.
+     * @throws IOException
+     */
+    public static void write(File file, Collection<byte[]> records)
+            throws IOException {
+
+        // Create directories.
+        file.getParentFile().mkdirs();
+
+        // Open file.
+        try(OutputStream output = new BufferedOutputStream(
+                new FileOutputStream(file))) {
+
+            // Write records.
+            BinaryFormat.write(output, records);
+        }
+    }
+
+    /**
+     * Write the given records to the given output, without closing it.
+     *
+     * @param stream Output.
+     * @param records Records.
+     * @throws IOException
+     */
+    public static void write(OutputStream stream, Collection<byte[]> records)
+            throws IOException {
+
+        // Create output.
+        DataOutputStream output = new DataOutputStream(stream);
+
+        // Write header.
+        output.writeInt(BinaryFormat.MAGIC);
+        output.writeInt(BinaryFormat.VERSION);
+        output.writeInt(records.size());
+
+        // For every record.
+        for(byte[] record : records) {
+
+            // Write record.
+            output.writeInt(record.length);
+            output.write(record);
+        }
+
+        // Flush.
+        output.flush();
+    }
+
+    /**
+     * Write the given inventory, except for its items which are added to the
+     * given list to be written at the end of the record.
+     *
+     * @param output Output.
+     * @param inventory Inventory.
+     * @param items List of items to add to.
+     * @throws IOException
+     */
+    private static void writeInventory(DataOutputStream output,
+            Inventory inventory, ArrayList<ItemStack> items)
+            throws IOException {
+
+        // Write size and name.
+        output.writeInt(inventory.getSize());
+        output.writeUTF(inventory.getName());
+
+        // Count content slots with items.
+        int count = 0;
+        for(int i = 0; i < inventory.getSize(); i++) {
+            if(inventory.getItem(i) != null) {
+                count++;
+            }
+        }
+
+        // Write count.
+        output.writeInt(count);
+
+        // Loop through all content slots.
+        for(int i = 0; i < inventory.getSize(); i++) {
+
+            // Check if content slot has any items.
+            if(inventory.getItem(i) != null) {
+
+                // Write slot and add item.
+                output.writeInt(i);
+                items.add(inventory.getItem(i));
+            }
+        }
+    }
+
+    /**
+     * Read an inventory of version 1 or 2.
+     *
+     * @param input Input.
+     * @param holder Holder of the inventory.
+     * @return Inventory.
+     * @throws IOException
+     */
+    private static Inventory readInventory(DataInputStream input,
+            InventoryHolder holder) throws IOException {
+
+        // Read size and name.
+        int size = input.readInt();
+        String name = input.readUTF();
+
+        // Create inventory.
+        Inventory inventory = Bukkit.createInventory(holder, size, name);
+
+        // Read count.
+        int count = input.readInt();
+
+        // For every item.
+        for(int i = 0; i < count; i++) {
+
+            // Read slot and item.
+            int slot = input.readInt();
+            inventory.setItem(slot, BinaryFormat.readItem(input));
+        }
+
+        // Return inventory.
+        return inventory;
+    }
+
+    /**
+     * Encode the given ItemStack as a blob.
+     *
+     * @param itemStack ItemStack.
+     * @return Blob.
+     * @throws IOException
+     */
+    public static byte[] encodeItem(ItemStack itemStack) throws IOException {
+
+        // Encode item.
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(BukkitObjectOutputStream stream =
+                new BukkitObjectOutputStream(bytes)) {
+            stream.writeObject(itemStack);
+        }
+
+        // Return blob.
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decode an ItemStack from the given blob.
+     *
+     * @param blob Blob.
+     * @return ItemStack.
+     * @throws IOException
+     */
+    public static ItemStack decodeItem(byte[] blob) throws IOException {
+
+        // Decode item.
+        try(BukkitObjectInputStream stream = new BukkitObjectInputStream(
+                new ByteArrayInputStream(blob))) {
+            return (ItemStack) stream.readObject();
+
+        } catch (ClassNotFoundException e) {
+
+            // Rethrow.
+            throw new IOException("Failed to decode item.", e);
+        }
+    }
+
+    /**
+     * Read an ItemStack blob of version 1 or 2.
+     *
+     * @param input Input.
+     * @return ItemStack.
+     * @throws IOException
+     */
+    private static ItemStack readItem(DataInputStream input)
+            throws IOException {
+
+        // Read blob.
+        byte[] blob = new byte[input.readInt()];
+        input.readFully(blob);
+
+        // Decode item.
+        return BinaryFormat.decodeItem(blob);
+    }
+}
@@ -15,17 +15,31 @@
 package com.gmail.bleedobsidian.itemcase.configurations;
 
 import com.gmail.bleedobsidian.itemcase.ConfigurationFile;
+import com.gmail.bleedobsidian.itemcase.ItemCaseCore;
 import com.gmail.bleedobsidian.itemcase.LanguageTranslator.Language;
-import java.util.ArrayList;
+import com.gmail.bleedobsidian.itemcase.configurations.ItemcaseStorage.Format;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
 import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.plugin.java.JavaPlugin;
 
 /**
- * The main configuration file for ItemCase. 
+ * The main configuration file for ItemCase. It is parsed once when loaded into
+ * an immutable {@link Settings} snapshot, which is replaced as a whole when
+ * the file is loaded again.
  * 
  * @author Jesse Prescott (BleedObsidian)
  */
 public final class ConfigFile extends ConfigurationFile {
     
+    /**
+     * The settings parsed from this file when it was last loaded.
+     */
+    private volatile Settings settings;
+    
     /**
      * Constructor.
      */
@@ -35,37 +49,496 @@ public final class ConfigFile extends ConfigurationFile {
         super("config.yml");
     }
     
+    /**
+     * Loads this configuration file and parses its settings.
+     * 
+     * @param plugin JavaPlugin.
+     * @throws IOException
+     */
+    @Override
+    public void load(JavaPlugin plugin) throws IOException {
+        
+        // Load file.
+        super.load(plugin);
+        
+        // Attempt to parse settings.
+        try {
+            
+            // Replace settings.
+            this.settings = new Settings(this.file);
+            
+        } catch (IllegalArgumentException e) {
+            
+            // Rethrow.
+            throw new IOException("Invalid configuration file.", e);
+        }
+    }
+    
+    /**
+     * @return The settings parsed from this file when it was last loaded.
+     */
+    public Settings getSettings() {
+        
+        // Return settings.
+        return this.settings;
+    }
+    
+    /**
+     * Restore settings that were parsed by an earlier load, when a reload
+     * is rolled back.
+     * 
+     * @param settings Settings.
+     */
+    public void restore(Settings settings) {
+        
+        // Replace settings.
+        this.settings = settings;
+    }
+    
     /**
      * @return The chosen Language to use.
      */
     public Language getLocale() {
         
-        // Get set locale string.
-        String locale = this.file.getString("Locale");
+        // Return locale.
+        return this.settings.getLocale();
+    }
+    
+    /**
+     * @return A read-only set of materials that can be used as Itemcases.
+     */
+    public Set<Material> getMaterials() {
+        
+        // Return materials.
+        return this.settings.getMaterials();
+    }
+    
+    /**
+     * @return The number of ticks it takes to check every Itemcase's display
+     * item once.
+     */
+    public int getMaintenanceInterval() {
+        
+        // Return interval.
+        return this.settings.getMaintenanceInterval();
+    }
+    
+    /**
+     * @return The most time in milliseconds that may be spent checking
+     * display items in a single tick.
+     */
+    public double getMaintenanceTickBudget() {
+        
+        // Return budget.
+        return this.settings.getMaintenanceTickBudget();
+    }
+    
+    /**
+     * @return If display items should be spawned and maintained only while
+     * their chunk is loaded, driven by chunk load and unload events.
+     */
+    public boolean isChunkDriven() {
         
-        // Convert to uppercase just in case.
-        locale = locale.toUpperCase();
+        // Return mode.
+        return this.settings.isChunkDriven();
+    }
+    
+    /**
+     * @return The number of ticks between writing changed Itemcases to file.
+     */
+    public int getSaveInterval() {
         
-        // Return equivalent language.
-        return Language.valueOf(locale);
+        // Return interval.
+        return this.settings.getSaveInterval();
     }
     
     /**
-     * @return An array list of materials that can be used as Itemcases.
+     * @return The number of previous world files to keep as backups.
      */
-    public ArrayList<Material> getMaterials() {
+    public int getSaveBackups() {
         
-        // Create array list.
-        ArrayList<Material> materials = new ArrayList<>();
+        // Return number of backups.
+        return this.settings.getSaveBackups();
+    }
+    
+    /**
+     * @return The number of minutes between keeping a world file as a backup.
+     */
+    public int getSaveBackupInterval() {
         
-        // Loop through all material IDs in config.
-        this.file.getStringList("Materials").forEach((id) -> {
+        // Return interval.
+        return this.settings.getSaveBackupInterval();
+    }
+    
+    /**
+     * @return If Itemcases should only be created when their chunk loads.
+     */
+    public boolean isLazyLoading() {
+        
+        // Return mode.
+        return this.settings.isLazyLoading();
+    }
+    
+    /**
+     * @return If each world's Itemcases should be saved in one file per
+     * region of 32x32 chunks.
+     */
+    public boolean isRegionFiles() {
+        
+        // Return layout.
+        return this.settings.isRegionFiles();
+    }
+    
+    /**
+     * @return The format to save Itemcases in.
+     */
+    public Format getSaveFormat() {
+        
+        // Return format.
+        return this.settings.getSaveFormat();
+    }
+    
+    /**
+     * @return If the configuration and language files should be reloaded
+     * automatically when they change.
+     */
+    public boolean isWatchingFiles() {
+        
+        // Return mode.
+        return this.settings.isWatchingFiles();
+    }
+    
+    /**
+     * @return The number of ticks an order is kept for after it was last
+     * used.
+     */
+    public int getOrderTimeout() {
+        
+        // Return timeout.
+        return this.settings.getOrderTimeout();
+    }
+    
+    /**
+     * @return If order payments are settled with the economy provider on a
+     * worker thread.
+     */
+    public boolean isEconomyAsync() {
+        
+        // Return mode.
+        return this.settings.isEconomyAsync();
+    }
+    
+    /**
+     * An immutable snapshot of every setting in the configuration file,
+     * parsed once so that frequently read settings cost nothing to get.
+     */
+    public static final class Settings {
+        
+        /**
+         * The chosen Language to use.
+         */
+        private final Language locale;
+        
+        /**
+         * Materials that can be used as Itemcases.
+         */
+        private final Set<Material> materials;
+        
+        /**
+         * The material an Itemcase is reset to if its block is changed.
+         */
+        private final Material defaultMaterial;
+        
+        /**
+         * The number of ticks it takes to check every display item once.
+         */
+        private final int maintenanceInterval;
+        
+        /**
+         * The most time in milliseconds to spend checking display items per
+         * tick.
+         */
+        private final double maintenanceTickBudget;
+        
+        /**
+         * If display items are driven by chunk loading and unloading.
+         */
+        private final boolean chunkDriven;
+        
+        /**
+         * The number of ticks between writing changed Itemcases to file.
+         */
+        private final int saveInterval;
+        
+        /**
+         * The number of previous world files to keep as backups.
+         */
+        private final int saveBackups;
+        
+        /**
+         * The number of minutes between keeping a world file as a backup.
+         */
+        private final int saveBackupInterval;
+        
+        /**
+         * If Itemcases are only created when their chunk loads.
+         */
+        private final boolean lazyLoading;
+        
+        /**
+         * If Itemcases are saved in one file per region.
+         */
+        private final boolean regionFiles;
+        
+        /**
+         * The format to save Itemcases in.
+         */
+        private final Format saveFormat;
+        
+        /**
+         * If files are reloaded automatically when they change.
+         */
+        private final boolean watchingFiles;
+        
+        /**
+         * The number of ticks an order is kept for after it was last used.
+         */
+        private final int orderTimeout;
+        
+        /**
+         * If order payments are settled on a worker thread.
+         */
+        private final boolean economyAsync;
+        
+        /**
+         * Parse settings from the given configuration.
+         * 
+         * @param file Configuration.
+         * @throws IllegalArgumentException If a setting is invalid.
+         */
+        private Settings(ConfigurationSection file) {
+            
+            // Get set locale string, converted to uppercase just in case.
+            this.locale = Language.valueOf(
+                    file.getString("Locale", "").toUpperCase());
+            
+            // Create set of materials.
+            EnumSet<Material> materials = EnumSet.noneOf(Material.class);
+            
+            // The first valid material.
+            Material defaultMaterial = null;
+            
+            // Loop through all material IDs in config.
+            for(String id : file.getStringList("Materials")) {
+                
+                // Get material.
+                Material material = Material.getMaterial(id);
+                
+                // If material doesn't exist.
+                if(material == null) {
+                    
+                    // Log and skip.
+                    ItemCaseCore.instance.getConsoleLogger().warning(
+                            "Unknown material in config: " + id);
+                    continue;
+                }
+                
+                // Add material to set.
+                materials.add(material);
+                
+                // If this is the first material.
+                if(defaultMaterial == null) {
+                    
+                    // Use as default.
+                    defaultMaterial = material;
+                }
+            }
+            
+            // If there are no materials.
+            if(defaultMaterial == null) {
+                throw new IllegalArgumentException("No materials set.");
+            }
+            
+            // Set materials.
+            this.materials = Collections.unmodifiableSet(materials);
+            this.defaultMaterial = defaultMaterial;
             
-            // Add material to list.
-            materials.add(Material.getMaterial(id));
-        });
+            // Get maintenance settings, defaulting to 200 ticks (10 secs),
+            // 2 milliseconds and chunk driven.
+            this.maintenanceInterval = file.getInt("Maintenance.Interval", 200);
+            this.maintenanceTickBudget =
+                    file.getDouble("Maintenance.TickBudget", 2);
+            this.chunkDriven = file.getBoolean("Maintenance.ChunkDriven", true);
+            
+            // Get saving settings, defaulting to 100 ticks (5 secs), 3
+            // backups taken every 30 minutes, eager loading and a single file.
+            this.saveInterval = file.getInt("Saving.Interval", 100);
+            this.saveBackups = Math.max(0, file.getInt("Saving.Backups", 3));
+            this.saveBackupInterval = Math.max(0,
+                    file.getInt("Saving.BackupInterval", 30));
+            this.lazyLoading = file.getBoolean("Saving.LazyLoading", false);
+            this.regionFiles = file.getBoolean("Saving.RegionFiles", false);
+            
+            // Get set format string, defaulting to YAML.
+            this.saveFormat = Format.valueOf(
+                    file.getString("Saving.Format", "YAML").toUpperCase());
+            
+            // Get if files are watched, defaulting to false.
+            this.watchingFiles = file.getBoolean("Reload.Watch", false);
+            
+            // Get order timeout, defaulting to 6000 ticks (5 mins) and at
+            // least one sweep of 20 ticks.
+            this.orderTimeout = Math.max(20,
+                    file.getInt("Orders.Timeout", 6000));
+            
+            // Get if payments are settled on a worker, defaulting to true.
+            this.economyAsync = file.getBoolean("Orders.AsyncEconomy", true);
+        }
+        
+        /**
+         * @return The chosen Language to use.
+         */
+        public Language getLocale() {
+            
+            // Return locale.
+            return this.locale;
+        }
+        
+        /**
+         * @return A read-only set of materials that can be used as
+         * Itemcases.
+         */
+        public Set<Material> getMaterials() {
+            
+            // Return materials.
+            return this.materials;
+        }
+        
+        /**
+         * @return The material an Itemcase is reset to if its block is
+         * changed, the first of the materials.
+         */
+        public Material getDefaultMaterial() {
+            
+            // Return default material.
+            return this.defaultMaterial;
+        }
+        
+        /**
+         * @return The number of ticks it takes to check every Itemcase's
+         * display item once.
+         */
+        public int getMaintenanceInterval() {
+            
+            // Return interval.
+            return this.maintenanceInterval;
+        }
+        
+        /**
+         * @return The most time in milliseconds that may be spent checking
+         * display items in a single tick.
+         */
+        public double getMaintenanceTickBudget() {
+            
+            // Return budget.
+            return this.maintenanceTickBudget;
+        }
+        
+        /**
+         * @return If display items should be spawned and maintained only
+         * while their chunk is loaded.
+         */
+        public boolean isChunkDriven() {
+            
+            // Return mode.
+            return this.chunkDriven;
+        }
         
-        // Return list.
-        return materials;
+        /**
+         * @return The number of ticks between writing changed Itemcases to
+         * file.
+         */
+        public int getSaveInterval() {
+            
+            // Return interval.
+            return this.saveInterval;
+        }
+        
+        /**
+         * @return The number of previous world files to keep as backups.
+         */
+        public int getSaveBackups() {
+            
+            // Return number of backups.
+            return this.saveBackups;
+        }
+        
+        /**
+         * @return The number of minutes between keeping a world file as a
+         * backup.
+         */
+        public int getSaveBackupInterval() {
+            
+            // Return interval.
+            return this.saveBackupInterval;
+        }
+        
+        /**
+         * @return If Itemcases should only be created when their chunk loads.
+         */
+        public boolean isLazyLoading() {
+            
+            // Return mode.
+            return this.lazyLoading;
+        }
+        
+        /**
+         * @return If each world's Itemcases should be saved in one file per
+         * region.
+         */
+        public boolean isRegionFiles() {
+            
+            // Return layout.
+            return this.regionFiles;
+        }
+        
+        /**
+         * @return The format to save Itemcases in.
+         */
+        public Format getSaveFormat() {
+            
+            // Return format.
+            return this.saveFormat;
+        }
+        
+        /**
+         * @return If the configuration and language files should be
+         * reloaded automatically when they change.
+         */
+        public boolean isWatchingFiles() {
+            
+            // Return mode.
+            return this.watchingFiles;
+        }
+        
+        /**
+         * @return The number of ticks an order is kept for after it was last
+         * used.
+         */
+        public int getOrderTimeout() {
+            
+            // Return timeout.
+            return this.orderTimeout;
+        }
+        
+        /**
+         * @return If order payments are settled with the economy provider
+         * on a worker thread.
+         */
+        public boolean isEconomyAsync() {
+            
+            // Return mode.
+            return this.economyAsync;
+        }
     }
 }
@@ -0,0 +1,244 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase.configurations;
+
+import com.gmail.bleedobsidian.itemcase.ItemCaseCore;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.bukkit.Bukkit;
+
+/**
+ * Watches the data folder on a background thread and reloads the
+ * configuration and language files on the main thread when they change.
+ *
+ * Editors often write a file in several steps, so changes are collected for
+ * a short delay and then reloaded once.
+ *
+ * @author Jesse Prescott (BleedObsidian)
+ */
+public final class FileWatcher implements Runnable {
+
+    /**
+     * The number of ticks to wait after a change before reloading.
+     */
+    private static final long DELAY = 20;
+
+    /**
+     * The data folder.
+     */
+    private final Path directory;
+
+    /**
+     * The folder language files are kept in.
+     */
+    private final Path languages;
+
+    /**
+     * Called on the main thread to reload.
+     */
+    private final Runnable reload;
+
+    /**
+     * If a reload has been scheduled but not yet run.
+     */
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    /**
+     * Watch service, or null if not started.
+     */
+    private WatchService service;
+
+    /**
+     * Constructor.
+     *
+     * @param directory The data folder.
+     * @param reload Called on the main thread to reload.
+     */
+    public FileWatcher(File directory, Runnable reload) {
+
+        // Set folders.
+        this.directory = directory.toPath();
+        this.languages = this.directory.resolve("languages");
+
+        // Set reload.
+        this.reload = reload;
+    }
+
+    /**
+     * Start watching on a background thread.
+     *
+     * @throws IOException
+     */
+    public void start() throws IOException {
+
+        // Create watch service.
+        this.service = FileSystems.getDefault().newWatchService();
+
+        // Watch data folder.
+        this.directory.register(this.service,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+
+        // If there is a languages folder.
+        if(this.languages.toFile().isDirectory()) {
+
+            // Watch languages folder.
+            this.watchLanguages();
+        }
+
+        // Create named thread.
+        Thread thread = new Thread(this, "ItemCase File Watcher");
+
+        // Don't prevent the server from stopping.
+        thread.setDaemon(true);
+
+        // Start thread.
+        thread.start();
+    }
+
+    /**
+     * Stop watching.
+     */
+    public void stop() {
+
+        // If not started.
+        if(this.service == null) {
+
+            // Exit.
+            return;
+        }
+
+        // Attempt to close watch service, which ends the thread.
+        try {
+
+            // Close.
+            this.service.close();
+
+        } catch (IOException e) {
+
+            // Nothing more can be done.
+        }
+    }
+
+    @Override
+    public void run() {
+
+        // Until the watch service is closed.
+        while(true) {
+
+            // The next folder with changes.
+            WatchKey key;
+
+            // Attempt to wait for changes.
+            try {
+
+                // Wait.
+                key = this.service.take();
+
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+
+                // Stopped.
+                return;
+            }
+
+            // Get folder.
+            Path folder = (Path) key.watchable();
+
+            // If any change is to a file that is reloaded.
+            boolean changed = false;
+
+            // For every change.
+            for(WatchEvent<?> event : key.pollEvents()) {
+
+                // If events were lost.
+                if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+
+                    // Assume anything could have changed.
+                    changed = true;
+                    continue;
+                }
+
+                // Get file name.
+                String name = ((Path) event.context()).toString();
+
+                // If languages folder has just been created.
+                if(folder.equals(this.directory) &&
+                        name.equals("languages")) {
+
+                    // Attempt to watch languages folder.
+                    try {
+
+                        // Watch.
+                        this.watchLanguages();
+
+                    } catch (IOException e) {
+
+                        // Log.
+                        ItemCaseCore.instance.getConsoleLogger().warning(
+                                "Failed to watch languages folder.");
+                    }
+                }
+
+                // If change is to the config or a language file.
+                if(folder.equals(this.directory) ?
+                        name.equals("config.yml") : name.endsWith(".yml")) {
+
+                    // Reload.
+                    changed = true;
+                }
+            }
+
+            // Keep watching folder.
+            key.reset();
+
+            // If nothing is to be reloaded, or a reload is already scheduled.
+            if(!changed || !this.pending.compareAndSet(false, true)) {
+                continue;
+            }
+
+            // Reload on the main thread once the changes have settled.
+            Bukkit.getScheduler().runTaskLater(ItemCaseCore.instance, () -> {
+
+                // No longer pending.
+                this.pending.set(false);
+
+                // Reload.
+                this.reload.run();
+
+            }, FileWatcher.DELAY);
+        }
+    }
+
+    /**
+     * Start watching the languages folder.
+     *
+     * @throws IOException
+     */
+    private void watchLanguages() throws IOException {
+
+        // Watch languages folder.
+        this.languages.register(this.service,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+}
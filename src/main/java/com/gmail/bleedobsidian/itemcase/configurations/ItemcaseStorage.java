@@ -0,0 +1,191 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase.configurations;
+
+import com.gmail.bleedobsidian.itemcase.Itemcase;
+import java.io.IOException;
+import java.util.ArrayList;
+import org.bukkit.World;
+
+/**
+ * Storage of all Itemcase saves for a specific world.
+ *
+ * Changes are recorded with {@link #saveItemcase(Itemcase)} and
+ * {@link #deleteItemcase(Itemcase)} and only persisted when the storage is
+ * flushed. Flushing is split in two, {@link #flush()} is called on the main
+ * thread and the {@link Flush} it returns may then be written from any
+ * thread.
+ *
+ * @author Jesse Prescott (BleedObsidian)
+ */
+public interface ItemcaseStorage {
+
+    /**
+     * Formats that itemcases can be saved in.
+     */
+    public static enum Format {
+        YAML,
+        BINARY,
+        SQL
+    }
+
+    /**
+     * Changes taken from a storage that are ready to be written.
+     */
+    public static interface Flush {
+
+        /**
+         * Write these changes. Can be called from any thread.
+         *
+         * @throws IOException
+         */
+        public void write() throws IOException;
+    }
+
+    /**
+     * Saved itemcases that must be read from disk before the itemcases of a
+     * chunk can be created.
+     */
+    public static interface Fetch {
+
+        /**
+         * Read these itemcases. Can be called from any thread.
+         */
+        public void read();
+
+        /**
+         * Add the itemcases that were read to the storage. This must be
+         * called on the main thread once {@link #read()} has returned.
+         *
+         * @throws IOException If they could not be read, in which case they
+         * are read again the next time they are fetched.
+         */
+        public void apply() throws IOException;
+    }
+
+    /**
+     * @return The world this storage is for.
+     */
+    public World getWorld();
+
+    /**
+     * Attempts to load all itemcases. This must be safe to call from a worker
+     * thread.
+     *
+     * @return Array list of loaded itemcases.
+     * @throws IOException
+     */
+    public ArrayList<Itemcase> loadItemcases() throws IOException;
+
+    /**
+     * @return If every itemcase has been loaded.
+     */
+    public boolean isLoaded();
+
+    /**
+     * @return If {@link #loadItemcases()} only indexes itemcases, leaving
+     * them to be created by {@link #loadChunk(int, int)} when their chunk
+     * loads.
+     */
+    public boolean isLazy();
+
+    /**
+     * @param chunkX Chunk X coordinate.
+     * @param chunkZ Chunk Z coordinate.
+     * @return If {@link #loadChunk(int, int)} can create the itemcases in the
+     * given chunk without reading from disk.
+     */
+    public boolean isChunkReady(int chunkX, int chunkZ);
+
+    /**
+     * Takes what must be read before the itemcases in the given chunk can be
+     * created, if it isn't ready. This must be called on the main thread.
+     *
+     * @param chunkX Chunk X coordinate.
+     * @param chunkZ Chunk Z coordinate.
+     * @return The itemcases to read, or null if the chunk is ready or they
+     * are already being read.
+     */
+    public Fetch fetchChunk(int chunkX, int chunkZ);
+
+    /**
+     * Create the itemcases in the given chunk, if this storage is lazy and
+     * the chunk is ready. This must be called on the main thread.
+     *
+     * @param chunkX Chunk X coordinate.
+     * @param chunkZ Chunk Z coordinate.
+     * @return Array list of itemcases in chunk.
+     * @throws IOException
+     */
+    public ArrayList<Itemcase> loadChunk(int chunkX, int chunkZ)
+            throws IOException;
+
+    /**
+     * Marks the given Itemcase as changed.
+     *
+     * @param itemcase Itemcase.
+     */
+    public void saveItemcase(Itemcase itemcase);
+
+    /**
+     * Marks the given Itemcase as changed when only its stock has changed,
+     * which may be cheaper to record than {@link #saveItemcase(Itemcase)}.
+     *
+     * @param itemcase Itemcase.
+     */
+    public void saveStock(Itemcase itemcase);
+
+    /**
+     * Marks the given Itemcase as deleted.
+     *
+     * @param itemcase Itemcase.
+     */
+    public void deleteItemcase(Itemcase itemcase);
+
+    /**
+     * @return If there are changes that have not been flushed.
+     */
+    public boolean isDirty();
+
+    /**
+     * Takes every change since the last flush. This must be called on the
+     * main thread.
+     *
+     * @return Changes to be written.
+     * @throws IOException
+     */
+    public Flush flush() throws IOException;
+
+    /**
+     * Make every change recorded so far survive a crash, if this storage
+     * records changes between flushes. This may wait for the disk, so it
+     * should be called from a background thread.
+     *
+     * @throws IOException
+     */
+    public void sync() throws IOException;
+
+    /**
+     * Stop using this storage, once any changes have been flushed.
+     */
+    public void close();
+
+    /**
+     * Delete everything in this storage.
+     *
+     * @throws IOException
+     */
+    public void delete() throws IOException;
+}
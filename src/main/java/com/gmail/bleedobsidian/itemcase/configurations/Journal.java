@@ -0,0 +1,567 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase.configurations;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of changes to Itemcases, written before the changes are
+ * saved to a snapshot so that they survive a crash.
+ *
+ * The journal is split into numbered segments. Once a snapshot containing
+ * every change in a segment has been written, the segment is deleted. Each
+ * entry is checksummed so that an entry that was only partly written when
+ * the server crashed is ignored, along with anything after it.
+ *
+ * Appending hands an entry to the operating system straight away, so it
+ * survives the server crashing. Syncing to disk, which survives the machine
+ * itself crashing, is left to {@link #sync()}, so that every entry appended
+ * in between shares one sync and none of them wait for the disk.
+ *
+ * @author Jesse Prescott (BleedObsidian)
+ */
+public final class Journal {
+
+    /**
+     * Entry operation that saves an Itemcase. Data is a
+     * {@link BinaryFormat} record of version 1 or 2, which must be upgraded.
+     */
+    public static final byte LEGACY_SAVE = 1;
+
+    /**
+     * Entry operation that deletes an Itemcase. Data is its key.
+     */
+    public static final byte DELETE = 2;
+
+    /**
+     * Entry operation that sets the stock of an Itemcase. Data is a
+     * {@link BinaryFormat} stock record.
+     */
+    public static final byte STOCK = 3;
+
+    /**
+     * Entry operation that saves an Itemcase. Data is a
+     * {@link BinaryFormat} record.
+     */
+    public static final byte SAVE = 4;
+
+    /**
+     * The directory segments are kept in.
+     */
+    private final File directory;
+
+    /**
+     * The number of the segment currently being appended to.
+     */
+    private int segment;
+
+    /**
+     * Output of the segment currently being appended to, or null if closed.
+     */
+    private DataOutputStream output;
+
+    /**
+     * The file stream beneath the output, used to sync it to disk.
+     */
+    private FileOutputStream stream;
+
+    /**
+     * If anything has been appended to the current segment since it was last
+     * synced.
+     */
+    private boolean unsynced;
+
+    /**
+     * The file streams of closed segments that have not been synced yet.
+     */
+    private final ArrayList<FileOutputStream> rotated = new ArrayList<>();
+
+    /**
+     * Constructor.
+     *
+     * @param directory The directory to keep segments in.
+     */
+    public Journal(File directory) {
+
+        // Set directory.
+        this.directory = directory;
+    }
+
+    /**
+     * Read every entry in every segment before the one being appended to,
+     * oldest first. Can be called from another thread while appending.
+     *
+     * @return List of entries.
+     * @throws IOException
+     */
+    public ArrayList<Entry> read() throws IOException {
+
+        // Create list.
+        ArrayList<Entry> entries = new ArrayList<>();
+
+        // For every segment before the current one, in order.
+        for(File file : this.getSegments().headMap(this.getOpenSegment(),
+                false).values()) {
+
+            // Read segment.
+            this.read(file, entries);
+        }
+
+        // Return entries.
+        return entries;
+    }
+
+    /**
+     * Start appending to a new segment after any existing segments.
+     *
+     * @throws IOException
+     */
+    public synchronized void open() throws IOException {
+
+        // Get existing segments.
+        TreeMap<Integer, File> segments = this.getSegments();
+
+        // Start after the last segment.
+        this.segment = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+
+        // Open segment.
+        this.openSegment();
+    }
+
+    /**
+     * Append an entry to the current segment. The entry is handed to the
+     * operating system before returning, but only synced to disk by the next
+     * {@link #sync()}.
+     *
+     * @param operation Operation.
+     * @param data Data.
+     * @throws IOException
+     */
+    public synchronized void append(byte operation, byte[] data)
+            throws IOException {
+
+        // If journal is not open.
+        if(this.output == null) {
+
+            // Nothing to append to.
+            return;
+        }
+
+        // Calculate checksum.
+        CRC32 checksum = new CRC32();
+        checksum.update(operation);
+        checksum.update(data);
+
+        // Write entry.
+        this.output.writeByte(operation);
+        this.output.writeInt(data.length);
+        this.output.write(data);
+        this.output.writeInt((int) checksum.getValue());
+
+        // Hand to operating system.
+        this.output.flush();
+
+        // Mark unsynced.
+        this.unsynced = true;
+    }
+
+    /**
+     * Sync every entry appended so far to disk. This waits for the disk, so
+     * it should be called from a background thread.
+     *
+     * @throws IOException
+     */
+    public void sync() throws IOException {
+
+        // Closed segments and current segment to sync.
+        ArrayList<FileOutputStream> closed;
+        FileOutputStream current;
+
+        // Take streams, so that appending carries on while syncing.
+        synchronized(this) {
+
+            // Take closed segments.
+            closed = new ArrayList<>(this.rotated);
+            this.rotated.clear();
+
+            // Take current segment if it has unsynced entries.
+            current = this.unsynced ? this.stream : null;
+            this.unsynced = false;
+        }
+
+        // Sync and close closed segments.
+        IOException failure = Journal.close(closed);
+
+        // If current segment needs syncing.
+        if(current != null) {
+
+            // Attempt to sync current segment.
+            try {
+
+                // Sync.
+                current.getFD().sync();
+
+            } catch (IOException e) {
+
+                // If segment was not closed meanwhile, which syncs it anyway.
+                synchronized(this) {
+                    if(this.stream == current) {
+
+                        // Sync again next time.
+                        this.unsynced = true;
+                        failure = e;
+                    }
+                }
+            }
+        }
+
+        // If anything failed.
+        if(failure != null) {
+
+            // Rethrow.
+            throw failure;
+        }
+    }
+
+    /**
+     * Close the current segment and start appending to a new one. Called when
+     * a snapshot is taken, so that every entry in the closed segment is in
+     * the snapshot.
+     *
+     * @return The number of the closed segment.
+     * @throws IOException
+     */
+    public synchronized int rotate() throws IOException {
+
+        // If journal is not open.
+        if(this.output == null) {
+
+            // Nothing to rotate.
+            return this.segment;
+        }
+
+        // Hand current segment to operating system.
+        this.output.flush();
+
+        // If current segment has unsynced entries.
+        if(this.unsynced) {
+
+            // Leave it to the next sync to close.
+            this.rotated.add(this.stream);
+
+        } else {
+
+            // Close current segment.
+            this.stream.close();
+        }
+
+        // Open next segment.
+        this.segment++;
+        this.openSegment();
+
+        // Return closed segment.
+        return this.segment - 1;
+    }
+
+    /**
+     * Delete every segment up to and including the given segment, once a
+     * snapshot containing their entries has been written. The segment being
+     * appended to is never deleted.
+     *
+     * @param segment Segment number.
+     */
+    public void delete(int segment) {
+
+        // For every segment up to the given segment.
+        for(File file : this.getSegments().headMap(Math.min(segment,
+                this.getOpenSegment() - 1), true).values()) {
+
+            // Delete segment.
+            file.delete();
+        }
+    }
+
+    /**
+     * Stop appending, syncing every entry to disk. The current segment is
+     * deleted if nothing was appended to it.
+     */
+    public synchronized void close() {
+
+        // If journal is not open.
+        if(this.output == null) {
+
+            // Exit.
+            return;
+        }
+
+        // Attempt to hand current segment to operating system.
+        try {
+
+            // Flush segment.
+            this.output.flush();
+
+        } catch (IOException e) {
+
+            // Nothing more can be done.
+        }
+
+        // Sync and close every segment.
+        this.rotated.add(this.stream);
+        Journal.close(this.rotated);
+        this.rotated.clear();
+
+        // Set closed.
+        this.output = null;
+        this.stream = null;
+        this.unsynced = false;
+
+        // Get current segment.
+        File file = this.getSegmentFile();
+
+        // If nothing was appended.
+        if(file.length() == 0) {
+
+            // Delete segment.
+            file.delete();
+        }
+    }
+
+    /**
+     * Sync and close the given segments.
+     *
+     * @param streams File streams of segments.
+     * @return The first failure, or null.
+     */
+    private static IOException close(ArrayList<FileOutputStream> streams) {
+
+        // First failure.
+        IOException failure = null;
+
+        // For every segment.
+        for(FileOutputStream stream : streams) {
+
+            // Attempt to sync and close segment.
+            try(FileOutputStream closing = stream) {
+
+                // Sync.
+                closing.getFD().sync();
+
+            } catch (IOException e) {
+
+                // Remember first failure.
+                if(failure == null) {
+                    failure = e;
+                }
+            }
+        }
+
+        // Return failure.
+        return failure;
+    }
+
+    /**
+     * Open the current segment for appending.
+     *
+     * @throws IOException
+     */
+    private void openSegment() throws IOException {
+
+        // Create directory.
+        this.directory.mkdirs();
+
+        // Open segment.
+        this.stream = new FileOutputStream(this.getSegmentFile(), true);
+        this.output = new DataOutputStream(new BufferedOutputStream(
+                this.stream));
+    }
+
+    /**
+     * @return The number of the segment being appended to, or the largest
+     * number if closed.
+     */
+    private synchronized int getOpenSegment() {
+
+        // Return segment if open.
+        return this.output != null ? this.segment : Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return The file of the current segment.
+     */
+    private File getSegmentFile() {
+
+        // Return file.
+        return new File(this.directory, "journal-" + this.segment + ".log");
+    }
+
+    /**
+     * @return Every segment file, keyed by segment number.
+     */
+    private TreeMap<Integer, File> getSegments() {
+
+        // Create map.
+        TreeMap<Integer, File> segments = new TreeMap<>();
+
+        // Get files in directory.
+        File[] files = this.directory.listFiles();
+
+        // If directory doesn't exist.
+        if(files == null) {
+
+            // No segments.
+            return segments;
+        }
+
+        // For every file.
+        for(File file : files) {
+
+            // Get name.
+            String name = file.getName();
+
+            // If file is not a segment.
+            if(!name.startsWith("journal-") || !name.endsWith(".log")) {
+
+                // Skip.
+                continue;
+            }
+
+            // Attempt to get segment number.
+            try {
+
+                // Add segment.
+                segments.put(Integer.parseInt(name.substring(8,
+                        name.length() - 4)), file);
+
+            } catch (NumberFormatException e) {
+
+                // Not a segment, skip.
+            }
+        }
+
+        // Return segments.
+        return segments;
+    }
+
+    /**
+     * Read every complete entry in the given segment.
+     *
+     * @param file Segment file.
+     * @param entries List to add entries to.
+     * @throws IOException
+     */
+    private void read(File file, ArrayList<Entry> entries)
+            throws IOException {
+
+        // Open segment.
+        try(DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+
+            // Until the end of the segment.
+            while(true) {
+
+                // Read entry.
+                byte operation = input.readByte();
+                int length = input.readInt();
+
+                // If length is impossible, entry is corrupt.
+                if(length < 0 || length > file.length()) {
+                    return;
+                }
+
+                // Read data and checksum.
+                byte[] data = new byte[length];
+                input.readFully(data);
+                int expected = input.readInt();
+
+                // Calculate checksum.
+                CRC32 checksum = new CRC32();
+                checksum.update(operation);
+                checksum.update(data);
+
+                // If entry was only partly written.
+                if((int) checksum.getValue() != expected) {
+
+                    // Ignore the rest of this segment.
+                    return;
+                }
+
+                // Add entry.
+                entries.add(new Entry(operation, data));
+            }
+
+        } catch (EOFException e) {
+
+            // End of segment, or an entry that was only partly written.
+        }
+    }
+
+    /**
+     * An entry in the journal.
+     */
+    public static final class Entry {
+
+        /**
+         * Operation.
+         */
+        private final byte operation;
+
+        /**
+         * Data.
+         */
+        private final byte[] data;
+
+        /**
+         * Constructor.
+         *
+         * @param operation Operation.
+         * @param data Data.
+         */
+        private Entry(byte operation, byte[] data) {
+
+            // Set fields.
+            this.operation = operation;
+            this.data = data;
+        }
+
+        /**
+         * @return Operation.
+         */
+        public byte getOperation() {
+
+            // Return operation.
+            return this.operation;
+        }
+
+        /**
+         * @return Data.
+         */
+        public byte[] getData() {
+
+            // Return data.
+            return this.data;
+        }
+    }
+}
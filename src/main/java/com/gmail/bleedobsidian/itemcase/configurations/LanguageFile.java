@@ -16,14 +16,28 @@ package com.gmail.bleedobsidian.itemcase.configurations;
 
 import com.gmail.bleedobsidian.itemcase.ConfigurationFile;
 import com.gmail.bleedobsidian.itemcase.LanguageTranslator.Language;
+import com.gmail.bleedobsidian.itemcase.MessageTemplate;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
 
 /**
  * A configuration file that holds the translations for a specific dialect.
+ * The file in the jar is used unless a server owner has placed their own copy
+ * in the data folder.
  * 
  * @author Jesse Prescott (BleedObsidian)
  */
 public final class LanguageFile extends ConfigurationFile {
     
+    /**
+     * The code of the language this file is for.
+     */
+    private final String code;
+    
     /**
      * Constructor.
      * 
@@ -31,8 +45,62 @@ public final class LanguageFile extends ConfigurationFile {
      */
     public LanguageFile(Language language) {
         
+        // Use language name as code.
+        this(language.name());
+    }
+    
+    /**
+     * Constructor.
+     * 
+     * @param code The code of the language this file is for, for example EN.
+     */
+    public LanguageFile(String code) {
+        
         // Give config file name and prevent file being copied outside of jar.
-        super("languages/" + language.name() + ".yml", false);
+        super("languages/" + code + ".yml", false);
+        
+        // Set code.
+        this.code = code;
+    }
+    
+    /**
+     * Loads this language file from the given plugin's data folder if it has
+     * been placed there, otherwise from the plugin's jar.
+     * 
+     * @param plugin JavaPlugin.
+     * @throws IOException
+     */
+    @Override
+    public void load(JavaPlugin plugin) throws IOException {
+        
+        // Create file reference.
+        File fileReference = new File(plugin.getDataFolder(),
+                "languages/" + this.code + ".yml");
+        
+        // If there is no copy in the data folder.
+        if(!fileReference.exists()) {
+            
+            // Check the jar has this language, so that a missing language
+            // fails to load rather than loading empty.
+            try(InputStream resource = plugin.getResource(
+                    "languages/" + this.code + ".yml")) {
+                
+                // If the jar does not have this language either.
+                if(resource == null) {
+                    throw new IOException("No language file for: " +
+                            this.code);
+                }
+            }
+            
+            // Load from jar.
+            super.load(plugin);
+            
+            // Exit.
+            return;
+        }
+        
+        // Load copy in data folder.
+        this.file = YamlConfiguration.loadConfiguration(fileReference);
     }
     
     /**
@@ -45,4 +113,33 @@ public final class LanguageFile extends ConfigurationFile {
         
         return this.file.getString(key);
     }
+    
+    /**
+     * Compile every translation in this file.
+     * 
+     * @return Templates, keyed by message key.
+     */
+    public HashMap<String, MessageTemplate> compile() {
+        
+        // Create map.
+        HashMap<String, MessageTemplate> templates = new HashMap<>();
+        
+        // For every key, including nested keys.
+        for(String key : this.file.getKeys(true)) {
+            
+            // If key is a section rather than a translation.
+            if(!this.file.isString(key)) {
+                
+                // Skip.
+                continue;
+            }
+            
+            // Compile translation.
+            templates.put(key, MessageTemplate.compile(
+                    this.file.getString(key)));
+        }
+        
+        // Return templates.
+        return templates;
+    }
 }
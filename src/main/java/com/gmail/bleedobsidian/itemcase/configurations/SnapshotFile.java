@@ -0,0 +1,227 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase.configurations;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * Writes files so that a crash or full disk never leaves a half-written file
+ * in place of the last good one.
+ *
+ * A snapshot is written to a temporary file, synced to disk and then renamed
+ * over the live file. Once the newest backup is older than the backup
+ * interval, the live file is first renamed to be the newest of a number of
+ * backups, named "&lt;file&gt;.1" (newest) to "&lt;file&gt;.n" (oldest), which
+ * can be loaded if the live file turns out to be unreadable. Only renaming
+ * keeps frequent snapshots of large files cheap.
+ *
+ * @author Jesse Prescott (BleedObsidian)
+ */
+public final class SnapshotFile {
+
+    /**
+     * Writes the contents of a snapshot.
+     */
+    public static interface Writer {
+
+        /**
+         * Write the contents of the snapshot to the given output. The output
+         * must not be closed.
+         *
+         * @param output Output.
+         * @throws IOException
+         */
+        public void write(OutputStream output) throws IOException;
+    }
+
+    /**
+     * This class only has static methods.
+     */
+    private SnapshotFile() {
+    }
+
+    /**
+     * Write a snapshot to the given file, keeping the previous file as a
+     * backup if the newest backup is older than the given interval.
+     *
+     * @param file File.
+     * @param backups The number of previous files to keep.
+     * @param backupInterval The number of milliseconds between backups.
+     * @param writer Writer of the contents.
+     * @throws IOException
+     */
+    public static void write(File file, int backups, long backupInterval,
+            Writer writer) throws IOException {
+
+        // Create directories.
+        file.getParentFile().mkdirs();
+
+        // Create temporary file reference.
+        File temporary = new File(file.getPath() + ".tmp");
+
+        // Open temporary file.
+        try(FileOutputStream stream = new FileOutputStream(temporary)) {
+
+            // Write contents.
+            BufferedOutputStream output = new BufferedOutputStream(stream);
+            writer.write(output);
+            output.flush();
+
+            // Make sure contents are on disk before they replace anything.
+            stream.getFD().sync();
+        }
+
+        // Get newest backup.
+        File newest = SnapshotFile.getBackup(file, 1);
+
+        // If there is a live file to keep and the newest backup is due.
+        if(backups > 0 && file.exists() && (!newest.exists() ||
+                System.currentTimeMillis() - newest.lastModified() >=
+                backupInterval)) {
+
+            // Shift every backup back one, dropping the oldest.
+            for(int i = backups - 1; i > 0; i--) {
+
+                // Get backup.
+                File backup = SnapshotFile.getBackup(file, i);
+
+                // If backup exists.
+                if(backup.exists()) {
+
+                    // Move back.
+                    Files.move(backup.toPath(),
+                            SnapshotFile.getBackup(file, i + 1).toPath(),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+
+            // Move the live file to be the newest backup. Until the temporary
+            // file is renamed in there is no live file, so a crash in between
+            // loads the newest backup instead.
+            Files.move(file.toPath(), newest.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // Attempt to swap temporary file in atomically, so that the live file
+        // is always either the old or the new snapshot.
+        try {
+
+            // Rename.
+            Files.move(temporary.toPath(), file.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (AtomicMoveNotSupportedException e) {
+
+            // File system can't, so settle for a plain rename.
+            Files.move(temporary.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // Attempt to sync the directory so that the rename survives a crash.
+        try(FileChannel directory = FileChannel.open(
+                file.getParentFile().toPath(), StandardOpenOption.READ)) {
+
+            // Sync.
+            directory.force(true);
+
+        } catch (IOException e) {
+
+            // Not every platform can open a directory, nothing more to do.
+        }
+    }
+
+    /**
+     * @param file File.
+     * @param backups The number of previous files that are kept.
+     * @return The given file and each of its backups that exist, newest first.
+     */
+    public static ArrayList<File> getGenerations(File file, int backups) {
+
+        // Create list.
+        ArrayList<File> generations = new ArrayList<>();
+
+        // If live file exists.
+        if(file.exists()) {
+
+            // Add live file.
+            generations.add(file);
+        }
+
+        // For every backup, newest first.
+        for(int i = 1; i <= backups; i++) {
+
+            // Get backup.
+            File backup = SnapshotFile.getBackup(file, i);
+
+            // If backup exists.
+            if(backup.exists()) {
+
+                // Add backup.
+                generations.add(backup);
+            }
+        }
+
+        // Return generations.
+        return generations;
+    }
+
+    /**
+     * @param file File.
+     * @param backups The number of previous files that are kept.
+     * @return If the given file or any of its backups exist.
+     */
+    public static boolean exists(File file, int backups) {
+
+        // Return if there are any generations.
+        return !SnapshotFile.getGenerations(file, backups).isEmpty();
+    }
+
+    /**
+     * Delete every backup of the given file.
+     *
+     * @param file File.
+     * @param backups The number of previous files that are kept.
+     */
+    public static void deleteBackups(File file, int backups) {
+
+        // For every backup.
+        for(int i = 1; i <= backups; i++) {
+
+            // Delete backup.
+            SnapshotFile.getBackup(file, i).delete();
+        }
+    }
+
+    /**
+     * @param file File.
+     * @param generation Generation, 1 being the newest backup.
+     * @return The backup of the given file of the given generation.
+     */
+    private static File getBackup(File file, int generation) {
+
+        // Return backup reference.
+        return new File(file.getPath() + "." + generation);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase.configurations;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * An embedded SQLite database that holds the Itemcase saves of every world.
+ * The SQLite driver is bundled with the server so no external server or
+ * library is needed.
+ *
+ * The connection is shared between the threads that load and write
+ * storages, so it must only be used while synchronized on this object.
+ *
+ * @author Jesse Prescott (BleedObsidian)
+ */
+public final class SqlDatabase {
+
+    /**
+     * The statements that create the tables and indexes.
+     */
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS itemcases (" +
+                "world TEXT NOT NULL, " +
+                "x INTEGER NOT NULL, " +
+                "y INTEGER NOT NULL, " +
+                "z INTEGER NOT NULL, " +
+                "type TEXT NOT NULL, " +
+                "owner TEXT NOT NULL, " +
+                "itemstack BLOB NOT NULL, " +
+                "storage_type TEXT, " +
+                "storage_size INTEGER, " +
+                "storage_name TEXT, " +
+                "buy_price REAL, " +
+                "sell_price REAL, " +
+                "storage_quantity INTEGER, " +
+                "PRIMARY KEY (world, x, y, z))",
+        "CREATE INDEX IF NOT EXISTS itemcases_owner ON itemcases (owner)",
+        "CREATE TABLE IF NOT EXISTS storage_slots (" +
+                "world TEXT NOT NULL, " +
+                "x INTEGER NOT NULL, " +
+                "y INTEGER NOT NULL, " +
+                "z INTEGER NOT NULL, " +
+                "slot INTEGER NOT NULL, " +
+                "item BLOB NOT NULL, " +
+                "PRIMARY KEY (world, x, y, z, slot))"
+    };
+
+    /**
+     * The statements that add columns to tables created by older versions.
+     * Each fails harmlessly if its column already exists.
+     */
+    private static final String[] MIGRATIONS = {
+        "ALTER TABLE itemcases ADD COLUMN storage_quantity INTEGER"
+    };
+
+    /**
+     * Connection to the database.
+     */
+    private final Connection connection;
+
+    /**
+     * Open the database in the given file, creating it if it doesn't exist.
+     *
+     * @param file File.
+     * @throws IOException
+     */
+    public SqlDatabase(File file) throws IOException {
+
+        // Create directories.
+        file.getParentFile().mkdirs();
+
+        // Attempt to open database.
+        try {
+
+            // Load driver.
+            Class.forName("org.sqlite.JDBC");
+
+            // Open connection.
+            this.connection = DriverManager.getConnection(
+                    "jdbc:sqlite:" + file.getAbsolutePath());
+
+            // Create tables.
+            try(Statement statement = this.connection.createStatement()) {
+                for(String sql : SqlDatabase.SCHEMA) {
+                    statement.executeUpdate(sql);
+                }
+            }
+
+            // Add any missing columns.
+            for(String sql : SqlDatabase.MIGRATIONS) {
+                try(Statement statement = this.connection.createStatement()) {
+                    statement.executeUpdate(sql);
+                } catch (SQLException e) {
+
+                    // Column already exists.
+                }
+            }
+
+        } catch (ClassNotFoundException | SQLException e) {
+
+            // Rethrow.
+            throw new IOException("Failed to open database: " +
+                    file.getPath(), e);
+        }
+    }
+
+    /**
+     * @return Connection to the database. Only use while synchronized on
+     * this object.
+     */
+    public Connection getConnection() {
+
+        // Return connection.
+        return this.connection;
+    }
+
+    /**
+     * Close the database.
+     */
+    public synchronized void close() {
+
+        // Attempt to close connection.
+        try {
+
+            // Close connection.
+            this.connection.close();
+
+        } catch (SQLException e) {
+
+            // Nothing more can be done.
+        }
+    }
+}
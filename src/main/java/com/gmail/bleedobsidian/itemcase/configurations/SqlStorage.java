@@ -0,0 +1,779 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase.configurations;
+
+import com.gmail.bleedobsidian.itemcase.ItemCaseCore;
+import com.gmail.bleedobsidian.itemcase.Itemcase;
+import com.gmail.bleedobsidian.itemcase.Itemcase.StorageType;
+import com.gmail.bleedobsidian.itemcase.Itemcase.Type;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.UUID;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.World;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Storage of all Itemcase saves for a specific world in a
+ * {@link SqlDatabase}. Each flush only updates the rows of Itemcases that have
+ * changed.
+ *
+ * Unlike a {@link WorldFile} there is no journal, so changes made since the
+ * last flush are lost if the server crashes.
+ *
+ * @author Jesse Prescott (BleedObsidian)
+ */
+public final class SqlStorage implements ItemcaseStorage {
+
+    /**
+     * The world this storage is for.
+     */
+    private final World world;
+
+    /**
+     * The database.
+     */
+    private final SqlDatabase database;
+
+    /**
+     * Itemcases changed since the last flush, keyed by location. A null value
+     * means the itemcase has been deleted.
+     */
+    private final HashMap<String, Itemcase> dirty = new HashMap<>();
+
+    /**
+     * If every itemcase has been read from the database.
+     */
+    private volatile boolean loaded;
+
+    /**
+     * Constructor.
+     *
+     * @param world World.
+     * @param database Database.
+     */
+    public SqlStorage(World world, SqlDatabase database) {
+
+        // Set world.
+        this.world = world;
+
+        // Set database.
+        this.database = database;
+    }
+
+    @Override
+    public World getWorld() {
+
+        // Return world.
+        return this.world;
+    }
+
+    @Override
+    public boolean isLoaded() {
+
+        // Return loaded.
+        return this.loaded;
+    }
+
+    @Override
+    public void saveItemcase(Itemcase itemcase) {
+
+        // Mark dirty.
+        this.dirty.put(SqlStorage.getKey(itemcase), itemcase);
+    }
+
+    @Override
+    public void saveStock(Itemcase itemcase) {
+
+        // Only whole rows are written, so save itemcase.
+        this.saveItemcase(itemcase);
+    }
+
+    @Override
+    public void deleteItemcase(Itemcase itemcase) {
+
+        // Mark dirty, null meaning deleted.
+        this.dirty.put(SqlStorage.getKey(itemcase), null);
+    }
+
+    @Override
+    public boolean isDirty() {
+
+        // Return if any itemcases are dirty.
+        return !this.dirty.isEmpty();
+    }
+
+    @Override
+    public Flush flush() throws IOException {
+
+        // Create list of rows.
+        ArrayList<Row> rows = new ArrayList<>(this.dirty.size());
+
+        // For every dirty itemcase.
+        for(Entry<String, Itemcase> entry : this.dirty.entrySet()) {
+
+            // If itemcase has been deleted.
+            if(entry.getValue() == null) {
+
+                // Add deleted row.
+                rows.add(new Row(entry.getKey()));
+
+            } else {
+
+                // Add row.
+                rows.add(new Row(entry.getValue()));
+            }
+        }
+
+        // Clear dirty itemcases.
+        this.dirty.clear();
+
+        // Write rows.
+        return () -> this.write(rows);
+    }
+
+    @Override
+    public void sync() {
+
+        // Changes are only recorded when flushed, there is no journal.
+    }
+
+    @Override
+    public boolean isLazy() {
+
+        // Every itemcase is created when loaded.
+        return false;
+    }
+
+    @Override
+    public boolean isChunkReady(int chunkX, int chunkZ) {
+
+        // Nothing is left to be read later.
+        return true;
+    }
+
+    @Override
+    public Fetch fetchChunk(int chunkX, int chunkZ) {
+
+        // Nothing to read.
+        return null;
+    }
+
+    @Override
+    public ArrayList<Itemcase> loadChunk(int chunkX, int chunkZ) {
+
+        // Itemcases are never left to be created later.
+        return new ArrayList<>();
+    }
+
+    @Override
+    public void close() {
+
+        // The database is shared, so it is closed by its owner.
+    }
+
+    @Override
+    public ArrayList<Itemcase> loadItemcases() throws IOException {
+
+        // Attempt to load itemcases.
+        synchronized(this.database) {
+            try {
+
+                // If this world has no rows and still has a world file.
+                Format format = WorldFile.getExistingFormat(this.world);
+                if(format != null && !this.hasRows()) {
+
+                    // Import the world file.
+                    return this.importWorldFile(new WorldFile(this.world,
+                            format));
+                }
+
+                // Load itemcases.
+                ArrayList<Itemcase> itemcases = this.load();
+
+                // Set loaded.
+                this.loaded = true;
+
+                // Return loaded itemcases.
+                return itemcases;
+
+            } catch (SQLException e) {
+
+                // Rethrow.
+                throw new IOException("Failed to load itemcases from " +
+                        "database.", e);
+            }
+        }
+    }
+
+    @Override
+    public void delete() throws IOException {
+
+        // Get connection.
+        synchronized(this.database) {
+            Connection connection = this.database.getConnection();
+
+            // Attempt to delete all rows for this world.
+            try(PreparedStatement itemcases = connection.prepareStatement(
+                    "DELETE FROM itemcases WHERE world = ?");
+                    PreparedStatement slots = connection.prepareStatement(
+                    "DELETE FROM storage_slots WHERE world = ?")) {
+
+                // Delete rows.
+                itemcases.setString(1, this.world.getName());
+                itemcases.executeUpdate();
+                slots.setString(1, this.world.getName());
+                slots.executeUpdate();
+
+            } catch (SQLException e) {
+
+                // Rethrow.
+                throw new IOException("Failed to delete itemcases from " +
+                        "database.", e);
+            }
+        }
+    }
+
+    /**
+     * @return If this world has any itemcases in the database.
+     * @throws SQLException
+     */
+    private boolean hasRows() throws SQLException {
+
+        // Query for one row.
+        try(PreparedStatement statement = this.database.getConnection()
+                .prepareStatement("SELECT 1 FROM itemcases WHERE world = ? " +
+                        "LIMIT 1")) {
+
+            // Set world.
+            statement.setString(1, this.world.getName());
+
+            // Return if there is a row.
+            try(ResultSet result = statement.executeQuery()) {
+                return result.next();
+            }
+        }
+    }
+
+    /**
+     * Load the itemcases in the given world file, insert them into the
+     * database and then move the world file out of the way.
+     *
+     * @param file WorldFile.
+     * @return Array list of loaded itemcases.
+     * @throws IOException
+     */
+    private ArrayList<Itemcase> importWorldFile(WorldFile file)
+            throws IOException {
+
+        // Load itemcases from file.
+        ArrayList<Itemcase> itemcases = file.loadItemcases();
+
+        // Create list of rows.
+        ArrayList<Row> rows = new ArrayList<>(itemcases.size());
+        for(Itemcase itemcase : itemcases) {
+            rows.add(new Row(itemcase));
+        }
+
+        // Insert rows.
+        this.write(rows);
+
+        // Move world file out of the way so it isn't imported again.
+        file.close();
+        file.moveToOld();
+
+        // Log.
+        ItemCaseCore.instance.getConsoleLogger().info("Imported " +
+                itemcases.size() + " itemcases for world: " +
+                this.world.getName() + " into the database.");
+
+        // Set loaded.
+        this.loaded = true;
+
+        // Return loaded itemcases.
+        return itemcases;
+    }
+
+    /**
+     * Load all itemcases for this world from the database.
+     *
+     * @return Array list of loaded itemcases.
+     * @throws SQLException
+     * @throws IOException
+     */
+    private ArrayList<Itemcase> load() throws SQLException, IOException {
+
+        // Get connection.
+        Connection connection = this.database.getConnection();
+
+        // Itemcases by location.
+        LinkedHashMap<String, Itemcase> itemcases = new LinkedHashMap<>();
+
+        // Query itemcases.
+        try(PreparedStatement statement = connection.prepareStatement(
+                "SELECT x, y, z, type, owner, itemstack, storage_type, " +
+                "storage_size, storage_name, buy_price, sell_price, " +
+                "storage_quantity " +
+                "FROM itemcases WHERE world = ?")) {
+
+            // Set world.
+            statement.setString(1, this.world.getName());
+
+            // For every row.
+            try(ResultSet result = statement.executeQuery()) {
+                while(result.next()) {
+
+                    // Convert to location.
+                    Location location = new Location(this.world,
+                            result.getInt("x"), result.getInt("y"),
+                            result.getInt("z"));
+
+                    // Get type.
+                    Type type = Type.valueOf(result.getString("type"));
+
+                    // Get owner.
+                    OfflinePlayer owner = Bukkit.getOfflinePlayer(
+                            UUID.fromString(result.getString("owner")));
+
+                    // Get ItemStack.
+                    ItemStack itemstack = BinaryFormat.decodeItem(
+                            result.getBytes("itemstack"));
+
+                    // Create itemcase object.
+                    Itemcase itemcase =
+                            new Itemcase(type, itemstack, location, owner);
+
+                    // If itemcase is a shop.
+                    if(type != Type.SHOWCASE) {
+
+                        // Get storage type.
+                        StorageType storageType = StorageType.valueOf(
+                                result.getString("storage_type"));
+
+                        // Set storage type.
+                        itemcase.setStorageType(storageType);
+
+                        // If itemcase has finite storage.
+                        if(storageType == StorageType.FINITE) {
+
+                            // Create empty inventory, slots are loaded
+                            // afterwards.
+                            itemcase.setStorage(Bukkit.createInventory(itemcase,
+                                    result.getInt("storage_size"),
+                                    result.getString("storage_name")));
+                        }
+
+                        // If itemcase has virtual storage.
+                        if(storageType == StorageType.VIRTUAL) {
+
+                            // Set quantity.
+                            itemcase.setQuantity(
+                                    result.getLong("storage_quantity"));
+                        }
+
+                        // If this itemcase buys.
+                        if(type == Type.SHOP_BUY || type == Type.SHOP_MULTI) {
+
+                            // Set buy price.
+                            itemcase.setBuyPrice(
+                                    result.getDouble("buy_price"));
+                        }
+
+                        // If this itemcase sells.
+                        if(type == Type.SHOP_SELL ||
+                                type == Type.SHOP_MULTI) {
+
+                            // Set sell price.
+                            itemcase.setSellPrice(
+                                    result.getDouble("sell_price"));
+                        }
+                    }
+
+                    // Add to map.
+                    itemcases.put(SqlStorage.getKey(itemcase), itemcase);
+                }
+            }
+        }
+
+        // Query storage slots.
+        try(PreparedStatement statement = connection.prepareStatement(
+                "SELECT x, y, z, slot, item FROM storage_slots " +
+                "WHERE world = ?")) {
+
+            // Set world.
+            statement.setString(1, this.world.getName());
+
+            // For every row.
+            try(ResultSet result = statement.executeQuery()) {
+                while(result.next()) {
+
+                    // Get itemcase.
+                    Itemcase itemcase = itemcases.get(result.getInt("x") +
+                            "/" + result.getInt("y") + "/" +
+                            result.getInt("z"));
+
+                    // If there is no itemcase with storage for this slot.
+                    if(itemcase == null || itemcase.getType() ==
+                            Type.SHOWCASE || itemcase.getStorageType() !=
+                            StorageType.FINITE) {
+
+                        // Skip.
+                        continue;
+                    }
+
+                    // Set item in slot.
+                    itemcase.getStorage().setItem(result.getInt("slot"),
+                            BinaryFormat.decodeItem(result.getBytes("item")));
+                }
+            }
+        }
+
+        // Return list of loaded itemcases.
+        return new ArrayList<>(itemcases.values());
+    }
+
+    /**
+     * Write the given rows in a single transaction. Can be called from any
+     * thread.
+     *
+     * @param rows Rows.
+     * @throws IOException
+     */
+    private void write(Collection<Row> rows) throws IOException {
+
+        // Get connection.
+        synchronized(this.database) {
+            Connection connection = this.database.getConnection();
+
+            // Attempt to write rows.
+            try {
+
+                // Start transaction.
+                connection.setAutoCommit(false);
+
+                // Prepare statements.
+                try(PreparedStatement deleteSlots = connection.prepareStatement(
+                        "DELETE FROM storage_slots " +
+                        "WHERE world = ? AND x = ? AND y = ? AND z = ?");
+                        PreparedStatement deleteItemcase =
+                        connection.prepareStatement("DELETE FROM itemcases " +
+                        "WHERE world = ? AND x = ? AND y = ? AND z = ?");
+                        PreparedStatement insertItemcase =
+                        connection.prepareStatement("INSERT OR REPLACE " +
+                        "INTO itemcases VALUES " +
+                        "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                        PreparedStatement insertSlot =
+                        connection.prepareStatement("INSERT INTO " +
+                        "storage_slots VALUES (?, ?, ?, ?, ?, ?)")) {
+
+                    // For every row.
+                    for(Row row : rows) {
+
+                        // Storage is always rewritten as a whole.
+                        this.setKey(deleteSlots, row);
+                        deleteSlots.executeUpdate();
+
+                        // If itemcase has been deleted.
+                        if(row.type == null) {
+
+                            // Delete itemcase.
+                            this.setKey(deleteItemcase, row);
+                            deleteItemcase.executeUpdate();
+
+                            // Next row.
+                            continue;
+                        }
+
+                        // Insert or replace itemcase.
+                        this.setKey(insertItemcase, row);
+                        insertItemcase.setString(5, row.type);
+                        insertItemcase.setString(6, row.owner);
+                        insertItemcase.setBytes(7, row.itemstack);
+                        insertItemcase.setString(8, row.storageType);
+                        insertItemcase.setObject(9, row.storageSize,
+                                Types.INTEGER);
+                        insertItemcase.setString(10, row.storageName);
+                        insertItemcase.setObject(11, row.buyPrice,
+                                Types.REAL);
+                        insertItemcase.setObject(12, row.sellPrice,
+                                Types.REAL);
+                        insertItemcase.setObject(13, row.storageQuantity,
+                                Types.INTEGER);
+                        insertItemcase.executeUpdate();
+
+                        // For every storage slot with an item.
+                        for(int i = 0; i < row.slots.length; i++) {
+
+                            // Insert slot.
+                            this.setKey(insertSlot, row);
+                            insertSlot.setInt(5, row.slots[i]);
+                            insertSlot.setBytes(6, row.items[i]);
+                            insertSlot.addBatch();
+                        }
+                        insertSlot.executeBatch();
+                    }
+                }
+
+                // Commit transaction.
+                connection.commit();
+
+            } catch (SQLException e) {
+
+                // Attempt to undo partial changes.
+                try {
+                    connection.rollback();
+                } catch (SQLException ex) {
+                    e.addSuppressed(ex);
+                }
+
+                // Rethrow.
+                throw new IOException("Failed to save itemcases to " +
+                        "database.", e);
+
+            } finally {
+
+                // Attempt to end transaction.
+                try {
+                    connection.setAutoCommit(true);
+                } catch (SQLException e) {
+                    // Nothing more can be done.
+                }
+            }
+        }
+    }
+
+    /**
+     * Set the world and block coordinates of the given row as the first four
+     * parameters of the given statement.
+     *
+     * @param statement Statement.
+     * @param row Row.
+     * @throws SQLException
+     */
+    private void setKey(PreparedStatement statement, Row row)
+            throws SQLException {
+
+        // Set key.
+        statement.setString(1, this.world.getName());
+        statement.setInt(2, row.x);
+        statement.setInt(3, row.y);
+        statement.setInt(4, row.z);
+    }
+
+    /**
+     * @param itemcase Itemcase.
+     * @return A unique key for the given itemcase based on location.
+     */
+    private static String getKey(Itemcase itemcase) {
+
+        // Get block coordinates of Itemcase.
+        int blockX = itemcase.getLocation().getBlockX();
+        int blockY = itemcase.getLocation().getBlockY();
+        int blockZ = itemcase.getLocation().getBlockZ();
+
+        // Return key.
+        return blockX + "/" + blockY + "/" + blockZ;
+    }
+
+    /**
+     * The encoded row of an itemcase, taken on the main thread so that it can
+     * be written from another thread.
+     */
+    private static final class Row {
+
+        /**
+         * Block X coordinate.
+         */
+        private final int x;
+
+        /**
+         * Block Y coordinate.
+         */
+        private final int y;
+
+        /**
+         * Block Z coordinate.
+         */
+        private final int z;
+
+        /**
+         * Type, or null if the itemcase has been deleted.
+         */
+        private String type;
+
+        /**
+         * Owner UUID.
+         */
+        private String owner;
+
+        /**
+         * Encoded ItemStack.
+         */
+        private byte[] itemstack;
+
+        /**
+         * Storage type, or null if not a shop.
+         */
+        private String storageType;
+
+        /**
+         * Storage size, or null if storage is not finite.
+         */
+        private Integer storageSize;
+
+        /**
+         * Storage name, or null if storage is not finite.
+         */
+        private String storageName;
+
+        /**
+         * Storage quantity, or null if storage is not virtual.
+         */
+        private Long storageQuantity;
+
+        /**
+         * Buy price, or null if the itemcase does not buy.
+         */
+        private Double buyPrice;
+
+        /**
+         * Sell price, or null if the itemcase does not sell.
+         */
+        private Double sellPrice;
+
+        /**
+         * Storage slots that have an item.
+         */
+        private int[] slots = new int[0];
+
+        /**
+         * The encoded item in each of those slots.
+         */
+        private byte[][] items = new byte[0][];
+
+        /**
+         * Create a row for a deleted itemcase.
+         *
+         * @param key Itemcase key.
+         */
+        private Row(String key) {
+
+            // Split key by '/' to obtain individual coordinates.
+            String[] coordinates = key.split("/");
+            this.x = Integer.parseInt(coordinates[0]);
+            this.y = Integer.parseInt(coordinates[1]);
+            this.z = Integer.parseInt(coordinates[2]);
+        }
+
+        /**
+         * Create a row for the given itemcase.
+         *
+         * @param itemcase Itemcase.
+         * @throws IOException
+         */
+        private Row(Itemcase itemcase) throws IOException {
+
+            // Set block coordinates.
+            this.x = itemcase.getLocation().getBlockX();
+            this.y = itemcase.getLocation().getBlockY();
+            this.z = itemcase.getLocation().getBlockZ();
+
+            // Set type, owner and itemstack.
+            this.type = itemcase.getType().name();
+            this.owner = itemcase.getOwner().getUniqueId().toString();
+            this.itemstack = BinaryFormat.encodeItem(itemcase.getItemStack());
+
+            // If itemcase is not a shop.
+            if(itemcase.getType() == Type.SHOWCASE) {
+
+                // Nothing more to set.
+                return;
+            }
+
+            // Set storage type.
+            this.storageType = itemcase.getStorageType().name();
+
+            // If shop has finite storage.
+            if(itemcase.getStorageType() == StorageType.FINITE) {
+
+                // Get inventory.
+                Inventory inventory = itemcase.getStorage();
+
+                // Set size and name.
+                this.storageSize = inventory.getSize();
+                this.storageName = inventory.getName();
+
+                // Create slot arrays.
+                this.slots = new int[inventory.getSize()];
+                this.items = new byte[inventory.getSize()][];
+
+                // Loop through all content slots.
+                int count = 0;
+                for(int i = 0; i < inventory.getSize(); i++) {
+
+                    // Check if content slot has any items.
+                    if(inventory.getItem(i) != null) {
+
+                        // Encode item.
+                        this.slots[count] = i;
+                        this.items[count] =
+                                BinaryFormat.encodeItem(inventory.getItem(i));
+                        count++;
+                    }
+                }
+
+                // Trim to slots with items.
+                this.slots = Arrays.copyOf(this.slots, count);
+                this.items = Arrays.copyOf(this.items, count);
+            }
+
+            // If shop has virtual storage.
+            if(itemcase.getStorageType() == StorageType.VIRTUAL) {
+
+                // Set quantity.
+                this.storageQuantity = itemcase.getQuantity();
+            }
+
+            // If this itemcase buys.
+            if(itemcase.getType() == Type.SHOP_BUY ||
+                    itemcase.getType() == Type.SHOP_MULTI) {
+
+                // Set buy price.
+                this.buyPrice = itemcase.getBuyPrice();
+            }
+
+            // If this itemcase sells.
+            if(itemcase.getType() == Type.SHOP_SELL ||
+                    itemcase.getType() == Type.SHOP_MULTI) {
+
+                // Set sell price.
+                this.sellPrice = itemcase.getSellPrice();
+            }
+        }
+    }
+}
@@ -17,346 +17,1910 @@ package com.gmail.bleedobsidian.itemcase.configurations;
 import com.gmail.bleedobsidian.itemcase.ConfigurationFile;
 import com.gmail.bleedobsidian.itemcase.ItemCaseCore;
 import com.gmail.bleedobsidian.itemcase.Itemcase;
-import com.gmail.bleedobsidian.itemcase.Itemcase.StorageType;
-import com.gmail.bleedobsidian.itemcase.Itemcase.Type;
+import com.gmail.bleedobsidian.itemcase.configurations.ItemcaseStorage.Format;
+import com.gmail.bleedobsidian.itemcase.managers.ItemcaseIndex;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.multiverse.io.FileUtils;
-import org.bukkit.Bukkit;
-import org.bukkit.Location;
-import org.bukkit.OfflinePlayer;
 import org.bukkit.World;
-import org.bukkit.configuration.MemorySection;
-import org.bukkit.inventory.Inventory;
-import org.bukkit.inventory.ItemStack;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.MemoryConfiguration;
 
 /**
  * A configuration file that holds all Itemcase saves for a specific world.
  * 
  * @author Jesse Prescott (BleedObsidian)
  */
-public final class WorldFile extends ConfigurationFile {
+public final class WorldFile extends ConfigurationFile
+        implements ItemcaseStorage {
     
     /**
      * The world this configuration file is for.
      */
     private final World world;
     
+    /**
+     * The format this world's itemcases are saved in.
+     */
+    private final Format format;
+    
+    /**
+     * The file this world's itemcases are saved to in YAML.
+     */
+    private final File yamlFile;
+    
+    /**
+     * The file this world's itemcases are saved to in binary.
+     */
+    private final File binaryFile;
+    
+    /**
+     * The serialized form of every itemcase in this file, keyed by location.
+     * For YAML values are either a map or a section loaded from file, for
+     * binary they are records.
+     */
+    private final LinkedHashMap<String, Object> entries = new LinkedHashMap<>();
+    
+    /**
+     * Itemcases changed since the last flush, keyed by location. A null value
+     * means the itemcase has been deleted.
+     */
+    private final HashMap<String, Itemcase> dirty = new HashMap<>();
+    
+    /**
+     * Changes made on the main thread while this file is being loaded, keyed
+     * by location. A null value means the itemcase has been deleted. Until
+     * loaded is set every other field belongs to the loading worker, so these
+     * are held back and applied once it has finished. They are journaled
+     * straight away all the same, after everything the worker replays.
+     */
+    private final LinkedHashMap<String, Itemcase> held =
+            new LinkedHashMap<>();
+    
+    /**
+     * If this file has been deleted, in which case it must not be written.
+     */
+    private volatile boolean deleted;
+    
+    /**
+     * If every itemcase has been read from file. Loading may happen on a
+     * worker thread, so until then this file must not be written.
+     */
+    private volatile boolean loaded;
+    
+    /**
+     * The journal that changes are written to before they are saved.
+     */
+    private final Journal journal;
+    
+    /**
+     * The number of previous snapshots to keep as backups.
+     */
+    private final int backups;
+    
+    /**
+     * The number of milliseconds between keeping a snapshot as a backup.
+     */
+    private final long backupInterval;
+    
+    /**
+     * If itemcases are only created when their chunk loads.
+     */
+    private final boolean lazy;
+    
+    /**
+     * The keys of every itemcase in each chunk, keyed by chunk. Only kept if
+     * lazy.
+     */
+    private final HashMap<Long, HashSet<String>> chunks = new HashMap<>();
+    
+    /**
+     * If itemcases are saved in one shard per region instead of a single
+     * file.
+     */
+    private final boolean sharded;
+    
+    /**
+     * The directory shards are saved in.
+     */
+    private final File regionDirectory;
+    
+    /**
+     * The keys of every itemcase in each region, keyed by region. Only kept
+     * if sharded.
+     */
+    private final HashMap<Long, HashSet<String>> regions = new HashMap<>();
+    
+    /**
+     * Regions whose shard has been loaded.
+     */
+    private final HashSet<Long> loadedRegions = new HashSet<>();
+    
+    /**
+     * Regions whose shard is being read by a worker. Only used on the main
+     * thread.
+     */
+    private final HashSet<Long> fetchingRegions = new HashSet<>();
+    
+    /**
+     * The regions of every write that failed, for the main thread to write
+     * again on the next flush. If not sharded, the whole file is written
+     * anyway so these are empty.
+     */
+    private final ConcurrentLinkedQueue<Collection<Long>> unwritten =
+            new ConcurrentLinkedQueue<>();
+    
+    /**
+     * The number of writes that have failed. A write only deletes journal
+     * segments if it wrote again every write that failed before it.
+     */
+    private final AtomicInteger failures = new AtomicInteger();
+    
+    /**
+     * Constructor.
+     * 
+     * @param world World.
+     * @param format The format to save itemcases in, either YAML or BINARY.
+     */
+    public WorldFile(World world, Format format) {
+        
+        // Create itemcases as soon as they are loaded from a single file.
+        this(world, format, false, false);
+    }
+    
     /**
      * Constructor.
      * 
      * @param world World.
+     * @param format The format to save itemcases in, either YAML or BINARY.
+     * @param lazy If itemcases should only be created when their chunk loads.
+     * @param sharded If itemcases should be saved in one file per region.
+     */
+    public WorldFile(World world, Format format, boolean lazy,
+            boolean sharded) {
+        
+        // Append world name to config file name.
+        super(world.getName() + "/itemcases.yml", "itemcases.yml");
+        
+        // Set world.
+        this.world = world;
+        
+        // Set format.
+        this.format = format;
+        
+        // Set lazy and sharded.
+        this.lazy = lazy;
+        this.sharded = sharded;
+        
+        // Create file references.
+        this.yamlFile = new File(ItemCaseCore.instance.getDataFolder(),
+                world.getName() + "/itemcases.yml");
+        this.binaryFile = new File(ItemCaseCore.instance.getDataFolder(),
+                world.getName() + "/itemcases.dat");
+        this.regionDirectory = new File(ItemCaseCore.instance.getDataFolder(),
+                world.getName() + "/regions");
+        
+        // Create journal.
+        this.journal = new Journal(new File(
+                ItemCaseCore.instance.getDataFolder(), world.getName()));
+        
+        // Attempt to start journaling now, so that changes made while
+        // loading are journaled after the segments that loading replays.
+        try {
+            
+            // Open journal.
+            this.journal.open();
+            
+        } catch (IOException e) {
+            
+            // Log error.
+            ItemCaseCore.instance.getConsoleLogger().severe(
+                    "Failed to open itemcase journal for world: " +
+                    world.getName(), e);
+        }
+        
+        // Set number of backups and how often they are taken.
+        this.backups = ItemCaseCore.instance.getConfigFile().getSaveBackups();
+        this.backupInterval = ItemCaseCore.instance.getConfigFile()
+                .getSaveBackupInterval() * 60000L;
+    }
+    
+    /**
+     * @param world World.
+     * @return The format of the file that the given world's itemcases are
+     * currently saved in, or null if there is no file.
+     */
+    public static Format getExistingFormat(World world) {
+        
+        // Get data folder and number of backups.
+        File folder = ItemCaseCore.instance.getDataFolder();
+        int backups = ItemCaseCore.instance.getConfigFile().getSaveBackups();
+        
+        // If there is a binary file.
+        if(SnapshotFile.exists(new File(folder,
+                world.getName() + "/itemcases.dat"), backups)) {
+            
+            // Return binary.
+            return Format.BINARY;
+        }
+        
+        // If there is a YAML file.
+        if(SnapshotFile.exists(new File(folder,
+                world.getName() + "/itemcases.yml"), backups)) {
+            
+            // Return YAML.
+            return Format.YAML;
+        }
+        
+        // Get region files.
+        File[] shards = new File(folder, world.getName() + "/regions")
+                .listFiles();
+        
+        // If there are region files.
+        if(shards != null) {
+            
+            // For every region file.
+            for(File shard : shards) {
+                
+                // If shard is binary.
+                if(shard.getName().endsWith(".dat")) {
+                    
+                    // Return binary.
+                    return Format.BINARY;
+                }
+                
+                // If shard is YAML.
+                if(shard.getName().endsWith(".yml")) {
+                    
+                    // Return YAML.
+                    return Format.YAML;
+                }
+            }
+        }
+        
+        // No file.
+        return null;
+    }
+    
+    /**
+     * @return If every itemcase has been read from file.
+     */
+    @Override
+    public boolean isLoaded() {
+        
+        // Return loaded.
+        return this.loaded;
+    }
+    
+    /**
+     * @return The world this configuration file is for.
+     */
+    @Override
+    public World getWorld() {
+        
+        // Return world.
+        return this.world;
+    }
+    
+    /**
+     * Marks the given Itemcase as changed and appends it to the journal. It is
+     * saved to file the next time this file is flushed, so any number of
+     * changes before then cost a single save.
+     * 
+     * @param itemcase Itemcase.
+     */
+    @Override
+    public void saveItemcase(Itemcase itemcase) {
+        
+        // Get key.
+        String key = WorldFile.getKey(itemcase);
+        
+        // Append change.
+        this.append(key, itemcase);
+        
+        // If still loading.
+        if(!this.release()) {
+            
+            // Hold back change until loaded.
+            this.held.put(key, itemcase);
+            
+            // Exit.
+            return;
+        }
+        
+        // Save itemcase.
+        this.save(key, itemcase);
+    }
+    
+    /**
+     * Marks the given Itemcase as deleted and appends this to the journal. It
+     * is removed from file the next time this file is flushed.
+     * 
+     * @param itemcase Itemcase.
+     */
+    @Override
+    public void deleteItemcase(Itemcase itemcase) {
+        
+        // Get key.
+        String key = WorldFile.getKey(itemcase);
+        
+        // Append change, null meaning deleted.
+        this.append(key, null);
+        
+        // If still loading.
+        if(!this.release()) {
+            
+            // Hold back change until loaded, null meaning deleted.
+            this.held.put(key, null);
+            
+            // Exit.
+            return;
+        }
+        
+        // Delete itemcase.
+        this.delete(key);
+    }
+    
+    /**
+     * Marks the given Itemcase as changed and appends only its stock to the
+     * journal, which unlike the whole itemcase is a few bytes per slot.
+     * 
+     * @param itemcase Itemcase.
+     */
+    @Override
+    public void saveStock(Itemcase itemcase) {
+        
+        // Get key.
+        String key = WorldFile.getKey(itemcase);
+        
+        // Attempt to append stock.
+        try {
+            
+            // Append stock.
+            this.journal.append(Journal.STOCK,
+                    BinaryFormat.encodeStock(itemcase));
+            
+        } catch (IOException e) {
+            
+            // Log error.
+            ItemCaseCore.instance.getConsoleLogger().severe(
+                    "Failed to write itemcase to journal.", e);
+        }
+        
+        // If still loading.
+        if(!this.release()) {
+            
+            // Hold back change until loaded.
+            this.held.put(key, itemcase);
+            
+            // Exit.
+            return;
+        }
+        
+        // Mark dirty.
+        this.dirty.put(key, itemcase);
+    }
+    
+    /**
+     * Apply the changes held back while this file was loading, if it has
+     * finished. This must be called on the main thread.
+     * 
+     * @return If this file has finished loading.
+     */
+    private boolean release() {
+        
+        // If still loading.
+        if(!this.loaded) {
+            
+            // Keep holding changes.
+            return false;
+        }
+        
+        // For every held change, in order.
+        for(Entry<String, Itemcase> entry : this.held.entrySet()) {
+            
+            // If itemcase has been deleted.
+            if(entry.getValue() == null) {
+                
+                // Delete itemcase.
+                this.delete(entry.getKey());
+                
+            } else {
+                
+                // Save itemcase.
+                this.save(entry.getKey(), entry.getValue());
+            }
+        }
+        
+        // Clear held changes.
+        this.held.clear();
+        
+        // Loaded.
+        return true;
+    }
+    
+    /**
+     * Marks the given Itemcase as changed, once it has been journaled.
+     * 
+     * @param key Key.
+     * @param itemcase Itemcase.
+     */
+    private void save(String key, Itemcase itemcase) {
+        
+        // Mark dirty.
+        this.dirty.put(key, itemcase);
+        
+        // If lazy.
+        if(this.lazy) {
+            
+            // Index itemcase so it is found when its chunk loads.
+            this.index(key);
+        }
+    }
+    
+    /**
+     * Marks the Itemcase with the given key as deleted, once this has been
+     * journaled.
+     * 
+     * @param key Key.
+     */
+    private void delete(String key) {
+        
+        // Mark dirty, null meaning deleted.
+        this.dirty.put(key, null);
+        
+        // If lazy.
+        if(this.lazy) {
+            
+            // Remove itemcase from index.
+            this.unindex(key);
+        }
+    }
+    
+    /**
+     * Append a change to the journal.
+     * 
+     * @param key Key.
+     * @param itemcase Itemcase, or null if it has been deleted.
+     */
+    private void append(String key, Itemcase itemcase) {
+        
+        // Attempt to append to journal.
+        try {
+            
+            // If itemcase has been deleted.
+            if(itemcase == null) {
+                
+                // Append deletion.
+                this.journal.append(Journal.DELETE,
+                        key.getBytes(StandardCharsets.UTF_8));
+                
+            } else {
+                
+                // Append itemcase.
+                this.journal.append(Journal.SAVE,
+                        BinaryFormat.encode(itemcase));
+            }
+            
+        } catch (IOException e) {
+            
+            // Log error.
+            ItemCaseCore.instance.getConsoleLogger().severe(
+                    "Failed to write itemcase to journal.", e);
+        }
+    }
+    
+    /**
+     * @return If there are changes that have not been flushed.
+     */
+    @Override
+    public boolean isDirty() {
+        
+        // If still loading, only held changes may be looked at.
+        if(!this.loaded) {
+            
+            // Return if any changes are held.
+            return !this.held.isEmpty();
+        }
+        
+        // Return if any itemcases are dirty or a write has failed.
+        return !this.dirty.isEmpty() || !this.held.isEmpty() ||
+                !this.unwritten.isEmpty();
+    }
+    
+    /**
+     * Serializes every dirty Itemcase and takes a copy of the contents of
+     * this file that can be written from another thread. This must be called
+     * on the main thread.
+     * 
+     * @return Changes to be written.
+     * @throws IOException
+     */
+    @Override
+    public Flush flush() throws IOException {
+        
+        // Apply changes held back while loading.
+        this.release();
+        
+        // Get the number of failed writes before taking their regions, so
+        // that every counted failure is in this flush.
+        int failed = this.failures.get();
+        
+        // Regions to write, starting with those of failed writes.
+        HashSet<Long> regions = new HashSet<>();
+        Collection<Long> failedRegions;
+        while((failedRegions = this.unwritten.poll()) != null) {
+            regions.addAll(failedRegions);
+        }
+        
+        // Take snapshot.
+        Map<File, Map<String, Object>> snapshot = this.snapshot(regions);
+        
+        // Every change so far is in the snapshot, so start a new journal
+        // segment for changes after it.
+        int segment = this.journal.rotate();
+        
+        // For every change left out of the snapshot.
+        for(Entry<String, Itemcase> entry : this.dirty.entrySet()) {
+            
+            // Append it again, as the segment it was in will be deleted.
+            this.append(entry.getKey(), entry.getValue());
+        }
+        
+        // Write snapshot.
+        return () -> {
+            
+            // Attempt to write snapshot.
+            try {
+                
+                // Write snapshot.
+                this.write(snapshot);
+                
+            } catch (IOException | RuntimeException e) {
+                
+                // Hand regions back to be written on the next flush, the
+                // journal keeping their changes until then.
+                this.unwritten.add(regions);
+                this.failures.incrementAndGet();
+                
+                // Rethrow.
+                throw e;
+            }
+            
+            // If a write before this one failed and was left out.
+            if(this.failures.get() != failed) {
+                
+                // Keep the journal until it has been written.
+                return;
+            }
+            
+            // The journal up to the snapshot is no longer needed.
+            this.journal.delete(segment);
+        };
+    }
+    
+    /**
+     * Sync the journal to disk, so that every change so far survives the
+     * machine crashing. Can be called from any thread.
+     * 
+     * @throws IOException
+     */
+    @Override
+    public void sync() throws IOException {
+        
+        // Sync journal.
+        this.journal.sync();
+    }
+    
+    /**
+     * Stop appending to the journal.
+     */
+    @Override
+    public void close() {
+        
+        // Close journal.
+        this.journal.close();
+    }
+    
+    /**
+     * Serializes every dirty Itemcase and returns a copy of the contents of
+     * each file that needs to be written.
+     * 
+     * @param regions Regions to write, to which regions with dirty itemcases
+     * are added. Ignored if not sharded.
+     * @return Map of every file to write and the serialized itemcases in it.
+     * @throws IOException
+     */
+    private Map<File, Map<String, Object>> snapshot(HashSet<Long> regions)
+            throws IOException {
+        
+        // Itemcases in regions that have not been read yet.
+        HashMap<String, Itemcase> unread = new HashMap<>();
+        
+        // For every dirty itemcase.
+        for(Entry<String, Itemcase> entry : this.dirty.entrySet()) {
+            
+            // If sharded.
+            if(this.sharded) {
+                
+                // Get region.
+                long region = WorldFile.getRegionKey(entry.getKey());
+                
+                // If the rest of the region has not been read yet.
+                if(!this.isRegionLoaded(region)) {
+                    
+                    // Its shard can't be written until it has been fetched.
+                    unread.put(entry.getKey(), entry.getValue());
+                    
+                    // Next itemcase.
+                    continue;
+                }
+                
+                // Mark region dirty.
+                regions.add(region);
+            }
+            
+            // If itemcase has been deleted.
+            if(entry.getValue() == null) {
+                
+                // Remove entry.
+                this.removeEntry(entry.getKey());
+                
+            } else {
+                
+                // Serialize itemcase.
+                this.putEntry(entry.getKey(), this.encode(entry.getValue()));
+            }
+        }
+        
+        // Clear dirty itemcases, keeping those that couldn't be written.
+        this.dirty.clear();
+        this.dirty.putAll(unread);
+        
+        // Return copy of files to write.
+        return this.copy(regions);
+    }
+    
+    /**
+     * Take a copy of the contents of the shards of the given regions, or of
+     * the whole file if not sharded, that can be written from another thread.
+     * 
+     * @param regions Regions, ignored if not sharded.
+     * @return Map of every file to write and the serialized itemcases in it.
+     */
+    private Map<File, Map<String, Object>> copy(Collection<Long> regions) {
+        
+        // Create map.
+        LinkedHashMap<File, Map<String, Object>> files = new LinkedHashMap<>();
+        
+        // If not sharded.
+        if(!this.sharded) {
+            
+            // Entries are never modified once created, only replaced, so a
+            // shallow copy is safe to hand to another thread.
+            files.put(this.getFile(this.format),
+                    new LinkedHashMap<>(this.entries));
+            
+            // Return whole file.
+            return files;
+        }
+        
+        // For every region.
+        for(long region : regions) {
+            
+            // Create shard.
+            LinkedHashMap<String, Object> shard = new LinkedHashMap<>();
+            
+            // Get keys in region.
+            HashSet<String> keys = this.regions.get(region);
+            
+            // If there are any.
+            if(keys != null) {
+                
+                // Copy every entry in region.
+                for(String key : keys) {
+                    shard.put(key, this.entries.get(key));
+                }
+            }
+            
+            // Add shard.
+            files.put(this.getShard(region, this.format), shard);
+        }
+        
+        // Return shards.
+        return files;
+    }
+    
+    /**
+     * Write the given snapshot to file, replacing each previous file
+     * atomically. Can be called from any thread.
+     * 
+     * @param snapshot A snapshot from {@link #snapshot(HashSet)}.
+     * @throws IOException
+     */
+    private void write(Map<File, Map<String, Object>> snapshot)
+            throws IOException {
+        
+        // If this file has been deleted.
+        if(this.deleted) {
+            
+            // Don't recreate it.
+            return;
+        }
+        
+        // For every file.
+        for(Entry<File, Map<String, Object>> entry : snapshot.entrySet()) {
+            
+            // Write file.
+            this.write(entry.getKey(), entry.getValue());
+        }
+    }
+    
+    /**
+     * Write the given itemcases to the given file in this file's format.
+     * 
+     * @param file File.
+     * @param itemcases Serialized itemcases, keyed by location.
+     * @throws IOException
+     */
+    private void write(File file, Map<String, Object> itemcases)
+            throws IOException {
+        
+        // If this is a shard with no itemcases left.
+        if(this.sharded && itemcases.isEmpty()) {
+            
+            // Delete shard and its backups.
+            file.delete();
+            SnapshotFile.deleteBackups(file, this.backups);
+            
+            // Exit.
+            return;
+        }
+        
+        // If saving in binary.
+        if(this.format == Format.BINARY) {
+            
+            // Create list of records.
+            ArrayList<byte[]> records = new ArrayList<>(itemcases.size());
+            
+            // For every itemcase.
+            for(Object record : itemcases.values()) {
+                
+                // Add record.
+                records.add((byte[]) record);
+            }
+            
+            // Attempt to save to file.
+            SnapshotFile.write(file, this.backups, this.backupInterval,
+                    output -> BinaryFormat.write(output, records));
+            
+            // Exit.
+            return;
+        }
+        
+        // Attempt to save to file.
+        SnapshotFile.write(file, this.backups, this.backupInterval,
+                output -> YamlFormat.write(output, itemcases));
+    }
+    
+    /**
+     * Encode the given itemcase in this file's format.
+     * 
+     * @param itemcase Itemcase.
+     * @return Encoded itemcase.
+     * @throws IOException
+     */
+    private Object encode(Itemcase itemcase) throws IOException {
+        
+        // If saving in binary.
+        if(this.format == Format.BINARY) {
+            
+            // Return record.
+            return BinaryFormat.encode(itemcase);
+        }
+        
+        // Return map.
+        return YamlFormat.encode(itemcase);
+    }
+    
+    /**
+     * @param itemcase Itemcase.
+     * @return A unique key for the given itemcase based on location.
+     */
+    private static String getKey(Itemcase itemcase) {
+        
+        // Get block coordinates of Itemcase.
+        int blockX = itemcase.getLocation().getBlockX();
+        int blockY = itemcase.getLocation().getBlockY();
+        int blockZ = itemcase.getLocation().getBlockZ();
+        
+        // Return key.
+        return blockX + "/" + blockY + "/" + blockZ;
+    }
+    
+    /**
+     * @param change Journal entry.
+     * @return The key of the itemcase changed by the given journal entry.
+     * @throws IOException
+     */
+    private static String getKey(Journal.Entry change) throws IOException {
+        
+        // If itemcase was deleted.
+        if(change.getOperation() == Journal.DELETE) {
+            
+            // Return key.
+            return new String(change.getData(), StandardCharsets.UTF_8);
+        }
+        
+        // Return key of record or stock record.
+        return WorldFile.getKey(BinaryFormat.decodeCoordinates(
+                change.getData()));
+    }
+    
+    /**
+     * @param coordinates Block coordinates.
+     * @return The key of an itemcase at the given block coordinates.
+     */
+    private static String getKey(int[] coordinates) {
+        
+        // Return key.
+        return coordinates[0] + "/" + coordinates[1] + "/" + coordinates[2];
+    }
+    
+    /**
+     * Attempts to load all itemcases. If there is no file in this file's
+     * format but there is one in the other format, it is converted. If this
+     * file is lazy, itemcases are only indexed by chunk and none are created
+     * until {@link #loadChunk(int, int)}.
+     * 
+     * @return Array list of loaded itemcases.
+     * @throws java.io.IOException
+     */
+    @Override
+    public ArrayList<Itemcase> loadItemcases() throws IOException {
+        
+        // This only touches this file's own fields, which the main thread
+        // leaves alone until loaded is set, and creates objects that aren't
+        // yet visible to the server, so it is safe to call from a worker
+        // thread. Setting loaded last hands every field to the main thread.
+        
+        // If sharded.
+        if(this.sharded) {
+            
+            // Load shards.
+            this.loadShards();
+            
+        } else {
+            
+            // Load single file.
+            this.loadSingle();
+        }
+        
+        // Replay any changes that were not saved before the server stopped.
+        this.replay();
+        
+        // Create new array list to store loaded itemcases.
+        ArrayList<Itemcase> itemcases = new ArrayList<>();
+        
+        // If not lazy, otherwise entries have only been indexed and each
+        // itemcase is created when its chunk loads.
+        if(!this.lazy) {
+            
+            // For every entry.
+            for(Entry<String, Object> entry : this.entries.entrySet()) {
+                
+                // Create itemcase.
+                itemcases.add(this.decode(entry.getKey(), entry.getValue()));
+            }
+        }
+        
+        // Set loaded.
+        this.loaded = true;
+        
+        // Return list of loaded itemcases.
+        return itemcases;
+    }
+    
+    /**
+     * @return If itemcases are only created when their chunk loads.
+     */
+    @Override
+    public boolean isLazy() {
+        
+        // Return lazy.
+        return this.lazy;
+    }
+    
+    /**
+     * @param chunkX Chunk X coordinate.
+     * @param chunkZ Chunk Z coordinate.
+     * @return If the itemcases in the given chunk can be created without
+     * reading its region's shard.
+     */
+    @Override
+    public boolean isChunkReady(int chunkX, int chunkZ) {
+        
+        // Return if not sharded or the chunk's region has been read.
+        return !this.sharded || this.isRegionLoaded(
+                WorldFile.getRegionKey(chunkX >> 5, chunkZ >> 5));
+    }
+    
+    /**
+     * Takes the shard of the given chunk's region, to be read on a worker
+     * thread, unless it has been read already or is being read.
+     * 
+     * @param chunkX Chunk X coordinate.
+     * @param chunkZ Chunk Z coordinate.
+     * @return The shard to read, or null.
+     */
+    @Override
+    public Fetch fetchChunk(int chunkX, int chunkZ) {
+        
+        // Get region.
+        long region = WorldFile.getRegionKey(chunkX >> 5, chunkZ >> 5);
+        
+        // If chunk is ready or its region is already being read.
+        if(this.isChunkReady(chunkX, chunkZ) ||
+                !this.fetchingRegions.add(region)) {
+            
+            // Nothing to read.
+            return null;
+        }
+        
+        // Read shard.
+        return new Fetch() {
+            
+            /**
+             * Saved form of every itemcase in the shard.
+             */
+            private LinkedHashMap<String, Object> entries;
+            
+            /**
+             * The failure, if the shard could not be read.
+             */
+            private IOException failure;
+            
+            @Override
+            public void read() {
+                
+                // Attempt to read shard.
+                try {
+                    
+                    // Read entries.
+                    this.entries = WorldFile.this.readShard(region);
+                    
+                } catch (IOException | RuntimeException e) {
+                    
+                    // Remember failure.
+                    this.failure = new IOException("Failed to read region " +
+                            "of chunk: " + chunkX + ", " + chunkZ, e);
+                }
+            }
+            
+            @Override
+            public void apply() throws IOException {
+                
+                // Region is no longer being read.
+                WorldFile.this.fetchingRegions.remove(region);
+                
+                // If shard could not be read.
+                if(this.failure != null) {
+                    
+                    // Rethrow.
+                    throw this.failure;
+                }
+                
+                // If this file has been deleted, or the region was read by
+                // another fetch.
+                if(WorldFile.this.deleted ||
+                        !WorldFile.this.loadedRegions.add(region)) {
+                    
+                    // Exit.
+                    return;
+                }
+                
+                // Add entries.
+                WorldFile.this.putEntries(this.entries);
+            }
+        };
+    }
+    
+    /**
+     * Create the itemcases in the given chunk from their saved form. Unsaved
+     * changes are kept, so an itemcase that was dropped before it was flushed
+     * comes back as it was. If sharded, the chunk must be ready, see
+     * {@link #isChunkReady(int, int)}.
+     * 
+     * @param chunkX Chunk X coordinate.
+     * @param chunkZ Chunk Z coordinate.
+     * @return Array list of itemcases in chunk.
+     * @throws IOException
+     */
+    @Override
+    public ArrayList<Itemcase> loadChunk(int chunkX, int chunkZ)
+            throws IOException {
+        
+        // Apply changes held back while loading, so they are found below.
+        this.release();
+        
+        // Create new array list to store loaded itemcases.
+        ArrayList<Itemcase> itemcases = new ArrayList<>();
+        
+        // Get keys of itemcases in chunk.
+        HashSet<String> keys =
+                this.chunks.get(ItemcaseIndex.toChunkKey(chunkX, chunkZ));
+        
+        // If there are none.
+        if(keys == null) {
+            
+            // No itemcases.
+            return itemcases;
+        }
+        
+        // For every itemcase in chunk.
+        for(String key : keys) {
+            
+            // If itemcase has unsaved changes.
+            if(this.dirty.containsKey(key)) {
+                
+                // Get itemcase, null meaning deleted.
+                Itemcase itemcase = this.dirty.get(key);
+                
+                // If itemcase exists.
+                if(itemcase != null) {
+                    
+                    // Add to list.
+                    itemcases.add(itemcase);
+                }
+                
+                // Next itemcase.
+                continue;
+            }
+            
+            // Get saved form.
+            Object entry = this.entries.get(key);
+            
+            // If itemcase is saved.
+            if(entry != null) {
+                
+                // Create itemcase.
+                itemcases.add(this.decode(key, entry));
+            }
+        }
+        
+        // Return list of loaded itemcases.
+        return itemcases;
+    }
+    
+    /**
+     * Add the given key to the chunk index.
+     * 
+     * @param key Key.
+     */
+    private void index(String key) {
+        
+        // Add key to its chunk.
+        this.chunks.computeIfAbsent(WorldFile.getChunkKey(key),
+                (chunk) -> new HashSet<>()).add(key);
+    }
+    
+    /**
+     * Remove the given key from the chunk index.
+     * 
+     * @param key Key.
+     */
+    private void unindex(String key) {
+        
+        // Get chunk key.
+        long chunk = WorldFile.getChunkKey(key);
+        
+        // Get keys in chunk.
+        HashSet<String> keys = this.chunks.get(chunk);
+        
+        // If key is in chunk.
+        if(keys != null && keys.remove(key) && keys.isEmpty()) {
+            
+            // Forget empty chunk.
+            this.chunks.remove(chunk);
+        }
+    }
+    
+    /**
+     * @param key Key.
+     * @return The chunk key of the chunk that the given itemcase key is in.
+     */
+    private static long getChunkKey(String key) {
+        
+        // Split key by '/' to obtain individual coordinates.
+        String[] coordinates = key.split("/");
+        
+        // Return chunk key.
+        return ItemcaseIndex.toChunkKey(Integer.parseInt(coordinates[0]) >> 4,
+                Integer.parseInt(coordinates[2]) >> 4);
+    }
+    
+    /**
+     * Add the given saved form of an itemcase, keeping the indexes up to
+     * date.
+     * 
+     * @param key Key.
+     * @param entry Saved form.
+     */
+    private void putEntry(String key, Object entry) {
+        
+        // Put entry.
+        this.entries.put(key, entry);
+        
+        // If lazy.
+        if(this.lazy) {
+            
+            // Index itemcase so it is found when its chunk loads.
+            this.index(key);
+        }
+        
+        // If sharded.
+        if(this.sharded) {
+            
+            // Add key to its region.
+            this.regions.computeIfAbsent(WorldFile.getRegionKey(key),
+                    (region) -> new HashSet<>()).add(key);
+        }
+    }
+    
+    /**
+     * Add every given saved form.
+     * 
+     * @param entries Saved forms, keyed by location.
+     */
+    private void putEntries(Map<String, Object> entries) {
+        
+        // For every entry.
+        for(Entry<String, Object> entry : entries.entrySet()) {
+            
+            // Put entry.
+            this.putEntry(entry.getKey(), entry.getValue());
+        }
+    }
+    
+    /**
+     * Remove the saved form of an itemcase, keeping the indexes up to date.
+     * 
+     * @param key Key.
+     */
+    private void removeEntry(String key) {
+        
+        // Remove entry.
+        this.entries.remove(key);
+        
+        // If lazy.
+        if(this.lazy) {
+            
+            // Remove itemcase from index.
+            this.unindex(key);
+        }
+        
+        // If sharded.
+        if(this.sharded) {
+            
+            // Get keys in region.
+            HashSet<String> keys =
+                    this.regions.get(WorldFile.getRegionKey(key));
+            
+            // If there are any.
+            if(keys != null) {
+                
+                // Remove key from its region.
+                keys.remove(key);
+            }
+        }
+    }
+    
+    /**
+     * @param key Key.
+     * @return The region key of the region that the given itemcase key is in.
      */
-    public WorldFile(World world) {
+    private static long getRegionKey(String key) {
         
-        // Append world name to config file name.
-        super(world.getName() + "/itemcases.yml", "itemcases.yml");
+        // Split key by '/' to obtain individual coordinates.
+        String[] coordinates = key.split("/");
         
-        // Set world.
-        this.world = world;
+        // Return region key, a region being 32x32 chunks (512x512 blocks).
+        return WorldFile.getRegionKey(Integer.parseInt(coordinates[0]) >> 9,
+                Integer.parseInt(coordinates[2]) >> 9);
     }
     
     /**
-     * Saves the given Itemcase to config.
-     * 
-     * @param itemcase Itemcase.
-     * @throws java.io.IOException
+     * @param regionX Region X coordinate.
+     * @param regionZ Region Z coordinate.
+     * @return The region key of the given region.
      */
-    public void saveItemcase(Itemcase itemcase) throws IOException {
+    private static long getRegionKey(int regionX, int regionZ) {
         
-        // Get block coordinates of Itemcase.
-        int blockX = itemcase.getLocation().getBlockX();
-        int blockY = itemcase.getLocation().getBlockY();
-        int blockZ = itemcase.getLocation().getBlockZ();
+        // Pack coordinates.
+        return ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * @param format Format.
+     * @return The single file of this world in the given format.
+     */
+    private File getFile(Format format) {
+        
+        // Return file.
+        return format == Format.BINARY ? this.binaryFile : this.yamlFile;
+    }
+    
+    /**
+     * @param region Region key.
+     * @param format Format.
+     * @return The shard of the given region in the given format.
+     */
+    private File getShard(long region, Format format) {
+        
+        // Return file, named like Minecraft's own region files.
+        return new File(this.regionDirectory, "r." + (int) (region >> 32) +
+                "." + (int) region + (format == Format.BINARY ?
+                        ".dat" : ".yml"));
+    }
+    
+    /**
+     * @return The format that this file is not saved in.
+     */
+    private Format getOtherFormat() {
         
-        // Create a unique key for this itemcase based on location.
-        String key = "itemcases." + blockX + "/" + blockY + "/" + blockZ + ".";
+        // Return other format.
+        return this.format == Format.BINARY ? Format.YAML : Format.BINARY;
+    }
+    
+    /**
+     * @return The region key of every shard of this world, in either format.
+     */
+    private HashSet<Long> getShards() {
         
-        // Set this Itemcase's type.
-        this.file.set(key + "type", itemcase.getType().name());
+        // Create set.
+        HashSet<Long> shards = new HashSet<>();
         
-        // Set this Itemcase's Owner.
-        String uuid = itemcase.getOwner().getUniqueId().toString();
-        this.file.set(key + "owner", uuid);
+        // Get files in region directory.
+        File[] files = this.regionDirectory.listFiles();
         
-        // Set this Itemcase's ItemStack.
-        Map<String, Object> itemstack = itemcase.getItemStack().serialize();
-        this.file.set(key + "itemstack", itemstack);
+        // If directory doesn't exist.
+        if(files == null) {
+            
+            // No shards.
+            return shards;
+        }
         
-        // If itemcase is a shop.
-        if(itemcase.getType() != Type.SHOWCASE) {
+        // For every file.
+        for(File file : files) {
             
-            // Set storage type.
-            this.file.set(key + "shop.storage-type",
-                    itemcase.getStorageType().name());
+            // Split name into parts, shards being named r.<x>.<z>.<dat|yml>.
+            String[] parts = file.getName().split("\\.");
             
-            // If shop has finite storage.
-            if(itemcase.getStorageType() == StorageType.FINITE) {
-                
-                // Serialize inventory.
-                Map<String, Object> inventory = 
-                        this.serializeInventory(itemcase.getStorage());
+            // If file is not a shard, for example a backup.
+            if(parts.length != 4 || !parts[0].equals("r") ||
+                    !(parts[3].equals("dat") || parts[3].equals("yml"))) {
                 
-                // Set inventory.
-                this.file.set(key + "shop.storage", inventory);
+                // Skip.
+                continue;
             }
             
-            // If this itemcase buys.
-            if(itemcase.getType() == Type.SHOP_BUY ||
-                    itemcase.getType() == Type.SHOP_MULTI) {
+            // Attempt to get region coordinates.
+            try {
+                
+                // Add shard.
+                shards.add(WorldFile.getRegionKey(Integer.parseInt(parts[1]),
+                        Integer.parseInt(parts[2])));
+                
+            } catch (NumberFormatException e) {
                 
-                // Set buy price.
-                this.file.set(key + "shop.buy-price", itemcase.getBuyPrice());
+                // Not a shard, skip.
             }
+        }
+        
+        // Return shards.
+        return shards;
+    }
+    
+    /**
+     * Load the saved form of every itemcase from this world's single file.
+     * If there is no single file in this file's format but there is one in the
+     * other format, it is converted, and if there are only shards, they are
+     * joined.
+     * 
+     * @throws IOException
+     */
+    private void loadSingle() throws IOException {
+        
+        // Get the file for this format and the other format.
+        File file = this.getFile(this.format);
+        File otherFile = this.getFile(this.getOtherFormat());
+        
+        // If there is only a file in the other format.
+        if(!SnapshotFile.exists(file, this.backups) &&
+                SnapshotFile.exists(otherFile, this.backups)) {
+            
+            // Convert it.
+            this.convert(otherFile);
+            
+        // If there are only shards.
+        } else if(!SnapshotFile.exists(file, this.backups) &&
+                !this.getShards().isEmpty()) {
+            
+            // Join them.
+            this.join();
+            
+        } else {
+            
+            // Load entries.
+            this.putEntries(this.loadNewest(file, this.format));
+        }
+    }
+    
+    /**
+     * Load this world's shards. If there is still a single file, it is split
+     * into shards. If lazy, shards are instead fetched when one of their
+     * chunks loads.
+     * 
+     * @throws IOException
+     */
+    private void loadShards() throws IOException {
+        
+        // For this format and the other format.
+        for(Format single : new Format[] {this.format, this.getOtherFormat()}) {
             
-            // If this itemcase sells.
-            if(itemcase.getType() == Type.SHOP_SELL ||
-                    itemcase.getType() == Type.SHOP_MULTI) {
+            // If there is a single file in this format.
+            if(SnapshotFile.exists(this.getFile(single), this.backups)) {
                 
-                // Set sell price.
-                this.file.set(key + "shop.sell-price", itemcase.getSellPrice());
+                // Split it into shards.
+                this.split(single);
+                
+                // Exit.
+                return;
             }
-        } else {
+        }
+        
+        // If lazy.
+        if(this.lazy) {
             
-            // Set shop section to null.
-            this.file.set(key + "shop", null);
+            // Shards are loaded on demand.
+            return;
         }
         
-        // Attempt to save to file.
-        this.save(ItemCaseCore.instance);
+        // For every shard.
+        for(long region : this.getShards()) {
+            
+            // Load shard.
+            this.loadShard(region);
+        }
     }
     
     /**
-     * Deletes the given Itemcase from config.
+     * Load the shard of the given region, unless it has been already.
      * 
-     * @param itemcase Itemcase.
+     * @param region Region key.
      * @throws IOException
      */
-    public void deleteItemcase(Itemcase itemcase) throws IOException {
-        
-        // Get block coordinates of Itemcase.
-        int blockX = itemcase.getLocation().getBlockX();
-        int blockY = itemcase.getLocation().getBlockY();
-        int blockZ = itemcase.getLocation().getBlockZ();
+    private void loadShard(long region) throws IOException {
         
-        // Create a unique key for this itemcase based on location.
-        String key = "itemcases." + blockX + "/" + blockY + "/" + blockZ;
+        // If this region has already been loaded.
+        if(!this.loadedRegions.add(region)) {
+            
+            // Exit.
+            return;
+        }
         
-        // Delete itemcase.
-        this.file.set(key, null);
+        // Load entries.
+        this.putEntries(this.readShard(region));
+    }
+    
+    /**
+     * @param region Region key.
+     * @return If the given region's shard has been loaded, or has nothing to
+     * load.
+     */
+    private boolean isRegionLoaded(long region) {
         
-        // Attempt to save to file.
-        this.save(ItemCaseCore.instance);
+        // Every shard is loaded up front unless lazy.
+        return !this.lazy || this.loadedRegions.contains(region);
     }
     
     /**
-     * Attempts to load all itemcases from the config.
+     * Read the shard of the given region. A shard in the other format is
+     * converted. This only touches files, so it is safe to call from a
+     * worker thread while the main thread uses this file.
      * 
-     * @return Array list of loaded itemcases.
-     * @throws java.io.IOException
+     * @param region Region key.
+     * @return Saved form of every itemcase in the shard, keyed by location.
+     * @throws IOException
      */
-    public ArrayList<Itemcase> loadItemcases() throws IOException {
+    private LinkedHashMap<String, Object> readShard(long region)
+            throws IOException {
         
-        // Attempt to load raw config file.
-        this.load(ItemCaseCore.instance);
+        // Get the shard for this format and the other format.
+        File file = this.getShard(region, this.format);
+        File otherFile = this.getShard(region, this.getOtherFormat());
         
-        // Create new array list to store loaded itemcases.
-        ArrayList<Itemcase> itemcases = new ArrayList<>();
+        // If there is a shard in this format.
+        if(SnapshotFile.exists(file, this.backups)) {
+            
+            // Return entries.
+            return this.loadNewest(file, this.format);
+        }
         
-        // Get the list of keys (itemcase locations).
-        Set<String> keys = 
-                this.file.getConfigurationSection("itemcases").getKeys(false);
+        // Create map of entries.
+        LinkedHashMap<String, Object> entries = new LinkedHashMap<>();
         
-        // For every key (itemcase).
-        for(String key : keys) {
+        // If there is no shard at all.
+        if(!SnapshotFile.exists(otherFile, this.backups)) {
             
-            // Split key by '/' to obtain individual coordinates.
-            String[] coordinates = key.split("/");
-            
-            // Convert to block integer coordinates.
-            int blockX = Integer.parseInt(coordinates[0]);
-            int blockY = Integer.parseInt(coordinates[1]);
-            int blockZ = Integer.parseInt(coordinates[2]);
+            // Region has no itemcases yet.
+            return entries;
+        }
+        
+        // For every entry in the other format.
+        for(Entry<String, Object> entry : this.loadNewest(otherFile,
+                this.getOtherFormat()).entrySet()) {
             
-            // Create fuller key for ease of use later.
-            key = "itemcases." + key + ".";
+            // Re-encode in this format.
+            entries.put(entry.getKey(), this.encode(
+                    this.decode(entry.getKey(), entry.getValue())));
+        }
+        
+        // Write in this format.
+        this.write(file, entries);
+        
+        // Move old shard out of the way so it isn't loaded again.
+        this.moveToOld(otherFile);
+        
+        // Return entries.
+        return entries;
+    }
+    
+    /**
+     * Split this world's single file in the given format into shards.
+     * 
+     * @param single The format of the single file.
+     * @throws IOException
+     */
+    private void split(Format single) throws IOException {
+        
+        // Get single file.
+        File file = this.getFile(single);
+        
+        // For every entry.
+        for(Entry<String, Object> entry :
+                this.loadNewest(file, single).entrySet()) {
             
-            // Convert to location.
-            Location location = new Location(this.world, blockX, blockY,
-                    blockZ);
+            // Put entry, re-encoding it if the format has changed.
+            this.putEntry(entry.getKey(), single == this.format ?
+                    entry.getValue() : this.encode(
+                            this.decode(entry.getKey(), entry.getValue())));
+        }
+        
+        // Every region is now loaded.
+        this.loadedRegions.addAll(this.regions.keySet());
+        
+        // Write every shard.
+        this.write(this.copy(this.regions.keySet()));
+        
+        // Move single file out of the way so it isn't loaded again.
+        this.moveToOld(file);
+        
+        // Log.
+        ItemCaseCore.instance.getConsoleLogger().info("Split " +
+                this.entries.size() + " itemcases for world: " +
+                this.world.getName() + " into " + this.regions.size() +
+                " region files.");
+    }
+    
+    /**
+     * Join every shard of this world, in either format, into a single file.
+     * 
+     * @throws IOException
+     */
+    private void join() throws IOException {
+        
+        // Shards that have been joined.
+        ArrayList<File> joined = new ArrayList<>();
+        
+        // For every shard.
+        for(long region : this.getShards()) {
             
-            // Get type.
-            Type type = Itemcase.Type.valueOf(
-                    this.file.getString(key + ".type"));
+            // For both formats.
+            for(Format shard : new Format[] {Format.YAML, Format.BINARY}) {
+                
+                // Get shard.
+                File file = this.getShard(region, shard);
+                
+                // If there is no shard in this format.
+                if(!file.exists()) {
+                    
+                    // Skip.
+                    continue;
+                }
+                
+                // For every entry.
+                for(Entry<String, Object> entry :
+                        this.loadNewest(file, shard).entrySet()) {
+                    
+                    // Put entry, re-encoding it if the format differs.
+                    this.putEntry(entry.getKey(), shard == this.format ?
+                            entry.getValue() : this.encode(this.decode(
+                                    entry.getKey(), entry.getValue())));
+                }
+                
+                // Add to joined.
+                joined.add(file);
+            }
+        }
+        
+        // Write single file.
+        this.write(this.copy(Collections.emptyList()));
+        
+        // For every joined shard.
+        for(File file : joined) {
             
-            // Get owner.
-            UUID uuid = UUID.fromString(this.file.getString(key + ".owner"));
-            OfflinePlayer owner = Bukkit.getOfflinePlayer(uuid);
+            // Move shard out of the way so it isn't loaded again.
+            this.moveToOld(file);
+        }
+        
+        // Log.
+        ItemCaseCore.instance.getConsoleLogger().info("Joined " +
+                this.entries.size() + " itemcases for world: " +
+                this.world.getName() + " from " + joined.size() +
+                " region files.");
+    }
+    
+    /**
+     * Apply every change journaled before this file was opened to the loaded
+     * entries and save the result, so that changes made since the last save
+     * are not lost if the server crashed.
+     * 
+     * @throws IOException
+     */
+    private void replay() throws IOException {
+        
+        // Read journal.
+        ArrayList<Journal.Entry> changes = this.journal.read();
+        
+        // If there are no changes.
+        if(changes.isEmpty()) {
             
-            // Get ItemStack.
-            Map<String, Object> itemstackMap = 
-                    this.file.getConfigurationSection(key + "itemstack")
-                            .getValues(true);
-            ItemStack itemstack = ItemStack.deserialize(itemstackMap);
+            // Nothing to replay.
+            return;
+        }
+        
+        // Regions that have changed.
+        HashSet<Long> regions = new HashSet<>();
+        
+        // For every change in order.
+        for(Journal.Entry change : changes) {
             
-            // Create itemcase object.
-            Itemcase itemcase = new Itemcase(type, itemstack, location, owner);
+            // Get key.
+            String key = WorldFile.getKey(change);
             
-            // Spawn item.
-            itemcase.spawnItem();
+            // If sharded.
+            if(this.sharded) {
+                
+                // Get region.
+                long region = WorldFile.getRegionKey(key);
+                
+                // Make sure the region is loaded before it is changed.
+                this.loadShard(region);
+                
+                // Mark region changed.
+                regions.add(region);
+            }
             
-            // If itemcase is a shop.
-            if(type != Type.SHOWCASE) {
+            // If itemcase was saved.
+            if(change.getOperation() == Journal.SAVE ||
+                    change.getOperation() == Journal.LEGACY_SAVE) {
+                
+                // Get record, upgrading it if it is from an older version.
+                byte[] record = change.getOperation() == Journal.SAVE ?
+                        change.getData() :
+                        BinaryFormat.upgrade(change.getData());
                 
-                // Get storage type.
-                StorageType storageType = StorageType.valueOf(
-                        this.file.getString(key + "shop.storage-type"));
+                // Replace itemcase, re-encoding it if saving in YAML.
+                this.putEntry(key, this.format == Format.BINARY ? record :
+                        YamlFormat.encode(BinaryFormat.decode(record,
+                        this.world)));
                 
-                // Set storage type.
-                itemcase.setStorageType(storageType);
+            // If itemcase was deleted.
+            } else if(change.getOperation() == Journal.DELETE) {
                 
-                // If itemcase has finite storage.
-                if(storageType == StorageType.FINITE) {
+                // Remove itemcase.
+                this.removeEntry(key);
+                
+            // If stock was set.
+            } else if(change.getOperation() == Journal.STOCK) {
+                
+                // Get saved form.
+                Object entry = this.entries.get(key);
+                
+                // If itemcase still exists.
+                if(entry != null) {
                     
-                    // Deserialse inventory.
-                    Inventory inventory = this.deserializeInventory(
-                            this.file.getConfigurationSection(
-                                    key + "shop.storage").getValues(false));
+                    // Set stock.
+                    Itemcase itemcase = this.decode(key, entry);
+                    BinaryFormat.decodeStock(change.getData(), itemcase);
                     
-                    // Set inventory.
-                    itemcase.setStorage(inventory);
+                    // Replace itemcase.
+                    this.putEntry(key, this.encode(itemcase));
                 }
+            }
+        }
+        
+        // Save the result.
+        this.write(this.copy(regions));
+        
+        // The journal is now in the file.
+        this.journal.delete(Integer.MAX_VALUE);
+        
+        // Log.
+        ItemCaseCore.instance.getConsoleLogger().info("Recovered " +
+                changes.size() + " unsaved itemcase changes for world: " +
+                this.world.getName() + ".");
+    }
+    
+    /**
+     * Convert the given file in the other format to this file's format.
+     * 
+     * @param otherFile The file in the other format.
+     * @throws IOException
+     */
+    private void convert(File otherFile) throws IOException {
+        
+        // Record start time and size for comparison.
+        long start = System.nanoTime();
+        long oldSize = SnapshotFile.getGenerations(otherFile, this.backups)
+                .get(0).length();
+        
+        // Get the format of the other file.
+        Format otherFormat = this.getOtherFormat();
+        
+        // Load entries in the other format.
+        LinkedHashMap<String, Object> otherEntries =
+                this.loadNewest(otherFile, otherFormat);
+        
+        // Record load time.
+        long loaded = System.nanoTime();
+        
+        // Re-encode every itemcase in this format.
+        for(Entry<String, Object> entry : otherEntries.entrySet()) {
+            this.putEntry(entry.getKey(), this.encode(
+                    this.decode(entry.getKey(), entry.getValue())));
+        }
+        
+        // Write in this format.
+        this.write(this.copy(Collections.emptyList()));
+        
+        // Record save time.
+        long saved = System.nanoTime();
+        
+        // Move old file out of the way so it isn't loaded again.
+        this.moveToOld(otherFile);
+        
+        // Get new file.
+        File file = this.getFile(this.format);
+        
+        // Log comparison.
+        ItemCaseCore.instance.getConsoleLogger().info("Converted " +
+                this.entries.size() + " itemcases for world: " +
+                this.world.getName() + " from " + otherFormat.name() + " (" +
+                oldSize + " bytes, loaded in " +
+                (loaded - start) / 1000000 + "ms) to " + this.format.name() +
+                " (" + file.length() + " bytes, saved in " +
+                (saved - loaded) / 1000000 + "ms).");
+    }
+    
+    /**
+     * Attempts to load the saved form of every itemcase in the given file
+     * from its newest snapshot that is intact, falling back to older backups
+     * if the newer ones can't be read.
+     * 
+     * @param file File.
+     * @param format The format of the file.
+     * @return Saved form of every itemcase, keyed by location.
+     * @throws IOException If no snapshot could be read.
+     */
+    private LinkedHashMap<String, Object> loadNewest(File file, Format format)
+            throws IOException {
+        
+        // The first failure, if any.
+        IOException failure = null;
+        
+        // For every snapshot, newest first.
+        for(File snapshot : SnapshotFile.getGenerations(file, this.backups)) {
+            
+            // Create map of loaded entries.
+            LinkedHashMap<String, Object> entries = new LinkedHashMap<>();
+            
+            // Attempt to load snapshot.
+            try {
                 
-                // If this itemcase buys.
-                if(type == Type.SHOP_BUY || type == Type.SHOP_MULTI) {
-
-                    // Get buy price.
-                    double buyPrice = 
-                            this.file.getDouble(key + "shop.buy-price");
-                    
-                    // Set buy price.
-                    itemcase.setBuyPrice(buyPrice);
+                // Load entries.
+                if(format == Format.BINARY) {
+                    this.loadBinary(snapshot, entries);
+                } else {
+                    this.loadYaml(snapshot, entries);
                 }
-
-                // If this itemcase sells.
-                if(type == Type.SHOP_SELL || type == Type.SHOP_MULTI) {
-
-                    // Get sell price.
-                    double sellPrice = 
-                            this.file.getDouble(key + "shop.sell-price");
+                
+                // If this is a backup.
+                if(!snapshot.equals(file)) {
                     
-                    // Set sell price.
-                    itemcase.setSellPrice(sellPrice);
+                    // Log.
+                    ItemCaseCore.instance.getConsoleLogger().warning(
+                            "Loaded itemcases for world: " +
+                            this.world.getName() + " from backup: " +
+                            snapshot.getName());
+                }
+                
+                // Return entries.
+                return entries;
+                
+            } catch (IOException | RuntimeException e) {
+                
+                // Log.
+                ItemCaseCore.instance.getConsoleLogger().warning(
+                        "Failed to load itemcases from: " + snapshot.getPath() +
+                        " (" + e.getMessage() + "), trying an older backup.");
+                
+                // Remember first failure.
+                if(failure == null) {
+                    failure = new IOException("Failed to load itemcases " +
+                            "from: " + file.getPath(), e);
                 }
             }
+        }
+        
+        // If every snapshot failed.
+        if(failure != null) {
             
-            // Add to list.
-            itemcases.add(itemcase);
+            // Rethrow.
+            throw failure;
         }
         
-        // Return list of loaded itemcases.
-        return itemcases;
+        // No file yet, so no itemcases.
+        return new LinkedHashMap<>();
     }
     
     /**
-     * Delete directory and config.
+     * Attempts to load the record of every itemcase from the given binary
+     * file.
      * 
+     * @param snapshot File.
+     * @param entries Map to add records to.
      * @throws IOException
      */
-    public void deleteDirectory() throws IOException {
-        
-        // Create file reference.
-        File fileReference = new File(ItemCaseCore.instance.getDataFolder(),
-                this.world.getName());
+    private void loadBinary(File snapshot, Map<String, Object> entries)
+            throws IOException {
         
-        // Nullify reference.
-        this.file = null;
+        // For every record.
+        for(byte[] record : BinaryFormat.read(snapshot)) {
             
-        // Delete directory.
-        FileUtils.deleteDirectory(fileReference);
+            // Keep the record as this itemcase's saved form until it changes.
+            entries.put(WorldFile.getKey(
+                    BinaryFormat.decodeCoordinates(record)), record);
+        }
     }
     
     /**
-     * Serialize the given inventory.
+     * Attempts to load the section of every itemcase from the given YAML file.
      * 
-     * @param inventory Inventory.
-     * @return Map.
+     * @param snapshot File.
+     * @param entries Map to add sections to.
+     * @throws java.io.IOException
      */
-    private Map<String, Object> serializeInventory(Inventory inventory) {
+    private void loadYaml(File snapshot, Map<String, Object> entries)
+            throws IOException {
         
-        // Create map.
-        Map<String, Object> map = new HashMap();
+        // Keep each loaded section as its itemcase's saved form until it
+        // changes.
+        this.file = YamlFormat.read(snapshot, entries);
+    }
+    
+    /**
+     * Create an itemcase from its saved form.
+     * 
+     * @param key Key.
+     * @param entry A record, a section loaded from file or a serialized map.
+     * @return Itemcase.
+     * @throws IOException
+     */
+    private Itemcase decode(String key, Object entry) throws IOException {
+        
+        // If entry is a record.
+        if(entry instanceof byte[]) {
+            
+            // Decode record.
+            return BinaryFormat.decode((byte[]) entry, this.world);
+        }
+        
+        // If entry is a section loaded from file.
+        if(entry instanceof ConfigurationSection) {
+            
+            // Decode section.
+            return YamlFormat.decode(key, (ConfigurationSection) entry,
+                    this.world);
+        }
         
-        // Set size.
-        map.put("size", inventory.getSize());
+        // Entry is a serialized map, so read it as a section.
+        return YamlFormat.decode(key, new MemoryConfiguration().createSection(
+                "itemcase", (Map<?, ?>) entry), this.world);
+    }
+    
+    /**
+     * Move this world's file out of the way by adding the extension ".old",
+     * once its itemcases have been moved to another storage.
+     * 
+     * @throws IOException
+     */
+    public void moveToOld() throws IOException {
         
-        // Set name.
-        map.put("name", inventory.getName());
+        // Move file.
+        this.moveToOld(this.getFile(this.format));
+    }
+    
+    /**
+     * Move the given file out of the way by adding the extension ".old" and
+     * delete its backups, which are now out of date.
+     * 
+     * @param file File.
+     * @throws IOException
+     */
+    private void moveToOld(File file) throws IOException {
         
-        // Loop through all content slots.
-        for(int i = 0; i < inventory.getSize(); i++) {
+        // If file exists.
+        if(file.exists()) {
             
-            // Check if content slot has any items.
-            if (inventory.getItem(i) != null) {
-                
-                // Serialize itemstack in content slot.
-                map.put("" + i, inventory.getItem(i).serialize());
-            }
+            // Move file, replacing any previous old file.
+            Files.move(file.toPath(),
+                    new File(file.getPath() + ".old").toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
         }
         
-        // Return map.
-        return map;
+        // Delete backups.
+        SnapshotFile.deleteBackups(file, this.backups);
     }
     
     /**
-     * Deserialize inventory from given map.
+     * Delete directory and config.
      * 
-     * @param map Map.
-     * @return Inventory.
+     * @throws IOException
      */
-    private Inventory deserializeInventory(Map<String, Object> map) {
+    @Override
+    public void delete() throws IOException {
         
-        // Get size.
-        int size = (int) map.get("size");
+        // Stop journaling.
+        this.journal.close();
         
-        // Get name.
-        String name = (String) map.get("name");
+        // Create directory reference.
+        File directory = new File(ItemCaseCore.instance.getDataFolder(),
+                this.world.getName());
         
-        // Create inventory.
-        Inventory inventory = Bukkit.createInventory(null, size, name);
+        // Nullify reference.
+        this.file = null;
         
-        // For every map entry.
-        for(Entry<String, Object> entry : map.entrySet()) {
-            
-            // Check entry is parameter.
-            if(entry.getKey().equals("size") ||
-                    entry.getKey().equals("name")) {
-                
-                // Skip.
-                continue;
-            }
-            
-            // Get slot.
-            int slot = Integer.parseInt(entry.getKey());
-            
-            // Get memory section.
-            MemorySection section = (MemorySection) entry.getValue();
+        // Prevent any pending writes from recreating the file.
+        this.deleted = true;
+        this.loaded = false;
             
-            // Deserialize item.
-            ItemStack item = ItemStack.deserialize((Map<String, Object>) 
-                    section.getValues(true));
-            
-            // Set item in slot.
-            inventory.setItem(slot, item);
-        }
-        
-        // Return inventory.
-        return inventory;
+        // Delete directory.
+        FileUtils.deleteDirectory(directory);
     }
 }
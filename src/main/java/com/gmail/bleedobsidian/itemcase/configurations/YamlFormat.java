@@ -0,0 +1,364 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase.configurations;
+
+import com.gmail.bleedobsidian.itemcase.Itemcase;
+import com.gmail.bleedobsidian.itemcase.Itemcase.StorageType;
+import com.gmail.bleedobsidian.itemcase.Itemcase.Type;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.MemorySection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * The YAML format for Itemcase saves.
+ *
+ * A file has a single section named "itemcases" that holds a section for
+ * every Itemcase, keyed by its block coordinates separated by '/'.
+ *
+ * @author Jesse Prescott (BleedObsidian)
+ */
+public final class YamlFormat {
+
+    /**
+     * This class only has static methods.
+     */
+    private YamlFormat() {
+    }
+
+    /**
+     * Encode the given Itemcase as a map.
+     *
+     * @param itemcase Itemcase.
+     * @return Map.
+     */
+    public static Map<String, Object> encode(Itemcase itemcase) {
+
+        // Create map.
+        Map<String, Object> map = new LinkedHashMap<>();
+
+        // Set this Itemcase's type.
+        map.put("type", itemcase.getType().name());
+
+        // Set this Itemcase's Owner.
+        map.put("owner", itemcase.getOwner().getUniqueId().toString());
+
+        // Set this Itemcase's ItemStack.
+        map.put("itemstack", itemcase.getItemStack().serialize());
+
+        // If itemcase is a shop.
+        if(itemcase.getType() != Type.SHOWCASE) {
+
+            // Create shop map.
+            Map<String, Object> shop = new LinkedHashMap<>();
+
+            // Set storage type.
+            shop.put("storage-type", itemcase.getStorageType().name());
+
+            // If shop has finite storage.
+            if(itemcase.getStorageType() == StorageType.FINITE) {
+
+                // Set inventory.
+                shop.put("storage",
+                        YamlFormat.serializeInventory(itemcase.getStorage()));
+            }
+
+            // If shop has virtual storage.
+            if(itemcase.getStorageType() == StorageType.VIRTUAL) {
+
+                // Set quantity.
+                shop.put("quantity", itemcase.getQuantity());
+            }
+
+            // If this itemcase buys.
+            if(itemcase.getType() == Type.SHOP_BUY ||
+                    itemcase.getType() == Type.SHOP_MULTI) {
+
+                // Set buy price.
+                shop.put("buy-price", itemcase.getBuyPrice());
+            }
+
+            // If this itemcase sells.
+            if(itemcase.getType() == Type.SHOP_SELL ||
+                    itemcase.getType() == Type.SHOP_MULTI) {
+
+                // Set sell price.
+                shop.put("sell-price", itemcase.getSellPrice());
+            }
+
+            // Set shop.
+            map.put("shop", shop);
+        }
+
+        // Return map.
+        return map;
+    }
+
+    /**
+     * Decode an Itemcase from the given section.
+     *
+     * @param key The key of the Itemcase, its block coordinates.
+     * @param section Section.
+     * @param world The world the Itemcase is in.
+     * @return Itemcase.
+     */
+    public static Itemcase decode(String key, ConfigurationSection section,
+            World world) {
+
+        // Split key by '/' to obtain individual coordinates.
+        String[] coordinates = key.split("/");
+
+        // Convert to block integer coordinates.
+        int blockX = Integer.parseInt(coordinates[0]);
+        int blockY = Integer.parseInt(coordinates[1]);
+        int blockZ = Integer.parseInt(coordinates[2]);
+
+        // Convert to location.
+        Location location = new Location(world, blockX, blockY, blockZ);
+
+        // Get type.
+        Type type = Itemcase.Type.valueOf(section.getString("type"));
+
+        // Get owner.
+        UUID uuid = UUID.fromString(section.getString("owner"));
+        OfflinePlayer owner = Bukkit.getOfflinePlayer(uuid);
+
+        // Get ItemStack.
+        Map<String, Object> itemstackMap =
+                section.getConfigurationSection("itemstack").getValues(true);
+        ItemStack itemstack = ItemStack.deserialize(itemstackMap);
+
+        // Create itemcase object.
+        Itemcase itemcase = new Itemcase(type, itemstack, location, owner);
+
+        // If itemcase is a shop.
+        if(type != Type.SHOWCASE) {
+
+            // Get storage type.
+            StorageType storageType = StorageType.valueOf(
+                    section.getString("shop.storage-type"));
+
+            // Set storage type.
+            itemcase.setStorageType(storageType);
+
+            // If itemcase has finite storage.
+            if(storageType == StorageType.FINITE) {
+
+                // Deserialse inventory.
+                Inventory inventory = YamlFormat.deserializeInventory(
+                        section.getConfigurationSection("shop.storage")
+                                .getValues(false), itemcase);
+
+                // Set inventory.
+                itemcase.setStorage(inventory);
+            }
+
+            // If itemcase has virtual storage.
+            if(storageType == StorageType.VIRTUAL) {
+
+                // Set quantity.
+                itemcase.setQuantity(section.getLong("shop.quantity"));
+            }
+
+            // If this itemcase buys.
+            if(type == Type.SHOP_BUY || type == Type.SHOP_MULTI) {
+
+                // Get buy price.
+                double buyPrice = section.getDouble("shop.buy-price");
+
+                // Set buy price.
+                itemcase.setBuyPrice(buyPrice);
+            }
+
+            // If this itemcase sells.
+            if(type == Type.SHOP_SELL || type == Type.SHOP_MULTI) {
+
+                // Get sell price.
+                double sellPrice = section.getDouble("shop.sell-price");
+
+                // Set sell price.
+                itemcase.setSellPrice(sellPrice);
+            }
+        }
+
+        // Return itemcase.
+        return itemcase;
+    }
+
+    /**
+     * Write the given Itemcases to the given stream.
+     *
+     * @param stream Stream.
+     * @param itemcases Itemcases encoded as maps or loaded sections, keyed
+     * by block coordinates.
+     * @throws IOException
+     */
+    public static void write(OutputStream stream, Map<String, Object> itemcases)
+            throws IOException {
+
+        // Create configuration.
+        YamlConfiguration configuration = new YamlConfiguration();
+
+        // Create itemcases section so that it exists even if empty.
+        configuration.createSection("itemcases");
+
+        // For every itemcase.
+        for(Entry<String, Object> entry : itemcases.entrySet()) {
+
+            // Set itemcase.
+            configuration.set("itemcases." + entry.getKey(), entry.getValue());
+        }
+
+        // Write configuration.
+        stream.write(configuration.saveToString()
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read the section of every Itemcase from the given file.
+     *
+     * @param file File.
+     * @param itemcases Map to add sections to, keyed by block coordinates.
+     * @return The loaded configuration.
+     * @throws IOException If the file could not be read or is not intact.
+     */
+    public static YamlConfiguration read(File file,
+            Map<String, Object> itemcases) throws IOException {
+
+        // Attempt to load raw config file.
+        YamlConfiguration configuration = new YamlConfiguration();
+        try {
+            configuration.load(file);
+        } catch (InvalidConfigurationException e) {
+            throw new IOException("Invalid YAML.", e);
+        }
+
+        // Get itemcases section.
+        ConfigurationSection section =
+                configuration.getConfigurationSection("itemcases");
+
+        // Every file has an itemcases section, so if it is missing the file
+        // is not intact.
+        if(section == null) {
+            throw new IOException("Missing itemcases section.");
+        }
+
+        // For every key (itemcase location).
+        for(String key : section.getKeys(false)) {
+
+            // Add section.
+            itemcases.put(key, section.get(key));
+        }
+
+        // Return configuration.
+        return configuration;
+    }
+
+    /**
+     * Serialize the given inventory.
+     *
+     * @param inventory Inventory.
+     * @return Map.
+     */
+    private static Map<String, Object> serializeInventory(Inventory inventory) {
+
+        // Create map.
+        Map<String, Object> map = new HashMap();
+
+        // Set size.
+        map.put("size", inventory.getSize());
+
+        // Set name.
+        map.put("name", inventory.getName());
+
+        // Loop through all content slots.
+        for(int i = 0; i < inventory.getSize(); i++) {
+
+            // Check if content slot has any items.
+            if (inventory.getItem(i) != null) {
+
+                // Serialize itemstack in content slot.
+                map.put("" + i, inventory.getItem(i).serialize());
+            }
+        }
+
+        // Return map.
+        return map;
+    }
+
+    /**
+     * Deserialize inventory from given map.
+     *
+     * @param map Map.
+     * @param holder Holder of the inventory.
+     * @return Inventory.
+     */
+    private static Inventory deserializeInventory(Map<String, Object> map,
+            InventoryHolder holder) {
+
+        // Get size.
+        int size = (int) map.get("size");
+
+        // Get name.
+        String name = (String) map.get("name");
+
+        // Create inventory.
+        Inventory inventory = Bukkit.createInventory(holder, size, name);
+
+        // For every map entry.
+        for(Entry<String, Object> entry : map.entrySet()) {
+
+            // Check entry is parameter.
+            if(entry.getKey().equals("size") ||
+                    entry.getKey().equals("name")) {
+
+                // Skip.
+                continue;
+            }
+
+            // Get slot.
+            int slot = Integer.parseInt(entry.getKey());
+
+            // Get memory section.
+            MemorySection section = (MemorySection) entry.getValue();
+
+            // Deserialize item.
+            ItemStack item = ItemStack.deserialize((Map<String, Object>)
+                    section.getValues(true));
+
+            // Set item in slot.
+            inventory.setItem(slot, item);
+        }
+
+        // Return inventory.
+        return inventory;
+    }
+}
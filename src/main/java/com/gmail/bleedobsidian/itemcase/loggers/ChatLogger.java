@@ -15,12 +15,20 @@
 package com.gmail.bleedobsidian.itemcase.loggers;
 
 import com.gmail.bleedobsidian.itemcase.LanguageTranslator;
+import com.gmail.bleedobsidian.itemcase.Placeholders;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import net.md_5.bungee.api.ChatColor;
 import org.bukkit.entity.Player;
 
 /**
  * Utility class used for communicating to players in game with a translator.
  * 
+ * Messages that make up a screen, such as an order or help page, can be
+ * collected into a {@link Batch} and sent at once. Screens that never change
+ * are rendered once per language and then reused.
+ * 
  * @author Jesse Prescott (BleedObsidian).
  */
 public final class ChatLogger {
@@ -36,6 +44,12 @@ public final class ChatLogger {
      */
     private final LanguageTranslator translator;
     
+    /**
+     * Rendered screens that never change, keyed by language and screen name.
+     */
+    private final ConcurrentHashMap<String, String[]> screens =
+            new ConcurrentHashMap<>();
+    
     /**
      * Constructor.
      * 
@@ -55,15 +69,171 @@ public final class ChatLogger {
      */
     public void message(Player player, String string) {
         
+        // Send message without placeholders.
+        this.message(player, string, Placeholders.NONE);
+    }
+    
+    /**
+     * Send given Player a message, with the given placeholder values filled
+     * in.
+     * 
+     * @param player Player to send message.
+     * @param string Message key or message.
+     * @param placeholders Placeholder values.
+     */
+    public void message(Player player, String string,
+            Placeholders placeholders) {
+        
+        // Send message.
+        player.sendMessage(this.format(player, string, placeholders));
+    }
+    
+    /**
+     * @param player Player to send messages.
+     * @return An empty batch of messages to send to the given player.
+     */
+    public Batch batch(Player player) {
+        
+        // Return new batch.
+        return new Batch(player);
+    }
+    
+    /**
+     * Send given Player a screen of messages that is the same every time it
+     * is shown in the same language, such as a help page. The screen is only
+     * built the first time it is shown in each language.
+     * 
+     * @param player Player to send screen.
+     * @param name A name unique to this screen, including anything that
+     * changes its contents such as the label used.
+     * @param builder Adds the messages of the screen to a batch.
+     */
+    public void screen(Player player, String name, Consumer<Batch> builder) {
+        
+        // Create key.
+        String key = this.translator.getLanguage(player) + ":" + name;
+        
+        // Get rendered screen.
+        String[] lines = this.screens.get(key);
+        
+        // If screen has not been rendered in this language yet.
+        if(lines == null) {
+            
+            // Render screen and keep.
+            Batch batch = new Batch(player);
+            builder.accept(batch);
+            lines = batch.getLines();
+            this.screens.put(key, lines);
+        }
+        
+        // Send screen.
+        player.sendMessage(lines);
+    }
+    
+    /**
+     * Forget every rendered screen, once translations have been reloaded.
+     */
+    public void clearScreens() {
+        
+        // Clear screens.
+        this.screens.clear();
+    }
+    
+    /**
+     * Translate the given message for the given player and add the prefix.
+     * 
+     * @param player Player.
+     * @param string Message key or message.
+     * @param placeholders Placeholder values.
+     * @return Formatted message.
+     */
+    private String format(Player player, String string,
+            Placeholders placeholders) {
+        
         // If string is a message key.
         if(this.translator.isKey(string)) {
             
             // Translate.
-            string = this.translator.getTranslation(string);
+            string = this.translator.getTranslation(player, string,
+                    placeholders);
             
         }
         
-        // Send message.
-        player.sendMessage(ChatLogger.PREFIX + string);
+        // Return with prefix.
+        return ChatLogger.PREFIX + string;
+    }
+    
+    /**
+     * A number of messages sent to a player at once.
+     */
+    public final class Batch {
+        
+        /**
+         * Player to send messages.
+         */
+        private final Player player;
+        
+        /**
+         * Formatted messages, in order.
+         */
+        private final ArrayList<String> lines = new ArrayList<>();
+        
+        /**
+         * Constructor.
+         * 
+         * @param player Player to send messages.
+         */
+        private Batch(Player player) {
+            
+            // Set player.
+            this.player = player;
+        }
+        
+        /**
+         * Add a message.
+         * 
+         * @param string Message key or message.
+         * @return This batch.
+         */
+        public Batch add(String string) {
+            
+            // Add without placeholders.
+            return this.add(string, Placeholders.NONE);
+        }
+        
+        /**
+         * Add a message, with the given placeholder values filled in.
+         * 
+         * @param string Message key or message.
+         * @param placeholders Placeholder values.
+         * @return This batch.
+         */
+        public Batch add(String string, Placeholders placeholders) {
+            
+            // Format and add message.
+            this.lines.add(ChatLogger.this.format(this.player, string,
+                    placeholders));
+            
+            // Return this batch.
+            return this;
+        }
+        
+        /**
+         * Send every message in this batch.
+         */
+        public void send() {
+            
+            // Send messages.
+            this.player.sendMessage(this.getLines());
+        }
+        
+        /**
+         * @return Every formatted message in this batch.
+         */
+        private String[] getLines() {
+            
+            // Return array of lines.
+            return this.lines.toArray(new String[0]);
+        }
     }
 }
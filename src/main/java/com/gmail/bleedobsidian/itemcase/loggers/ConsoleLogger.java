@@ -16,6 +16,7 @@
 package com.gmail.bleedobsidian.itemcase.loggers;
 
 import com.gmail.bleedobsidian.itemcase.LanguageTranslator;
+import com.gmail.bleedobsidian.itemcase.Placeholders;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
@@ -81,6 +82,25 @@ public final class ConsoleLogger extends Logger {
         super.log(logRecord);
     }
     
+    /**
+     * Info message with the given placeholder values filled in.
+     * 
+     * @param message Message key or message.
+     * @param placeholders Placeholder values.
+     */
+    public void info(String message, Placeholders placeholders) {
+        
+        // If message is a message key.
+        if(this.translator.isKey(message)) {
+            
+            // Translate.
+            message = this.translator.getTranslation(message, placeholders);
+        }
+        
+        // Log message.
+        this.log(Level.INFO, message);
+    }
+    
     @Override
     public void warning(String message) {
         
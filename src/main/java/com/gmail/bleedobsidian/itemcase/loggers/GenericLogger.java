@@ -15,7 +15,9 @@
 package com.gmail.bleedobsidian.itemcase.loggers;
 
 import com.gmail.bleedobsidian.itemcase.LanguageTranslator;
+import com.gmail.bleedobsidian.itemcase.Placeholders;
 import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
 
 /**
  * Utility class used for communicating to command senders in different
@@ -49,12 +51,37 @@ public final class GenericLogger {
      */
     public void message(CommandSender sender, String string) {
         
+        // Send message without placeholders.
+        this.message(sender, string, Placeholders.NONE);
+    }
+    
+    /**
+     * Send given CommandSender a message, with the given placeholder values
+     * filled in.
+     * 
+     * @param sender CommandSender.
+     * @param string Message key or message.
+     * @param placeholders Placeholder values.
+     */
+    public void message(CommandSender sender, String string,
+            Placeholders placeholders) {
+        
         // If string is a message key.
         if(this.translator.isKey(string)) {
             
-            // Translate.
-            string = this.translator.getTranslation(string);
-            
+            // If sender is a player.
+            if(sender instanceof Player) {
+                
+                // Translate in player's language.
+                string = this.translator.getTranslation((Player) sender,
+                        string, placeholders);
+                
+            } else {
+                
+                // Translate.
+                string = this.translator.getTranslation(string,
+                        placeholders);
+            }
         }
         
         // Send message.
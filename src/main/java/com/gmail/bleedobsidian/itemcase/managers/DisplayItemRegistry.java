@@ -0,0 +1,130 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase.managers;
+
+import com.gmail.bleedobsidian.itemcase.Itemcase;
+import java.util.HashMap;
+import java.util.UUID;
+import org.bukkit.Chunk;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Item;
+
+/**
+ * A registry of every live display item entity, keyed by the entity's UUID.
+ * This allows display items to be recognised and matched to their Itemcase
+ * without searching the world for them.
+ *
+ * @author Jesse Prescott (BleedObsidian)
+ */
+public final class DisplayItemRegistry {
+
+    /**
+     * A HashMap of each display item's UUID and the Itemcase it belongs to.
+     */
+    private final HashMap<UUID, Itemcase> itemcases = new HashMap<>();
+
+    /**
+     * Register the given item as the display item of the given Itemcase.
+     *
+     * @param itemcase Itemcase.
+     * @param item Display item.
+     */
+    public void register(Itemcase itemcase, Item item) {
+
+        // Add to map.
+        this.itemcases.put(item.getUniqueId(), itemcase);
+    }
+
+    /**
+     * Forget the given display item.
+     *
+     * @param item Display item.
+     */
+    public void unregister(Item item) {
+
+        // Remove from map.
+        this.itemcases.remove(item.getUniqueId());
+    }
+
+    /**
+     * @param uuid UUID of an item entity.
+     * @return The Itemcase the item is displayed by, or null if it is not a
+     * registered display item.
+     */
+    public Itemcase getItemcase(UUID uuid) {
+
+        // Return itemcase.
+        return this.itemcases.get(uuid);
+    }
+
+    /**
+     * Remove duplicate and orphaned display items from the given chunk, and
+     * make sure every Itemcase refers to the current entity instance of its
+     * display item. This is called when a chunk loads, as that is the only
+     * time entities that we don't know about can appear.
+     *
+     * @param chunk Chunk.
+     */
+    public void cleanChunk(Chunk chunk) {
+
+        // For every entity in chunk.
+        for(Entity entity : chunk.getEntities()) {
+
+            // If the entity is not an item, skip.
+            if(!(entity instanceof Item)) {
+                continue;
+            }
+
+            // Cast to item.
+            Item item = (Item) entity;
+
+            // Get the itemcase this item belongs to.
+            Itemcase itemcase = this.itemcases.get(item.getUniqueId());
+
+            // If the item is registered.
+            if(itemcase != null) {
+
+                // The chunk has been reloaded so the entity instance has
+                // changed, update the itemcase's reference.
+                itemcase.setDisplayItem(item);
+
+            // If the item is some form of display item we don't know about.
+            } else if(Itemcase.isItemcaseDisplayItem(item)) {
+
+                // Remove this item as it is probably left over from a crash
+                // or a duplicate caused by nms.
+                item.remove();
+            }
+        }
+    }
+
+    /**
+     * Forget every display item.
+     */
+    public void clear() {
+
+        // Clear map.
+        this.itemcases.clear();
+    }
+
+    /**
+     * @return The number of registered display items.
+     */
+    public int size() {
+
+        // Return size.
+        return this.itemcases.size();
+    }
+}
@@ -0,0 +1,578 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase.managers;
+
+import com.gmail.bleedobsidian.itemcase.Itemcase;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+/**
+ * A spatial index of Itemcases. Itemcases are grouped per world and keyed by
+ * their block coordinates packed in to a single long, so that looking up,
+ * adding and removing an Itemcase costs a single hash probe regardless of how
+ * many Itemcases exist.
+ * 
+ * The index also keeps track of every block that is protected by an Itemcase,
+ * that is the Itemcase's own block and, for Itemcases that are not slabs, the
+ * block above it where the display item sits. Itemcases are additionally
+ * grouped by chunk so that they can be found when a chunk loads or unloads.
+ *
+ * @author Jesse Prescott (BleedObsidian)
+ */
+public final class ItemcaseIndex {
+
+    /**
+     * A HashMap of each world and the Itemcases within it keyed by block key.
+     */
+    private final HashMap<World, HashMap<Long, Itemcase>> worlds =
+            new HashMap<>();
+
+    /**
+     * A HashMap of each world and the Itemcases within it grouped by chunk key.
+     */
+    private final HashMap<World, HashMap<Long, ArrayList<Itemcase>>> chunks =
+            new HashMap<>();
+
+    /**
+     * A HashMap of each world and the number of Itemcases protecting each
+     * block key within it.
+     */
+    private final HashMap<World, HashMap<Long, Integer>> protectedBlocks =
+            new HashMap<>();
+    
+    /**
+     * A HashMap of each world and the block keys of Itemcases that are also
+     * protecting the block above them.
+     */
+    private final HashMap<World, HashSet<Long>> protectingAbove =
+            new HashMap<>();
+
+    /**
+     * A read-only view of every indexed Itemcase.
+     */
+    private final Collection<Itemcase> view =
+            Collections.unmodifiableCollection(new ItemcaseView());
+
+    /**
+     * Pack the given block coordinates in to a single long. X and Z use 26
+     * bits each and Y uses 12 bits, which covers the whole of a world.
+     *
+     * @param x Block X.
+     * @param y Block Y.
+     * @param z Block Z.
+     * @return Block key.
+     */
+    public static long toBlockKey(int x, int y, int z) {
+
+        // Pack coordinates.
+        return (((long) x & 0x3FFFFFFL) << 38) |
+                (((long) z & 0x3FFFFFFL) << 12) |
+                ((long) y & 0xFFFL);
+    }
+
+    /**
+     * @param location Location.
+     * @return Block key of the given location.
+     */
+    public static long toBlockKey(Location location) {
+
+        // Pack block coordinates of location.
+        return ItemcaseIndex.toBlockKey(location.getBlockX(),
+                location.getBlockY(), location.getBlockZ());
+    }
+
+    /**
+     * Pack the given chunk coordinates in to a single long.
+     *
+     * @param x Chunk X.
+     * @param z Chunk Z.
+     * @return Chunk key.
+     */
+    public static long toChunkKey(int x, int z) {
+
+        // Pack coordinates.
+        return ((long) x << 32) | ((long) z & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Add the given Itemcase to this index, replacing any Itemcase that was
+     * previously indexed at the same location.
+     *
+     * @param itemcase Itemcase.
+     */
+    public void add(Itemcase itemcase) {
+
+        // Get location.
+        Location location = itemcase.getLocation();
+
+        // Get or create map for this world.
+        HashMap<Long, Itemcase> itemcases = this.worlds.computeIfAbsent(
+                location.getWorld(), (world) -> new HashMap<>());
+
+        // Get block key.
+        long key = ItemcaseIndex.toBlockKey(location);
+
+        // Add itemcase.
+        Itemcase previous = itemcases.put(key, itemcase);
+
+        // If an itemcase was replaced.
+        if(previous != null) {
+
+            // Remove its protection.
+            this.unprotect(location.getWorld(), key);
+
+            // Remove it from its chunk.
+            this.removeFromChunk(previous);
+        }
+
+        // Add itemcase to its chunk.
+        this.chunks.computeIfAbsent(location.getWorld(),
+                (world) -> new HashMap<>()).computeIfAbsent(
+                        ItemcaseIndex.toChunkKey(itemcase.getChunkX(),
+                                itemcase.getChunkZ()),
+                        (chunk) -> new ArrayList<>(1)).add(itemcase);
+
+        // Protect itemcase.
+        this.protect(itemcase, key);
+    }
+
+    /**
+     * Re-evaluate the blocks protected by the given Itemcase, for instance
+     * after its block has changed material.
+     *
+     * @param itemcase Itemcase.
+     */
+    public void refresh(Itemcase itemcase) {
+
+        // If this itemcase is indexed.
+        if(this.remove(itemcase)) {
+
+            // Add it back.
+            this.add(itemcase);
+        }
+    }
+
+    /**
+     * Remove the given Itemcase from this index.
+     *
+     * @param itemcase Itemcase.
+     * @return If the Itemcase was indexed.
+     */
+    public boolean remove(Itemcase itemcase) {
+
+        // Get location.
+        Location location = itemcase.getLocation();
+
+        // Get map for this world.
+        HashMap<Long, Itemcase> itemcases =
+                this.worlds.get(location.getWorld());
+
+        // If there are no itemcases in this world.
+        if(itemcases == null) {
+
+            // Nothing to remove.
+            return false;
+        }
+
+        // Get block key.
+        long key = ItemcaseIndex.toBlockKey(location);
+
+        // Remove only if this exact itemcase is indexed at its location.
+        if(!itemcases.remove(key, itemcase)) {
+
+            // Not indexed.
+            return false;
+        }
+
+        // Remove protection.
+        this.unprotect(location.getWorld(), key);
+
+        // Remove from chunk.
+        this.removeFromChunk(itemcase);
+
+        // Removed.
+        return true;
+    }
+
+    /**
+     * Remove the given Itemcase from its chunk group.
+     *
+     * @param itemcase Itemcase.
+     */
+    private void removeFromChunk(Itemcase itemcase) {
+
+        // Get chunks of this world.
+        HashMap<Long, ArrayList<Itemcase>> worldChunks =
+                this.chunks.get(itemcase.getLocation().getWorld());
+
+        // If there are none.
+        if(worldChunks == null) {
+
+            // Exit.
+            return;
+        }
+
+        // Get chunk key.
+        long chunkKey = ItemcaseIndex.toChunkKey(itemcase.getChunkX(),
+                itemcase.getChunkZ());
+
+        // Get itemcases in chunk.
+        ArrayList<Itemcase> itemcases = worldChunks.get(chunkKey);
+
+        // If chunk has itemcases.
+        if(itemcases != null) {
+
+            // Remove itemcase.
+            itemcases.remove(itemcase);
+
+            // If chunk is now empty.
+            if(itemcases.isEmpty()) {
+
+                // Remove chunk.
+                worldChunks.remove(chunkKey);
+            }
+        }
+    }
+
+    /**
+     * Remove every Itemcase in the given world from this index.
+     *
+     * @param world World.
+     * @return The Itemcases that were removed.
+     */
+    public Collection<Itemcase> removeWorld(World world) {
+
+        // Remove map for this world.
+        HashMap<Long, Itemcase> itemcases = this.worlds.remove(world);
+
+        // Remove chunks and protected blocks for this world.
+        this.chunks.remove(world);
+        this.protectedBlocks.remove(world);
+        this.protectingAbove.remove(world);
+
+        // If there were no itemcases in this world.
+        if(itemcases == null) {
+
+            // Return empty list.
+            return Collections.emptyList();
+        }
+
+        // Return removed itemcases.
+        return itemcases.values();
+    }
+
+    /**
+     * @param location Location.
+     * @return The Itemcase at the given location, or null if there is none.
+     */
+    public Itemcase get(Location location) {
+
+        // Get map for this world.
+        HashMap<Long, Itemcase> itemcases =
+                this.worlds.get(location.getWorld());
+
+        // If there are no itemcases in this world.
+        if(itemcases == null) {
+
+            // No itemcase found.
+            return null;
+        }
+
+        // Return itemcase at this block.
+        return itemcases.get(ItemcaseIndex.toBlockKey(location));
+    }
+
+    /**
+     * @param world World.
+     * @param chunkX Chunk X.
+     * @param chunkZ Chunk Z.
+     * @return A read-only list of the Itemcases within the given chunk.
+     */
+    public Collection<Itemcase> getItemcases(World world, int chunkX,
+            int chunkZ) {
+
+        // Get chunks of this world.
+        HashMap<Long, ArrayList<Itemcase>> worldChunks =
+                this.chunks.get(world);
+
+        // If there are none.
+        if(worldChunks == null) {
+
+            // Return empty list.
+            return Collections.emptyList();
+        }
+
+        // Get itemcases in chunk.
+        ArrayList<Itemcase> itemcases =
+                worldChunks.get(ItemcaseIndex.toChunkKey(chunkX, chunkZ));
+
+        // Return itemcases, if any.
+        return itemcases == null ? Collections.emptyList() :
+                Collections.unmodifiableList(itemcases);
+    }
+
+    /**
+     * @param location Location.
+     * @return If there is an Itemcase at the given location.
+     */
+    public boolean contains(Location location) {
+
+        // Return if an itemcase exists at this location.
+        return this.get(location) != null;
+    }
+
+    /**
+     * @param location Location.
+     * @return If the block at the given location is protected by an Itemcase.
+     */
+    public boolean isProtected(Location location) {
+
+        // Get protected blocks for this world.
+        HashMap<Long, Integer> blocks =
+                this.protectedBlocks.get(location.getWorld());
+
+        // Return if block is protected.
+        return blocks != null &&
+                blocks.containsKey(ItemcaseIndex.toBlockKey(location));
+    }
+
+    /**
+     * Remove every Itemcase from this index.
+     */
+    public void clear() {
+
+        // Clear all worlds.
+        this.worlds.clear();
+        this.chunks.clear();
+        this.protectedBlocks.clear();
+        this.protectingAbove.clear();
+    }
+
+    /**
+     * Add the blocks protected by the given Itemcase.
+     *
+     * @param itemcase Itemcase.
+     * @param key Block key of the Itemcase.
+     */
+    private void protect(Itemcase itemcase, long key) {
+
+        // Get location.
+        Location location = itemcase.getLocation();
+
+        // Get world.
+        World world = location.getWorld();
+
+        // Protect itemcase block.
+        this.protectBlock(world, key);
+
+        // If itemcase is not a slab, the display item sits in the block above.
+        // The block type can only be read without loading the chunk if it is
+        // already loaded, otherwise protect the block above until it is.
+        if(!world.isChunkLoaded(location.getBlockX() >> 4,
+                location.getBlockZ() >> 4) ||
+                !Itemcase.isSlab(location.getBlock().getType())) {
+
+            // Remember this itemcase protects the block above.
+            this.protectingAbove.computeIfAbsent(world,
+                    (w) -> new HashSet<>()).add(key);
+
+            // Protect block above.
+            this.protectBlock(world, ItemcaseIndex.toBlockKey(
+                    location.getBlockX(), location.getBlockY() + 1,
+                    location.getBlockZ()));
+        }
+    }
+
+    /**
+     * Stop protecting the block above the given Itemcase if it turns out to
+     * be a slab. Called once its chunk has loaded.
+     *
+     * @param itemcase Itemcase.
+     */
+    public void settleProtection(Itemcase itemcase) {
+
+        // Get location.
+        Location location = itemcase.getLocation();
+
+        // Get world.
+        World world = location.getWorld();
+
+        // Get itemcases that protect the block above them.
+        HashSet<Long> above = this.protectingAbove.get(world);
+
+        // Get block key.
+        long key = ItemcaseIndex.toBlockKey(location);
+
+        // If the block above is not protected by this itemcase, or the block
+        // type can't be read without loading the chunk.
+        if(above == null || !above.contains(key) ||
+                !world.isChunkLoaded(location.getBlockX() >> 4,
+                        location.getBlockZ() >> 4)) {
+
+            // Exit.
+            return;
+        }
+
+        // If itemcase is a slab.
+        if(Itemcase.isSlab(location.getBlock().getType())) {
+
+            // Unprotect block above.
+            above.remove(key);
+            this.unprotectBlock(world, (key & ~0xFFFL) |
+                    ((key + 1) & 0xFFFL));
+        }
+    }
+
+    /**
+     * Remove the blocks protected by the Itemcase with the given block key.
+     *
+     * @param world World.
+     * @param key Block key of the Itemcase.
+     */
+    private void unprotect(World world, long key) {
+
+        // Unprotect itemcase block.
+        this.unprotectBlock(world, key);
+
+        // Get itemcases that protect the block above them.
+        HashSet<Long> above = this.protectingAbove.get(world);
+
+        // If this itemcase was protecting the block above.
+        if(above != null && above.remove(key)) {
+
+            // Unprotect block above. (Y occupies the lowest bits.)
+            this.unprotectBlock(world, (key & ~0xFFFL) |
+                    ((key + 1) & 0xFFFL));
+        }
+    }
+
+    /**
+     * Increment the protection count of the given block.
+     *
+     * @param world World.
+     * @param key Block key.
+     */
+    private void protectBlock(World world, long key) {
+
+        // Increment count.
+        this.protectedBlocks.computeIfAbsent(world, (w) -> new HashMap<>())
+                .merge(key, 1, Integer::sum);
+    }
+
+    /**
+     * Decrement the protection count of the given block.
+     *
+     * @param world World.
+     * @param key Block key.
+     */
+    private void unprotectBlock(World world, long key) {
+
+        // Get protected blocks for this world.
+        HashMap<Long, Integer> blocks = this.protectedBlocks.get(world);
+
+        // If there are no protected blocks.
+        if(blocks == null) {
+
+            // Exit.
+            return;
+        }
+
+        // Decrement count, removing the block once nothing protects it.
+        blocks.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * @return A read-only view of every indexed Itemcase.
+     */
+    public Collection<Itemcase> getItemcases() {
+
+        // Return view.
+        return this.view;
+    }
+
+    /**
+     * A live collection view that iterates over the Itemcases of every world
+     * without copying them.
+     */
+    private final class ItemcaseView extends AbstractCollection<Itemcase> {
+
+        @Override
+        public Iterator<Itemcase> iterator() {
+
+            // Iterator over every world's itemcases.
+            final Iterator<HashMap<Long, Itemcase>> worldIterator =
+                    ItemcaseIndex.this.worlds.values().iterator();
+
+            // Return flattening iterator.
+            return new Iterator<Itemcase>() {
+
+                /**
+                 * The iterator of the current world.
+                 */
+                private Iterator<Itemcase> current =
+                        Collections.emptyIterator();
+
+                @Override
+                public boolean hasNext() {
+
+                    // Move on to the next world with itemcases if needed.
+                    while(!this.current.hasNext() && worldIterator.hasNext()) {
+                        this.current = worldIterator.next().values()
+                                .iterator();
+                    }
+
+                    // Return if there is another itemcase.
+                    return this.current.hasNext();
+                }
+
+                @Override
+                public Itemcase next() {
+
+                    // If there are no more itemcases.
+                    if(!this.hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+
+                    // Return next itemcase.
+                    return this.current.next();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+
+            // Total number of itemcases.
+            int size = 0;
+
+            // Sum every world.
+            for(HashMap<Long, Itemcase> itemcases :
+                    ItemcaseIndex.this.worlds.values()) {
+                size += itemcases.size();
+            }
+
+            // Return size.
+            return size;
+        }
+    }
+}
@@ -16,23 +16,39 @@ package com.gmail.bleedobsidian.itemcase.managers;
 
 import com.gmail.bleedobsidian.itemcase.ItemCaseCore;
 import com.gmail.bleedobsidian.itemcase.Itemcase;
-import com.gmail.bleedobsidian.itemcase.Itemcase.StorageType;
-import com.gmail.bleedobsidian.itemcase.Itemcase.Type;
+import com.gmail.bleedobsidian.itemcase.Placeholders;
+import com.gmail.bleedobsidian.itemcase.configurations.ConfigFile;
+import com.gmail.bleedobsidian.itemcase.configurations.ConfigFile.Settings;
+import com.gmail.bleedobsidian.itemcase.configurations.ItemcaseStorage;
+import com.gmail.bleedobsidian.itemcase.configurations.ItemcaseStorage.Fetch;
+import com.gmail.bleedobsidian.itemcase.configurations.ItemcaseStorage.Format;
+import com.gmail.bleedobsidian.itemcase.configurations.SqlDatabase;
+import com.gmail.bleedobsidian.itemcase.configurations.SqlStorage;
 import com.gmail.bleedobsidian.itemcase.configurations.WorldFile;
 import com.onarandombox.MultiverseCore.event.MVWorldDeleteEvent;
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map.Entry;
 import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
+import org.bukkit.Material;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.World;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
 import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 
 /**
@@ -44,20 +60,128 @@ import org.bukkit.inventory.ItemStack;
 public final class ItemcaseManager {
     
     /**
-     * A HashMap of each world and its corresponding WorldFile.
+     * A HashMap of each world and its corresponding storage.
      */
-    private final HashMap<World, WorldFile> worldFiles = new HashMap<>();
+    private final HashMap<World, ItemcaseStorage> storages = new HashMap<>();
     
     /**
-     * A list of all active Itemcase instances.
+     * A spatial index of all active Itemcase instances.
      */
-    private final ArrayList<Itemcase> itemcases = new ArrayList<>();
+    private final ItemcaseIndex itemcases = new ItemcaseIndex();
+    
+    /**
+     * A registry of the display items of all Itemcases.
+     */
+    private final DisplayItemRegistry displayItems = new DisplayItemRegistry();
+    
+    /**
+     * A HashMap of each lazy storage and the chunk keys of the loaded chunks
+     * whose itemcases are waiting to be read from disk.
+     */
+    private final HashMap<ItemcaseStorage, HashSet<Long>> waitingChunks =
+            new HashMap<>();
+    
+    /**
+     * Worlds whose itemcases have not all been loaded and registered yet.
+     */
+    private final HashSet<World> loadingWorlds = new HashSet<>();
+    
+    /**
+     * The scheduler that maintains the display items of all Itemcases.
+     */
+    private MaintenanceScheduler scheduler;
+    
+    /**
+     * The scheduler that flushes changes to storages.
+     */
+    private SaveScheduler saver;
+    
+    /**
+     * The scheduler that loads storages.
+     */
+    private LoadScheduler loader;
+    
+    /**
+     * If display items are managed by chunk loading and unloading.
+     */
+    private boolean chunkDriven;
+    
+    /**
+     * The format to save Itemcases in.
+     */
+    private Format format;
+    
+    /**
+     * If Itemcases are only created when their chunk loads.
+     */
+    private boolean lazy;
+    
+    /**
+     * If Itemcases are saved in one file per region.
+     */
+    private boolean sharded;
+    
+    /**
+     * The database, if Itemcases are saved in SQL.
+     */
+    private SqlDatabase database;
     
     /**
      * Initialize this class.
      */
     public void initialize() {
         
+        // Get config file.
+        ConfigFile config = ItemCaseCore.instance.getConfigFile();
+        
+        // Set if display items are managed by chunk loading and unloading.
+        this.chunkDriven = config.isChunkDriven();
+        
+        // Set save format.
+        this.format = config.getSaveFormat();
+        
+        // Set if itemcases are only created when their chunk loads.
+        this.lazy = config.isLazyLoading();
+        
+        // Set if itemcases are saved in one file per region.
+        this.sharded = config.isRegionFiles();
+        
+        // If saving in SQL.
+        if(this.format == Format.SQL) {
+            
+            // Attempt to open database.
+            try {
+                
+                // Open database.
+                this.database = new SqlDatabase(new File(
+                        ItemCaseCore.instance.getDataFolder(), "itemcases.db"));
+                
+            } catch (IOException e) {
+                
+                // Log error.
+                ItemCaseCore.instance.getConsoleLogger().severe(
+                        "Failed to open database, saving in YAML instead.", e);
+                
+                // Fall back to YAML.
+                this.format = Format.YAML;
+            }
+        }
+        
+        // Create and start maintenance scheduler.
+        this.scheduler = new MaintenanceScheduler(
+                config.getMaintenanceInterval(),
+                config.getMaintenanceTickBudget());
+        this.scheduler.start();
+        
+        // Create and start save scheduler.
+        this.saver = new SaveScheduler(this.storages.values(),
+                config.getSaveInterval());
+        this.saver.start();
+        
+        // Create and start load scheduler.
+        this.loader = new LoadScheduler(config.getMaintenanceTickBudget());
+        this.loader.start();
+        
         // For every currently loaded world.
         for(World world : Bukkit.getWorlds()) {
             
@@ -67,69 +191,288 @@ public final class ItemcaseManager {
     }
     
     /**
-     * Loads itemcases for the given world.
+     * Loads itemcases for the given world. The world's storage is read on a
+     * worker thread and its itemcases are registered over the following
+     * ticks.
      * 
      * @param world World.
      */
     private void loadItemcases(World world) {
         
-        // Create WorldFile object.
-        WorldFile file = new WorldFile(world);
+        // Create storage object.
+        ItemcaseStorage storage = this.format == Format.SQL ?
+                new SqlStorage(world, this.database) :
+                new WorldFile(world, this.format, this.lazy,
+                        this.sharded);
 
         // Add to hashmap.
-        ItemcaseManager.this.worldFiles.put(world, file);
-
-        // Attempt to load itemcases and add them to list.
-        try {
-
-            // Load itemcaes.
-            ArrayList<Itemcase> loadedItemcases = file.loadItemcases();
-
-            // Add to list.
-            ItemcaseManager.this.itemcases.addAll(loadedItemcases);
+        ItemcaseManager.this.storages.put(world, storage);
+        
+        // Mark world loading.
+        this.loadingWorlds.add(world);
 
-        } catch (IOException e) {
+        // Chunks that have already been cleaned.
+        HashSet<Long> cleanedChunks = new HashSet<>();
+        
+        // Load itemcases.
+        this.loader.load(storage, (itemcase) -> {
+            
+            // If the world has been removed while loading.
+            if(this.storages.get(world) != storage) {
+                
+                // Exit.
+                return;
+            }
+            
+            // Register itemcase.
+            this.register(itemcase);
 
-            // Log error.
-            ItemCaseCore.instance.getConsoleLogger().severe(
-                    "Failed to load itemcases for world: " +
-                            world.getName(), e);
+            // If chunk is loaded, it will not fire a load event, so clean
+            // up any display items left over from before now.
+            if(itemcase.isChunkLoaded() && cleanedChunks.add(
+                    ItemcaseIndex.toChunkKey(itemcase.getChunkX(),
+                            itemcase.getChunkZ()))) {
 
+                // Clean chunk.
+                this.displayItems.cleanChunk(world.getChunkAt(
+                        itemcase.getChunkX(), itemcase.getChunkZ()));
+            }
+            
+        }, () -> {
+            
+            // World has finished loading.
+            this.loadingWorlds.remove(world);
+            
+            // If the world has been removed while loading, or it failed.
+            if(this.storages.get(world) != storage || !storage.isLoaded()) {
+                
+                // Exit.
+                return;
+            }
+            
+            // If storage is lazy.
+            if(storage.isLazy()) {
+                
+                // Loaded chunks will not fire a load event, so create their
+                // itemcases now.
+                for(Chunk chunk : world.getLoadedChunks()) {
+                    this.createChunk(storage, chunk);
+                }
+            }
+            
+            // Log.
+            ItemCaseCore.instance.getConsoleLogger().info(
+                    "console.info.loaded", Placeholders.of(
+                    "%WORLD_NAME%", world.getName()));
+        });
+    }
+    
+    /**
+     * Create and register the itemcases in the given chunk from a lazy
+     * storage. If they must be read from disk first, they are read on a
+     * worker thread and created once read.
+     * 
+     * @param storage Storage.
+     * @param chunk Chunk.
+     */
+    private void createChunk(ItemcaseStorage storage, Chunk chunk) {
+        
+        // If this chunk's itemcases can be created straight away.
+        if(storage.isChunkReady(chunk.getX(), chunk.getZ())) {
+            
+            // Create itemcases.
+            this.loadChunk(storage, chunk);
+            
             // Exit.
             return;
         }
-
-        // Set world name placeholder and log.
-        ItemCaseCore.instance.getTranslator().setPlaceholder(
-                "%WORLD_NAME%", world.getName());
-        ItemCaseCore.instance.getConsoleLogger().info(
-                "console.info.loaded");
+        
+        // Wait for this chunk's itemcases to be read.
+        this.waitingChunks.computeIfAbsent(storage, (s) -> new HashSet<>())
+                .add(ItemcaseIndex.toChunkKey(chunk.getX(), chunk.getZ()));
+        
+        // Take what must be read.
+        Fetch fetch = storage.fetchChunk(chunk.getX(), chunk.getZ());
+        
+        // If it is already being read.
+        if(fetch == null) {
+            
+            // Exit.
+            return;
+        }
+        
+        // Read on a worker thread.
+        this.loader.fetch(storage, fetch, () -> {
+            
+            // If the world has been removed while reading.
+            if(this.storages.get(storage.getWorld()) != storage) {
+                
+                // Exit.
+                return;
+            }
+            
+            // Attempt to add what was read to storage.
+            try {
+                
+                // Apply.
+                fetch.apply();
+                
+            } catch (IOException e) {
+                
+                // Log error, it is read again when another of its chunks
+                // loads.
+                ItemCaseCore.instance.getConsoleLogger().severe(
+                        "Failed to load itemcases for world: " +
+                        storage.getWorld().getName(), e);
+            }
+            
+            // Create the itemcases of every chunk that is now ready.
+            this.createWaitingChunks(storage);
+        });
     }
     
     /**
-     * Save given Itemcase.
+     * Create the itemcases of every loaded chunk that was waiting for the
+     * given storage and is now ready.
      * 
-     * @param itemcase Itemcase.
+     * @param storage Storage.
      */
-    public void saveItemcases(Itemcase itemcase) {
+    private void createWaitingChunks(ItemcaseStorage storage) {
+        
+        // Get waiting chunks.
+        HashSet<Long> chunks = this.waitingChunks.get(storage);
+        
+        // If there are none.
+        if(chunks == null) {
+            
+            // Exit.
+            return;
+        }
+        
+        // Get world.
+        World world = storage.getWorld();
+        
+        // For every waiting chunk.
+        Iterator<Long> iterator = chunks.iterator();
+        while(iterator.hasNext()) {
+            
+            // Unpack chunk coordinates.
+            long key = iterator.next();
+            int chunkX = (int) (key >> 32);
+            int chunkZ = (int) key;
+            
+            // If chunk is still waiting for another read.
+            if(!storage.isChunkReady(chunkX, chunkZ)) {
+                
+                // Skip.
+                continue;
+            }
+            
+            // No longer waiting.
+            iterator.remove();
+            
+            // If chunk is still loaded.
+            if(world.isChunkLoaded(chunkX, chunkZ)) {
+                
+                // Create itemcases.
+                this.loadChunk(storage, world.getChunkAt(chunkX, chunkZ));
+            }
+        }
         
-        // Get world file.
-        WorldFile file = this.worldFiles.get(itemcase.getLocation().getWorld());
+        // If nothing is waiting.
+        if(chunks.isEmpty()) {
+            
+            // Forget storage.
+            this.waitingChunks.remove(storage);
+        }
+    }
+    
+    /**
+     * Create and register the itemcases in the given chunk from a lazy
+     * storage, skipping any that already have been. An itemcase may have
+     * been created while the rest of its chunk was waiting to be read.
+     * 
+     * @param storage Storage.
+     * @param chunk Chunk.
+     */
+    private void loadChunk(ItemcaseStorage storage, Chunk chunk) {
+        
+        // Itemcases in chunk.
+        ArrayList<Itemcase> itemcases;
         
-        // Attempt to save itemcase.
+        // Attempt to create itemcases.
         try {
             
-            // Save itemcase.
-            file.saveItemcase(itemcase);
+            // Load chunk.
+            itemcases = storage.loadChunk(chunk.getX(), chunk.getZ());
             
         } catch (IOException e) {
             
-             // Log error.
+            // Log error.
             ItemCaseCore.instance.getConsoleLogger().severe(
-                        "Failed to save itemcase to config.", e);
+                    "Failed to load itemcases for chunk: " + chunk.getX() +
+                    ", " + chunk.getZ() + " in world: " +
+                    chunk.getWorld().getName(), e);
+            
+            // Exit.
+            return;
+        }
+        
+        // If there are no itemcases in this chunk.
+        if(itemcases.isEmpty()) {
+            
+            // Exit.
+            return;
+        }
+        
+        // Remove display items left over from before now.
+        this.displayItems.cleanChunk(chunk);
+        
+        // For every itemcase in this chunk.
+        for(Itemcase itemcase : itemcases) {
+            
+            // If itemcase has already been created.
+            if(this.itemcases.contains(itemcase.getLocation())) {
+                
+                // Skip.
+                continue;
+            }
+            
+            // Register itemcase.
+            this.register(itemcase);
         }
     }
     
+    /**
+     * Save given Itemcase.
+     * 
+     * @param itemcase Itemcase.
+     */
+    public void saveItemcases(Itemcase itemcase) {
+        
+        // Get storage.
+        ItemcaseStorage storage =
+                this.storages.get(itemcase.getLocation().getWorld());
+        
+        // Mark itemcase to be saved on the next flush.
+        storage.saveItemcase(itemcase);
+    }
+    
+    /**
+     * Save given Itemcase after a change in stock.
+     * 
+     * @param itemcase Itemcase.
+     */
+    public void saveStock(Itemcase itemcase) {
+        
+        // Get storage.
+        ItemcaseStorage storage =
+                this.storages.get(itemcase.getLocation().getWorld());
+        
+        // Mark change to be saved on the next flush.
+        storage.saveStock(itemcase);
+    }
+    
     /**
      * Create a new Itemcase.
      * 
@@ -144,56 +487,174 @@ public final class ItemcaseManager {
         Itemcase itemcase = new Itemcase(Itemcase.Type.SHOWCASE, itemStack,
                 location, owner);
         
-        // Spawn item.
-        itemcase.spawnItem();
+        // Register itemcase.
+        this.register(itemcase);
         
-        // Add itemcase to the list.
-        this.itemcases.add(itemcase);
+        // Get storage for itemcase's world.
+        ItemcaseStorage storage = this.storages.get(location.getWorld());
         
-        // Get config file for itemcase's world.
-        WorldFile file = this.worldFiles.get(location.getWorld());
+        // Mark itemcase to be saved on the next flush.
+        storage.saveItemcase(itemcase);
+    }
+    
+    /**
+     * Destroy given Itemcase.
+     * 
+     * @param itemcase Itemcase.
+     */
+    public void destroyItemcase(Itemcase itemcase) {
         
-        // Attempt to save itemcase.
-        try {
-            
-            // Save itemcase.
-            file.saveItemcase(itemcase);
-            
-        } catch (IOException e) {
+        // Stop maintaining and despawn Itemcase's item.
+        this.park(itemcase);
+        
+        // Remove itemcase from index.
+        this.itemcases.remove(itemcase);
+        
+        // Get storage for itemcase's world.
+        ItemcaseStorage storage =
+                this.storages.get(itemcase.getLocation().getWorld());
+        
+        // Mark itemcase to be deleted on the next flush.
+        storage.deleteItemcase(itemcase);
+    }
+    
+    /**
+     * Add the given itemcase to the index and, if its display item should be
+     * active, spawn and start maintaining it.
+     * 
+     * @param itemcase Itemcase.
+     */
+    private void register(Itemcase itemcase) {
+        
+        // Add itemcase to the index.
+        this.itemcases.add(itemcase);
+        
+        // If display items are chunk driven and this chunk is not loaded.
+        if(this.chunkDriven && !itemcase.isChunkLoaded()) {
             
-             // Log error.
-            ItemCaseCore.instance.getConsoleLogger().severe(
-                        "Failed to save new itemcase to config.", e);
+            // Leave parked until its chunk loads.
+            return;
         }
+        
+        // Activate itemcase.
+        this.activate(itemcase);
     }
     
     /**
-     * Destroy given Itemcase.
+     * Spawn the display item of the given itemcase and start maintaining it.
      * 
      * @param itemcase Itemcase.
      */
-    public void destroyItemcase(Itemcase itemcase) {
+    private void activate(Itemcase itemcase) {
+        
+        // Spawn item.
+        itemcase.spawnItem();
+        
+        // Maintain display item.
+        this.scheduler.add(itemcase);
+    }
+    
+    /**
+     * Stop maintaining the display item of the given itemcase and despawn it.
+     * 
+     * @param itemcase Itemcase.
+     */
+    private void park(Itemcase itemcase) {
+        
+        // Stop maintaining display item.
+        this.scheduler.remove(itemcase);
         
-        // Despawn Itemcase's item.
+        // Despawn item.
         itemcase.despawnItem();
+    }
+    
+    /**
+     * Apply settings that have been reloaded to the running Itemcases. Only
+     * the Itemcases affected by a change are touched, the Itemcases
+     * themselves are not reloaded.
+     * 
+     * Saving settings only take effect once the server restarts, as they
+     * decide how the loaded storages are laid out.
+     * 
+     * @param previous The settings before they were reloaded.
+     * @param settings The reloaded settings.
+     */
+    public void applySettings(Settings previous, Settings settings) {
         
-        // Remove itemcase from list.
-        this.itemcases.remove(itemcase);
+        // If maintenance timing has changed.
+        if(previous.getMaintenanceInterval() !=
+                settings.getMaintenanceInterval() ||
+                previous.getMaintenanceTickBudget() !=
+                settings.getMaintenanceTickBudget()) {
+            
+            // Update schedulers.
+            this.scheduler.setInterval(settings.getMaintenanceInterval());
+            this.scheduler.setTickBudget(settings.getMaintenanceTickBudget());
+            this.loader.setTickBudget(settings.getMaintenanceTickBudget());
+        }
         
-        // Get config file for itemcase's world.
-        WorldFile file = this.worldFiles.get(itemcase.getLocation().getWorld());
+        // Get materials that are no longer allowed.
+        EnumSet<Material> removed = EnumSet.noneOf(Material.class);
+        removed.addAll(previous.getMaterials());
+        removed.removeAll(settings.getMaterials());
         
-         // Attempt to delete itemcase.
-        try {
+        // If any materials were removed.
+        if(!removed.isEmpty()) {
             
-            // Delete itemcase.
-            file.deleteItemcase(itemcase);
+            // For every itemcase, copied as its protection may be refreshed.
+            for(Itemcase itemcase : new ArrayList<>(
+                    this.itemcases.getItemcases())) {
+                
+                // If chunk is loaded and block is a removed material.
+                if(itemcase.isChunkLoaded() && removed.contains(
+                        itemcase.getLocation().getBlock().getType())) {
+                    
+                    // Check now, which resets block to a valid material.
+                    itemcase.maintain();
+                }
+            }
+        }
+        
+        // If display item mode has changed.
+        if(previous.isChunkDriven() != settings.isChunkDriven()) {
             
-        } catch (IOException e) {
+            // Set mode.
+            this.chunkDriven = settings.isChunkDriven();
             
-             // Log error.
-            ItemCaseCore.instance.getConsoleLogger().severe(
-                        "Failed to delete itemcase from config.", e);
+            // For every itemcase.
+            for(Itemcase itemcase : this.itemcases.getItemcases()) {
+                
+                // If chunk is loaded, mode makes no difference.
+                if(itemcase.isChunkLoaded()) {
+                    continue;
+                }
+                
+                // If now chunk driven.
+                if(this.chunkDriven) {
+                    
+                    // Park until its chunk loads.
+                    this.park(itemcase);
+                    
+                } else if(!this.scheduler.contains(itemcase)) {
+                    
+                    // Activate regardless of chunk.
+                    this.activate(itemcase);
+                }
+            }
+        }
+        
+        // If any saving setting has changed.
+        if(previous.getSaveInterval() != settings.getSaveInterval() ||
+                previous.getSaveBackups() != settings.getSaveBackups() ||
+                previous.getSaveBackupInterval() !=
+                settings.getSaveBackupInterval() ||
+                previous.getSaveFormat() != settings.getSaveFormat() ||
+                previous.isLazyLoading() != settings.isLazyLoading() ||
+                previous.isRegionFiles() != settings.isRegionFiles()) {
+            
+            // Log.
+            ItemCaseCore.instance.getConsoleLogger().warning(
+                    "Saving settings will take effect after a restart.");
         }
     }
     
@@ -202,15 +663,77 @@ public final class ItemcaseManager {
      */
     public void unloadItemcases() {
         
+        // If the load scheduler was started.
+        if(this.loader != null) {
+            
+            // Abandon any loads in progress.
+            this.loader.shutdown();
+        }
+        
+        // If the save scheduler was started.
+        if(this.saver != null) {
+            
+            // Write all unsaved changes before shutting down.
+            this.saver.flush();
+        }
+        
+        // For every storage.
+        for(ItemcaseStorage storage : this.storages.values()) {
+            
+            // Stop using storage.
+            storage.close();
+        }
+        
+        // If there is a database.
+        if(this.database != null) {
+            
+            // Close database.
+            this.database.close();
+            this.database = null;
+        }
+        
+        // Forget storages.
+        this.storages.clear();
+        this.waitingChunks.clear();
+        this.loadingWorlds.clear();
+        
         // For every loaded itemcase.
-        for(Itemcase itemcase : this.itemcases) {
+        for(Itemcase itemcase : this.itemcases.getItemcases()) {
             
             // Despawn the item.
             itemcase.despawnItem();
         }
         
-        // Clear list.
+        // Clear index and display items.
         this.itemcases.clear();
+        this.displayItems.clear();
+        
+        // If the scheduler was started.
+        if(this.scheduler != null) {
+            
+            // Stop maintaining display items.
+            this.scheduler.clear();
+            this.scheduler.cancel();
+        }
+    }
+    
+    /**
+     * @return A registry of the display items of all Itemcases.
+     */
+    public DisplayItemRegistry getDisplayItems() {
+        
+        // Return registry.
+        return this.displayItems;
+    }
+    
+    /**
+     * @return The scheduler that maintains the display items of all
+     * Itemcases.
+     */
+    public MaintenanceScheduler getScheduler() {
+        
+        // Return scheduler.
+        return this.scheduler;
     }
     
     /**
@@ -231,19 +754,47 @@ public final class ItemcaseManager {
      */
     public boolean isItemcase(Location location) {
         
-        // For every itemcase.
-        for(Itemcase itemcase : this.itemcases) {
-            
-            // Check if location matches.
-            if(itemcase.getLocation().equals(location)) {
-                
-                // Return true.
-                return true;
-            }
-        }
+        // Return if an itemcase is indexed at this block.
+        return this.itemcases.contains(location);
+    }
+    
+    /**
+     * The itemcases of a world that is loading are not indexed until they
+     * have all been read and registered, so until then they are unprotected
+     * and a new itemcase could be created where one is about to be loaded.
+     * 
+     * @param world World.
+     * @return If the given world's itemcases are still loading.
+     */
+    public boolean isLoading(World world) {
+        
+        // Return if world is loading.
+        return this.loadingWorlds.contains(world);
+    }
+    
+    /**
+     * If the block at the given location is protected by an itemcase, either
+     * because it is an itemcase or because it is where a display item sits.
+     * 
+     * @param location Location.
+     * @return Boolean.
+     */
+    public boolean isProtected(Location location) {
         
-        // Otherwise return false.
-        return false;
+        // Return if block is protected.
+        return this.itemcases.isProtected(location);
+    }
+    
+    /**
+     * Update the blocks protected by the given itemcase after its block has
+     * changed.
+     * 
+     * @param itemcase Itemcase.
+     */
+    public void refreshProtection(Itemcase itemcase) {
+        
+        // Refresh index.
+        this.itemcases.refresh(itemcase);
     }
     
     /**
@@ -254,33 +805,23 @@ public final class ItemcaseManager {
      */
     public Itemcase getItemcase(Location location) {
         
-        // For every itemcase.
-        for(Itemcase itemcase : this.itemcases) {
-            
-            // Check if location matches.
-            if(itemcase.getLocation().equals(location)) {
-                
-                // Return itemcase.
-                return itemcase;
-            }
-        }
-        
-        // No itemcase found.
-        return null;
+        // Return itemcase indexed at this block, if any.
+        return this.itemcases.get(location);
     }
     
     /**
-     * @return A list of all active Itemcase instances.
+     * @return A read-only view of all active Itemcase instances.
      */
-    public ArrayList<Itemcase> getItemcases() {
+    public Collection<Itemcase> getItemcases() {
         
-        // List of Itemcases.
-        return this.itemcases;
+        // View of Itemcases.
+        return this.itemcases.getItemcases();
     }
     
     /**
      * A bukkit listener for the ItemcaseManager. Used to load Itemcases upon
-     * world loading.
+     * world loading and to activate and park display items as chunks load and
+     * unload.
      */
     private final class ItemcaseManagerListener implements Listener {
         
@@ -295,115 +836,193 @@ public final class ItemcaseManager {
         }
         
         @EventHandler(priority = EventPriority.MONITOR)
-        public void onWorldDeleteEvent(MVWorldDeleteEvent event) {
+        public void onChunkLoadEvent(ChunkLoadEvent event) {
             
-            // Get world name.
-            String worldName = event.getWorld().getName();
+            // Get chunk.
+            Chunk chunk = event.getChunk();
             
-            // WorldFile.
-            WorldFile worldFile = null;
+            // Get storage of this chunk's world.
+            ItemcaseStorage storage =
+                    ItemcaseManager.this.storages.get(chunk.getWorld());
             
-            // For every entry.
-            for(Entry<World, WorldFile> entry :
-                ItemcaseManager.this.worldFiles.entrySet()) {
+            // Get itemcases in this chunk. If storage is lazy these are only
+            // those that were kept while the chunk was unloaded.
+            Collection<Itemcase> itemcases = new ArrayList<>(
+                    ItemcaseManager.this.itemcases.getItemcases(
+                            chunk.getWorld(), chunk.getX(), chunk.getZ()));
+            
+            // If storage is lazy and has been loaded.
+            if(storage != null && storage.isLazy() && storage.isLoaded()) {
                 
-                // Check if world name matches.
-                if(entry.getKey().getName() == worldName) {
-                    
-                    // Attempt to delete config.
-                    try {
-                        
-                        // Set world file.
-                        worldFile = entry.getValue();
-                        
-                        // Delete config.
-                        entry.getValue().deleteDirectory();
-                        
-                    } catch (IOException e) {
-                        
-                         // Log error.
-                        ItemCaseCore.instance.getConsoleLogger().severe(
-                            "Failed to delete itemcase config for world:"
-                                    + worldName, e);
-                    }
-                }
+                // Create this chunk's other itemcases.
+                ItemcaseManager.this.createChunk(storage, chunk);
             }
             
-            // Remove world file.
-            ItemcaseManager.this.worldFiles.values().remove(worldFile);
+            // If there are no itemcases in this chunk.
+            if(itemcases.isEmpty()) {
+                
+                // Exit.
+                return;
+            }
             
-            // List to store itemcases of this world.
-            ArrayList<Itemcase> itemcases = new ArrayList();
+            // Remove duplicate or orphaned display items and update references
+            // to our own.
+            ItemcaseManager.this.displayItems.cleanChunk(chunk);
             
-            // For every itemcase.
-            for(Itemcase itemcase : ItemcaseManager.this.itemcases) {
+            // For every itemcase in this chunk.
+            for(Itemcase itemcase : itemcases) {
                 
-                // Check if itemcase was in deleted world.
-                if(itemcase.getLocation().getWorld().getName() == worldName) {
-                    
-                    // Despawn item.
-                    itemcase.despawnItem();
-                    
-                    // Add to list.
-                    itemcases.add(itemcase);
-                }
+                // Now the chunk is loaded, drop protection above slabs.
+                ItemcaseManager.this.itemcases.settleProtection(itemcase);
             }
             
-            // Remove all itemcases that were in this world from list.
-            ItemcaseManager.this.itemcases.removeAll(itemcases);
+            // If display items are not chunk driven.
+            if(!ItemcaseManager.this.chunkDriven) {
+                
+                // Exit.
+                return;
+            }
+            
+            // For every itemcase in this chunk.
+            for(Itemcase itemcase : itemcases) {
+                
+                // Activate itemcase.
+                ItemcaseManager.this.activate(itemcase);
+            }
         }
         
-        @EventHandler(priority = EventPriority.MONITOR)
-        public void onInventoryCloseEvent(InventoryCloseEvent event) {
+        @EventHandler(priority = EventPriority.MONITOR,
+                ignoreCancelled = true)
+        public void onChunkUnloadEvent(ChunkUnloadEvent event) {
             
-            // Get inventory name.
-            String name = event.getInventory().getName();
+            // Get chunk.
+            Chunk chunk = event.getChunk();
             
-            // If inventory is Itemcase inventory.
-            if(!name.equals(Itemcase.INVENTORY_NAME)) {
+            // Get storage of this chunk's world.
+            ItemcaseStorage storage =
+                    ItemcaseManager.this.storages.get(chunk.getWorld());
+            
+            // If storage is lazy, itemcases are dropped until the chunk loads
+            // again.
+            boolean drop = storage != null && storage.isLazy();
+            
+            // If display items are not chunk driven and nothing is dropped.
+            if(!ItemcaseManager.this.chunkDriven && !drop) {
                 
                 // Exit.
                 return;
             }
             
-            // For every Itemcase.
-            for(Itemcase itemcase : ItemcaseManager.this.itemcases) {
+            // For every itemcase in this chunk.
+            for(Itemcase itemcase : new ArrayList<>(ItemcaseManager.this
+                    .itemcases.getItemcases(chunk.getWorld(), chunk.getX(),
+                            chunk.getZ()))) {
+                
+                // Drop itemcase unless an order or payment is still using
+                // it, in which case it is kept so that the same instance is
+                // found when the chunk loads again.
+                boolean dropped = drop && !ItemCaseCore.instance
+                        .getOrderManager().isInUse(itemcase);
                 
-                // If itemcase is not a shop it wont have storage.
-                if(itemcase.getType() == Type.SHOWCASE) {
+                // If display items are chunk driven or itemcase is dropped.
+                if(ItemcaseManager.this.chunkDriven || dropped) {
                     
-                    // Skip.
-                    continue;
+                    // Park itemcase so its display item isn't saved with the
+                    // chunk and costs nothing while unloaded.
+                    ItemcaseManager.this.park(itemcase);
                 }
                 
-                // If itemcase is inifinite, it wont have storage.
-                if(itemcase.getStorageType() == StorageType.INFINITE) {
+                // If dropping.
+                if(dropped) {
                     
-                    // Skip.
-                    continue;
+                    // Remove from index, the storage keeps its saved form.
+                    ItemcaseManager.this.itemcases.remove(itemcase);
                 }
+            }
+        }
+        
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onWorldDeleteEvent(MVWorldDeleteEvent event) {
+            
+            // Get world name.
+            String worldName = event.getWorld().getName();
+            
+            // World.
+            World world = null;
+            
+            // For every entry.
+            for(Entry<World, ItemcaseStorage> entry :
+                ItemcaseManager.this.storages.entrySet()) {
                 
-                // If inventory belongs to this itemcase.
-                if(itemcase.getStorage().equals(event.getInventory())) {
+                // Check if world name matches.
+                if(entry.getKey().getName().equals(worldName)) {
                     
-                    // Get world file.
-                    WorldFile file = ItemcaseManager.this.worldFiles.get(
-                            itemcase.getLocation().getWorld());
+                    // Set world.
+                    world = entry.getKey();
                     
-                    // Attempt to save itemcase.
-                    try {
-                        
-                        // Save itemcase.
-                        file.saveItemcase(itemcase);
-                        
-                    } catch (IOException e) {
-                        
-                         // Log error.
-                        ItemCaseCore.instance.getConsoleLogger().severe(
-                            "Failed to save itemcase after storage change.", e);
-                    }
+                    // Delete config once pending writes have finished.
+                    ItemcaseManager.this.saver.delete(entry.getValue());
                 }
             }
+            
+            // If no storage was found for this world.
+            if(world == null) {
+                
+                // Exit.
+                return;
+            }
+            
+            // Remove storage.
+            ItemcaseStorage storage =
+                    ItemcaseManager.this.storages.remove(world);
+            ItemcaseManager.this.waitingChunks.remove(storage);
+            ItemcaseManager.this.loadingWorlds.remove(world);
+            
+            // Remove all itemcases that were in this world from index.
+            Collection<Itemcase> itemcases =
+                    ItemcaseManager.this.itemcases.removeWorld(world);
+            
+            // For every itemcase that was in this world.
+            for(Itemcase itemcase : itemcases) {
+                
+                // Stop maintaining and despawn item.
+                ItemcaseManager.this.park(itemcase);
+            }
+        }
+        
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onInventoryCloseEvent(InventoryCloseEvent event) {
+            
+            // Get inventory holder.
+            InventoryHolder holder = event.getInventory().getHolder();
+            
+            // If inventory is not Itemcase storage.
+            if(!(holder instanceof Itemcase)) {
+                
+                // Exit.
+                return;
+            }
+            
+            // Get itemcase.
+            Itemcase itemcase = (Itemcase) holder;
+            
+            // Settle stock, as items may have been moved.
+            boolean changed = itemcase.closeStorage(event.getPlayer());
+            
+            // If nothing changed, or itemcase was destroyed while open.
+            if(!changed || ItemcaseManager.this.itemcases.get(
+                    itemcase.getLocation()) != itemcase) {
+                
+                // Exit.
+                return;
+            }
+            
+            // Get storage.
+            ItemcaseStorage storage = ItemcaseManager.this.storages
+                    .get(itemcase.getLocation().getWorld());
+            
+            // Mark itemcase to be saved on the next flush.
+            storage.saveItemcase(itemcase);
         }
     }
     
@@ -0,0 +1,289 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase.managers;
+
+import com.gmail.bleedobsidian.itemcase.ItemCaseCore;
+import com.gmail.bleedobsidian.itemcase.Itemcase;
+import com.gmail.bleedobsidian.itemcase.configurations.ItemcaseStorage;
+import com.gmail.bleedobsidian.itemcase.configurations.ItemcaseStorage.Fetch;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.bukkit.scheduler.BukkitRunnable;
+
+/**
+ * A task that loads storages in parallel on a pool of worker threads and
+ * then hands the loaded Itemcases to the main thread in batches, spending no
+ * more than the tick budget registering them in any one tick.
+ *
+ * @author Jesse Prescott (BleedObsidian)
+ */
+public final class LoadScheduler extends BukkitRunnable {
+
+    /**
+     * The worker threads that parse and decode storages.
+     */
+    private final ExecutorService workers = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+            (runnable) -> {
+
+                // Create named thread.
+                Thread thread = new Thread(runnable, "ItemCase Loader");
+
+                // Don't prevent the server from stopping.
+                thread.setDaemon(true);
+
+                // Return thread.
+                return thread;
+            });
+
+    /**
+     * Storages that are still being loaded by a worker.
+     */
+    private final ArrayList<Load> loading = new ArrayList<>();
+
+    /**
+     * Work waiting to be done on the main thread, in order.
+     */
+    private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+
+    /**
+     * The most time in nanoseconds that may be spent in a single tick.
+     */
+    private long tickBudget;
+
+    /**
+     * Constructor.
+     *
+     * @param tickBudget The most time in milliseconds to spend per tick.
+     */
+    public LoadScheduler(double tickBudget) {
+
+        // Convert budget to nanoseconds.
+        this.tickBudget = (long) (tickBudget * 1000000);
+    }
+
+    /**
+     * Start this scheduler.
+     */
+    public void start() {
+
+        // Run every tick.
+        this.runTaskTimer(ItemCaseCore.instance, 1, 1);
+    }
+
+    /**
+     * Load the given storage on a worker thread.
+     *
+     * @param storage Storage.
+     * @param register Called on the main thread for each loaded Itemcase.
+     * @param loaded Called on the main thread once every Itemcase has been
+     * registered, or once loading has failed.
+     */
+    public void load(ItemcaseStorage storage, Consumer<Itemcase> register,
+            Runnable loaded) {
+
+        // Submit to workers.
+        Future<ArrayList<Itemcase>> future =
+                this.workers.submit(storage::loadItemcases);
+
+        // Wait for result.
+        this.loading.add(new Load(storage, future, register, loaded));
+    }
+
+    /**
+     * Read from the given storage on a worker thread.
+     *
+     * @param storage Storage.
+     * @param fetch What to read.
+     * @param fetched Called on the main thread once read.
+     */
+    public void fetch(ItemcaseStorage storage, Fetch fetch, Runnable fetched) {
+
+        // Submit to workers, nothing being created until applied.
+        Future<ArrayList<Itemcase>> future = this.workers.submit(() -> {
+
+            // Read.
+            fetch.read();
+
+            // No itemcases to register.
+            return new ArrayList<>();
+        });
+
+        // Wait for result.
+        this.loading.add(new Load(storage, future, (itemcase) -> {},
+                fetched));
+    }
+
+    /**
+     * Set the most time that may be spent in a single tick.
+     *
+     * @param tickBudget Budget in milliseconds.
+     */
+    public void setTickBudget(double tickBudget) {
+
+        // Convert budget to nanoseconds.
+        this.tickBudget = (long) (tickBudget * 1000000);
+    }
+
+    /**
+     * Stop this scheduler, abandoning loads that have not started and
+     * waiting for those in progress, as they may be writing files.
+     */
+    public void shutdown() {
+
+        // Stop timer.
+        this.cancel();
+
+        // For every load.
+        for(Load load : this.loading) {
+
+            // Abandon it if it hasn't started.
+            load.future.cancel(false);
+        }
+
+        // Stop accepting work.
+        this.workers.shutdown();
+
+        // Attempt to wait for loads in progress.
+        try {
+
+            // If workers have not finished in time.
+            if(!this.workers.awaitTermination(30, TimeUnit.SECONDS)) {
+
+                // Log.
+                ItemCaseCore.instance.getConsoleLogger().warning(
+                        "Gave up waiting for itemcases to finish loading.");
+            }
+
+        } catch (InterruptedException e) {
+
+            // Restore interrupt.
+            Thread.currentThread().interrupt();
+        }
+
+        // Forget work.
+        this.loading.clear();
+        this.queue.clear();
+    }
+
+    @Override
+    public void run() {
+
+        // For every storage being loaded.
+        Iterator<Load> iterator = this.loading.iterator();
+        while(iterator.hasNext()) {
+
+            // Get load.
+            Load load = iterator.next();
+
+            // If the worker hasn't finished.
+            if(!load.future.isDone()) {
+
+                // Skip.
+                continue;
+            }
+
+            // Remove from loading.
+            iterator.remove();
+
+            // Attempt to get loaded itemcases.
+            try {
+
+                // For every loaded itemcase.
+                for(Itemcase itemcase : load.future.get()) {
+
+                    // Queue registration.
+                    this.queue.add(() -> load.register.accept(itemcase));
+                }
+
+                // Queue completion after every itemcase.
+                this.queue.add(load.loaded);
+
+            } catch (InterruptedException | ExecutionException e) {
+
+                // Log error.
+                ItemCaseCore.instance.getConsoleLogger().severe(
+                        "Failed to load itemcases for world: " +
+                                load.storage.getWorld().getName(), e);
+
+                // Still finish, the storage not being loaded.
+                this.queue.add(load.loaded);
+            }
+        }
+
+        // Work out when this tick's budget runs out.
+        long deadline = System.nanoTime() + this.tickBudget;
+
+        // While there is work and budget left.
+        while(!this.queue.isEmpty() && System.nanoTime() < deadline) {
+
+            // Do work.
+            this.queue.poll().run();
+        }
+    }
+
+    /**
+     * A storage being loaded by a worker.
+     */
+    private static final class Load {
+
+        /**
+         * Storage.
+         */
+        private final ItemcaseStorage storage;
+
+        /**
+         * The result of the worker.
+         */
+        private final Future<ArrayList<Itemcase>> future;
+
+        /**
+         * Called for each loaded Itemcase.
+         */
+        private final Consumer<Itemcase> register;
+
+        /**
+         * Called once every Itemcase has been registered, or once loading
+         * has failed.
+         */
+        private final Runnable loaded;
+
+        /**
+         * Constructor.
+         *
+         * @param storage Storage.
+         * @param future The result of the worker.
+         * @param register Called for each loaded Itemcase.
+         * @param loaded Called once every Itemcase has been registered, or
+         * once loading has failed.
+         */
+        private Load(ItemcaseStorage storage, Future<ArrayList<Itemcase>> future,
+                Consumer<Itemcase> register, Runnable loaded) {
+
+            // Set fields.
+            this.storage = storage;
+            this.future = future;
+            this.register = register;
+            this.loaded = loaded;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase.managers;
+
+import com.gmail.bleedobsidian.itemcase.ItemCaseCore;
+import com.gmail.bleedobsidian.itemcase.Itemcase;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import org.bukkit.scheduler.BukkitRunnable;
+
+/**
+ * A single task that runs every tick and maintains the display items of every
+ * Itemcase in turn. Rather than every Itemcase being checked on the same tick,
+ * the work is spread evenly so that each Itemcase is checked once per
+ * interval, and no more than the tick budget is spent in any one tick.
+ *
+ * @author Jesse Prescott (BleedObsidian)
+ */
+public final class MaintenanceScheduler extends BukkitRunnable {
+
+    /**
+     * Itemcases waiting to be checked, in round-robin order.
+     */
+    private final LinkedHashSet<Itemcase> itemcases = new LinkedHashSet<>();
+
+    /**
+     * The number of ticks it takes to check every Itemcase once.
+     */
+    private int interval;
+
+    /**
+     * The most time in nanoseconds that may be spent in a single tick.
+     */
+    private long tickBudget;
+
+    /**
+     * The number of Itemcases owed a check, carried over between ticks.
+     */
+    private double owed;
+
+    /**
+     * The number of Itemcases checked in the last tick.
+     */
+    private int lastChecked;
+
+    /**
+     * The total number of Itemcases checked since this scheduler started.
+     */
+    private long totalChecked;
+
+    /**
+     * The total number of ticks this scheduler has run for.
+     */
+    private long ticks;
+
+    /**
+     * Constructor.
+     *
+     * @param interval The number of ticks it takes to check every Itemcase.
+     * @param tickBudget The most time in milliseconds to spend per tick.
+     */
+    public MaintenanceScheduler(int interval, double tickBudget) {
+
+        // Set interval.
+        this.interval = Math.max(1, interval);
+
+        // Convert budget to nanoseconds.
+        this.tickBudget = (long) (tickBudget * 1000000);
+    }
+
+    /**
+     * Start this scheduler.
+     */
+    public void start() {
+
+        // Run every tick.
+        this.runTaskTimer(ItemCaseCore.instance, 1, 1);
+    }
+
+    /**
+     * Add the given Itemcase to be maintained.
+     *
+     * @param itemcase Itemcase.
+     */
+    public void add(Itemcase itemcase) {
+
+        // Add to end of queue.
+        this.itemcases.add(itemcase);
+    }
+
+    /**
+     * Stop maintaining the given Itemcase.
+     *
+     * @param itemcase Itemcase.
+     */
+    public void remove(Itemcase itemcase) {
+
+        // Remove from queue.
+        this.itemcases.remove(itemcase);
+    }
+
+    /**
+     * @param itemcase Itemcase.
+     * @return If the given Itemcase is being maintained.
+     */
+    public boolean contains(Itemcase itemcase) {
+
+        // Return if queued.
+        return this.itemcases.contains(itemcase);
+    }
+
+    /**
+     * Stop maintaining every Itemcase.
+     */
+    public void clear() {
+
+        // Clear queue.
+        this.itemcases.clear();
+        this.owed = 0;
+    }
+
+    /**
+     * Set the number of ticks it takes to check every Itemcase. Takes effect
+     * from the next tick.
+     *
+     * @param interval Interval.
+     */
+    public void setInterval(int interval) {
+
+        // Set interval.
+        this.interval = Math.max(1, interval);
+    }
+
+    /**
+     * Set the most time that may be spent in a single tick.
+     *
+     * @param tickBudget Budget in milliseconds.
+     */
+    public void setTickBudget(double tickBudget) {
+
+        // Convert budget to nanoseconds.
+        this.tickBudget = (long) (tickBudget * 1000000);
+    }
+
+    @Override
+    public void run() {
+
+        // Count tick.
+        this.ticks++;
+
+        // Get number of itemcases.
+        int size = this.itemcases.size();
+
+        // Each itemcase is owed one check per interval. Never owe more than
+        // one full pass in case the budget has been exceeded for a while.
+        this.owed = Math.min(this.owed + (double) size / this.interval, size);
+
+        // Work out when this tick's budget runs out.
+        long deadline = System.nanoTime() + this.tickBudget;
+
+        // Number of itemcases checked this tick.
+        int checked = 0;
+
+        // While there is work owed.
+        while(checked < (int) this.owed && !this.itemcases.isEmpty()) {
+
+            // Take itemcase from the front of the queue.
+            Iterator<Itemcase> iterator = this.itemcases.iterator();
+            Itemcase itemcase = iterator.next();
+            iterator.remove();
+
+            // Put it at the back of the queue.
+            this.itemcases.add(itemcase);
+
+            // Check itemcase.
+            itemcase.maintain();
+            checked++;
+
+            // If the budget has run out.
+            if(System.nanoTime() >= deadline) {
+
+                // Carry the rest over to the next tick.
+                break;
+            }
+        }
+
+        // Pay off checks.
+        this.owed -= checked;
+
+        // Record statistics.
+        this.lastChecked = checked;
+        this.totalChecked += checked;
+    }
+
+    /**
+     * @return The number of Itemcases being maintained.
+     */
+    public int size() {
+
+        // Return size.
+        return this.itemcases.size();
+    }
+
+    /**
+     * @return The number of Itemcases checked in the last tick.
+     */
+    public int getLastChecked() {
+
+        // Return count.
+        return this.lastChecked;
+    }
+
+    /**
+     * @return The average number of Itemcases checked per tick.
+     */
+    public double getAverageChecked() {
+
+        // Return average.
+        return this.ticks == 0 ? 0 : (double) this.totalChecked / this.ticks;
+    }
+}
@@ -14,26 +14,92 @@
  */
 package com.gmail.bleedobsidian.itemcase.managers;
 
-import com.gmail.bleedobsidian.itemcase.loggers.ChatLogger;
+import com.gmail.bleedobsidian.itemcase.loggers.ChatLogger.Batch;
 import com.gmail.bleedobsidian.itemcase.ItemCaseCore;
 import com.gmail.bleedobsidian.itemcase.Itemcase;
 import com.gmail.bleedobsidian.itemcase.Itemcase.Type;
-import com.gmail.bleedobsidian.itemcase.LanguageTranslator;
+import com.gmail.bleedobsidian.itemcase.Placeholders;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.UUID;
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
 
 /**
  * Manages all active Itemcase orders.
  * 
+ * Orders are cancelled when their player leaves, or once they have not been
+ * used for the order timeout. Expiry is tracked with a timer wheel, a ring
+ * of slots that each hold the orders due to expire in one sweep, so a sweep
+ * only looks at the orders in a single slot.
+ * 
  * @author Jesse Prescott (BleedObsidian)
  */
 public final class OrderManager {
     
     /**
-     * HashMap of players and their active orders.
+     * The number of ticks between sweeps.
+     */
+    private static final int SWEEP_INTERVAL = 20;
+    
+    /**
+     * The number of slots in the timer wheel.
+     */
+    private static final int WHEEL_SIZE = 64;
+    
+    /**
+     * HashMap of player UUIDs and their active orders.
      */
-    private final HashMap<Player, ItemcaseOrder> orders = new HashMap();
+    private final HashMap<UUID, ItemcaseOrder> orders = new HashMap<>();
+    
+    /**
+     * Timer wheel. Every order is in the slot of its deadline, modulo the
+     * size of the wheel.
+     */
+    private final ArrayList<ArrayList<ItemcaseOrder>> wheel =
+            new ArrayList<>(OrderManager.WHEEL_SIZE);
+    
+    /**
+     * The number of sweeps so far, the time deadlines are measured in.
+     */
+    private long sweeps;
+    
+    /**
+     * The number of payments being settled for each itemcase. These keep
+     * using their itemcase even once their order has ended.
+     */
+    private final HashMap<Itemcase, Integer> settling = new HashMap<>();
+    
+    /**
+     * Constructor.
+     */
+    public OrderManager() {
+        
+        // Create slots.
+        for(int i = 0; i < OrderManager.WHEEL_SIZE; i++) {
+            this.wheel.add(new ArrayList<>());
+        }
+    }
+    
+    /**
+     * Register listener and start sweeping expired orders.
+     */
+    public void registerListener() {
+        
+        // Register listener with bukkit.
+        Bukkit.getPluginManager().registerEvents(
+                new OrderManagerListener(), ItemCaseCore.instance);
+        
+        // Sweep every interval.
+        Bukkit.getScheduler().runTaskTimer(ItemCaseCore.instance,
+                this::sweep, OrderManager.SWEEP_INTERVAL,
+                OrderManager.SWEEP_INTERVAL);
+    }
     
     /**
      * Create new order.
@@ -43,56 +109,61 @@ public final class OrderManager {
      */
     public void createOrder(Itemcase itemcase, Player player) {
         
-        // Get chat logger.
-        ChatLogger chatLogger = ItemCaseCore.instance.getChatLogger();
+        // Get chat logger and start a batch, so the order is sent at once.
+        Batch batch = ItemCaseCore.instance.getChatLogger().batch(player);
 
-        // Get translator.
-        LanguageTranslator translator = 
-                ItemCaseCore.instance.getTranslator();
+        // Placeholder values.
+        Placeholders placeholders = Placeholders.NONE;
         
         // Create new order for amount 1.
-        ItemcaseOrder order = new ItemcaseOrder(itemcase, 1);
+        ItemcaseOrder order =
+                new ItemcaseOrder(itemcase, 1, player.getUniqueId());
+        
+        // Add to map.
+        this.orders.put(player.getUniqueId(), order);
         
-        // Add to list.
-        this.orders.put(player, order);
+        // Set deadline and add to wheel.
+        this.touch(order);
+        this.schedule(order);
 
-        // Send message.
-        chatLogger.message(player, "---------- Order ----------");
+        // Add message.
+        batch.add("---------- Order ----------");
 
         // If item has custom display name.
         if(itemcase.getItemStack().getItemMeta().hasDisplayName()) {
 
             // Set placeholder.
-            translator.setPlaceholder("%ITEM_NAME%", 
+            placeholders = placeholders.with("%ITEM_NAME%", 
                     ChatColor.GOLD + itemcase.getItemStack().getItemMeta()
                             .getDisplayName());
         } else {
 
             // Set placeholder.
-            translator.setPlaceholder("%ITEM_NAME%", 
+            placeholders = placeholders.with("%ITEM_NAME%", 
                     ChatColor.GOLD + itemcase.getItemStack().getType().name());
         }
         
-        // Send message.
-        chatLogger.message(player, "order.item");
+        // Add message.
+        batch.add("order.item", placeholders);
         
         // Set amount placeholder.
-        translator.setPlaceholder("%AMOUNT%", ChatColor.GOLD + 
+        placeholders = placeholders.with("%AMOUNT%", ChatColor.GOLD + 
                 String.valueOf(1));
         
-        // Send message.
-        chatLogger.message(player, "order.amount");
+        // Add message.
+        batch.add("order.amount", placeholders);
         
         // If shop buys products.
         if(itemcase.getType() == Type.SHOP_BUY ||
                 itemcase.getType() == Type.SHOP_MULTI) {
             
             // Set placeholder.
-            translator.setPlaceholder("%BUY_PRICE%", "" + ChatColor.GOLD +
+            placeholders = placeholders.with("%BUY_PRICE%",
+                    "" + ChatColor.GOLD +
                     itemcase.getBuyPrice());
             
-            // Send message.
-            chatLogger.message(player, "order.buy-price");
+            // Add message.
+            batch.add("order.buy-price", placeholders);
         }
         
         // If shop sells products.
@@ -100,22 +171,25 @@ public final class OrderManager {
                 itemcase.getType() == Type.SHOP_MULTI) {
             
             // Set placeholder.
-            translator.setPlaceholder("%SELL_PRICE%", "" + ChatColor.GOLD +
+            placeholders = placeholders.with("%SELL_PRICE%",
+                    "" + ChatColor.GOLD +
                     itemcase.getSellPrice());
             
-            // Send message.
-            chatLogger.message(player, "order.sell-price");
+            // Add message.
+            batch.add("order.sell-price", placeholders);
         }
         
-        // Send message.
-        chatLogger.message(player, "---------------------------");
+        // Add message.
+        batch.add("---------------------------");
         
-        // Send message.
-        chatLogger.message(player, "order.help");
+        // Add message.
+        batch.add("order.help");
         
+        // Add message.
+        batch.add("---------------------------");
         
-        // Send message.
-        chatLogger.message(player, "---------------------------");
+        // Send order.
+        batch.send();
     }
     
     /**
@@ -125,8 +199,8 @@ public final class OrderManager {
      */
     public void completeOrder(Player player) {
         
-        // Remove oder.
-        this.orders.remove(player);
+        // Remove order, it is dropped from the wheel when its slot is swept.
+        this.orders.remove(player.getUniqueId());
     }
     
     /**
@@ -136,17 +210,166 @@ public final class OrderManager {
     public boolean hasOrder(Player player) {
         
         // Return if order exists for given player.
-        return this.orders.containsKey(player);
+        return this.orders.containsKey(player.getUniqueId());
     }
     
     /**
+     * Get the order linked with this player, which counts as using it.
+     * 
      * @param player Player.
      * @return The order linked with this player.
      */
     public ItemcaseOrder getOrder(Player player) {
         
-        // Return order linked to player.
-        return this.orders.get(player);
+        // Get order linked to player.
+        ItemcaseOrder order = this.orders.get(player.getUniqueId());
+        
+        // If order exists.
+        if(order != null) {
+            
+            // Push back deadline.
+            this.touch(order);
+        }
+        
+        // Return order.
+        return order;
+    }
+    
+    /**
+     * Mark a payment for the given itemcase as being settled.
+     * 
+     * @param itemcase Itemcase.
+     */
+    public void startSettling(Itemcase itemcase) {
+        
+        // Count payment.
+        this.settling.merge(itemcase, 1, Integer::sum);
+    }
+    
+    /**
+     * Mark a payment for the given itemcase as settled.
+     * 
+     * @param itemcase Itemcase.
+     */
+    public void finishSettling(Itemcase itemcase) {
+        
+        // Uncount payment, forgetting itemcase once none are left.
+        this.settling.computeIfPresent(itemcase,
+                (key, count) -> count > 1 ? count - 1 : null);
+    }
+    
+    /**
+     * @param itemcase Itemcase.
+     * @return If the given itemcase is used by an order or a payment being
+     * settled, in which case that instance must be kept.
+     */
+    public boolean isInUse(Itemcase itemcase) {
+        
+        // If a payment is being settled.
+        if(this.settling.containsKey(itemcase)) {
+            
+            // In use.
+            return true;
+        }
+        
+        // For every order.
+        for(ItemcaseOrder order : this.orders.values()) {
+            
+            // If order is for this itemcase.
+            if(order.itemcase == itemcase) {
+                
+                // In use.
+                return true;
+            }
+        }
+        
+        // Not in use.
+        return false;
+    }
+    
+    /**
+     * @return The number of active orders.
+     */
+    public int getActiveOrders() {
+        
+        // Return number of orders.
+        return this.orders.size();
+    }
+    
+    /**
+     * Set the deadline of the given order to the order timeout from now.
+     * 
+     * @param order Order.
+     */
+    private void touch(ItemcaseOrder order) {
+        
+        // Get timeout in sweeps, rounding up.
+        int timeout = ItemCaseCore.instance.getConfigFile().getOrderTimeout();
+        int sweeps = (timeout + OrderManager.SWEEP_INTERVAL - 1) /
+                OrderManager.SWEEP_INTERVAL;
+        
+        // A deadline of the current sweep would only be reached after the
+        // wheel has gone all the way around, so wait at least one sweep.
+        sweeps = Math.max(1, sweeps);
+        
+        // Set deadline. The order stays in its slot until that is swept.
+        order.deadline = this.sweeps + sweeps;
+    }
+    
+    /**
+     * Add the given order to the slot of its deadline.
+     * 
+     * @param order Order.
+     */
+    private void schedule(ItemcaseOrder order) {
+        
+        // Add to slot.
+        this.wheel.get((int) (order.deadline % OrderManager.WHEEL_SIZE))
+                .add(order);
+    }
+    
+    /**
+     * Advance the wheel by one slot, cancelling the orders in it that have
+     * expired.
+     */
+    private void sweep() {
+        
+        // Advance.
+        this.sweeps++;
+        
+        // Get slot and replace it, as orders may be put back.
+        int index = (int) (this.sweeps % OrderManager.WHEEL_SIZE);
+        ArrayList<ItemcaseOrder> slot = this.wheel.get(index);
+        
+        // If slot is empty.
+        if(slot.isEmpty()) {
+            
+            // Exit.
+            return;
+        }
+        
+        // Replace slot.
+        this.wheel.set(index, new ArrayList<>());
+        
+        // For every order in slot.
+        for(ItemcaseOrder order : slot) {
+            
+            // If order was completed or replaced, drop it.
+            if(this.orders.get(order.player) != order) {
+                continue;
+            }
+            
+            // If order has expired.
+            if(order.deadline <= this.sweeps) {
+                
+                // Cancel order.
+                this.orders.remove(order.player);
+                continue;
+            }
+            
+            // Used since it was scheduled or due on a later turn, put back.
+            this.schedule(order);
+        }
     }
     
     /**
@@ -164,17 +387,29 @@ public final class OrderManager {
          */
         private int amount;
         
+        /**
+         * The UUID of the player this order belongs to.
+         */
+        private final UUID player;
+        
+        /**
+         * The sweep this order expires on.
+         */
+        private long deadline;
+        
         /**
          * Constructor.
          * 
          * @param itemcase Itemcase.
          * @param amount Amount.
+         * @param player The UUID of the player this order belongs to.
          */
-        public ItemcaseOrder(Itemcase itemcase, int amount) {
+        public ItemcaseOrder(Itemcase itemcase, int amount, UUID player) {
             
             // Set attributes.
             this.itemcase = itemcase;
             this.amount = amount;
+            this.player = player;
         }
         
         /**
@@ -204,4 +439,18 @@ public final class OrderManager {
             this.amount = amount;
         }
     }
+    
+    /**
+     * Listener for players leaving.
+     */
+    public final class OrderManagerListener implements Listener {
+        
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onPlayerQuitEvent(PlayerQuitEvent event) {
+            
+            // Cancel player's order, if any.
+            OrderManager.this.orders.remove(
+                    event.getPlayer().getUniqueId());
+        }
+    }
 }
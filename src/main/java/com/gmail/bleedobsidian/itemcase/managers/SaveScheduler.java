@@ -0,0 +1,282 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase.managers;
+
+import com.gmail.bleedobsidian.itemcase.ItemCaseCore;
+import com.gmail.bleedobsidian.itemcase.configurations.ItemcaseStorage;
+import com.gmail.bleedobsidian.itemcase.configurations.ItemcaseStorage.Flush;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.bukkit.scheduler.BukkitRunnable;
+
+/**
+ * A task that periodically flushes every ItemcaseStorage with unsaved
+ * changes.
+ * Changes are snapshotted on the main thread and written to disk by a single
+ * background thread, so writes for the same storage always happen in order.
+ * In between flushes every storage is synced each tick by another background
+ * thread, so a change made on one tick is on disk about a tick later.
+ *
+ * @author Jesse Prescott (BleedObsidian)
+ */
+public final class SaveScheduler extends BukkitRunnable {
+
+    /**
+     * The storages to flush.
+     */
+    private final Collection<ItemcaseStorage> storages;
+
+    /**
+     * The number of ticks between flushes.
+     */
+    private final int interval;
+
+    /**
+     * The number of ticks since the last flush.
+     */
+    private int ticks;
+
+    /**
+     * The thread that writes changes.
+     */
+    private final ExecutorService writer =
+            Executors.newSingleThreadExecutor((runnable) -> {
+
+                // Create named thread.
+                return new Thread(runnable, "ItemCase Writer");
+            });
+
+    /**
+     * The thread that syncs storages. Storages are synced when they are
+     * closed, so it doesn't need to keep the server running.
+     */
+    private final ExecutorService syncer =
+            Executors.newSingleThreadExecutor((runnable) -> {
+
+                // Create named daemon thread.
+                Thread thread = new Thread(runnable, "ItemCase Syncer");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * If the syncer is still busy with the last sync.
+     */
+    private final AtomicBoolean syncing = new AtomicBoolean();
+
+    /**
+     * Constructor.
+     *
+     * @param storages The storages to flush, usually a live view.
+     * @param interval The number of ticks between flushes.
+     */
+    public SaveScheduler(Collection<ItemcaseStorage> storages, int interval) {
+
+        // Set storages.
+        this.storages = storages;
+
+        // Set interval.
+        this.interval = Math.max(1, interval);
+    }
+
+    /**
+     * Start this scheduler.
+     */
+    public void start() {
+
+        // Run every tick.
+        this.runTaskTimer(ItemCaseCore.instance, 1, 1);
+    }
+
+    @Override
+    public void run() {
+
+        // Sync storages.
+        this.sync();
+
+        // If it is not time to flush yet.
+        if(++this.ticks < this.interval) {
+
+            // Exit.
+            return;
+        }
+
+        // Flush storages.
+        this.ticks = 0;
+        this.save();
+    }
+
+    /**
+     * Sync every storage on the syncer thread, unless the last sync is still
+     * running, in which case the changes since are left to the next sync.
+     */
+    private void sync() {
+
+        // If last sync is still running.
+        if(!this.syncing.compareAndSet(false, true)) {
+
+            // Exit.
+            return;
+        }
+
+        // Copy storages, as the live view may only be used on this thread.
+        ArrayList<ItemcaseStorage> storages = new ArrayList<>(this.storages);
+
+        // Sync on the syncer thread.
+        this.syncer.execute(() -> {
+
+            // For every storage.
+            for(ItemcaseStorage storage : storages) {
+
+                // Attempt to sync storage.
+                try {
+
+                    // Sync storage.
+                    storage.sync();
+
+                } catch (IOException e) {
+
+                    // Log error.
+                    ItemCaseCore.instance.getConsoleLogger().severe(
+                            "Failed to sync itemcase journal.", e);
+                }
+            }
+
+            // Finished.
+            this.syncing.set(false);
+        });
+    }
+
+    /**
+     * Flush every storage with changes, writing them on the writer thread.
+     */
+    private void save() {
+
+        // For every storage.
+        for(ItemcaseStorage storage : this.storages) {
+
+            // If storage has not finished loading or has no changes.
+            if(!storage.isLoaded() || !storage.isDirty()) {
+
+                // Skip.
+                continue;
+            }
+
+            // Changes to write.
+            Flush flush;
+
+            // Attempt to take changes on this thread.
+            try {
+
+                // Take changes.
+                flush = storage.flush();
+
+            } catch (IOException e) {
+
+                // Log error.
+                ItemCaseCore.instance.getConsoleLogger().severe(
+                        "Failed to save itemcases to config.", e);
+
+                // Try again next time.
+                continue;
+            }
+
+            // Write it on the writer thread.
+            this.writer.execute(() -> {
+
+                // Attempt to write changes.
+                try {
+
+                    // Write changes.
+                    flush.write();
+
+                } catch (IOException e) {
+
+                    // Log error.
+                    ItemCaseCore.instance.getConsoleLogger().severe(
+                            "Failed to save itemcases to config.", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Delete everything in the given storage once any pending writes to it
+     * have finished.
+     *
+     * @param storage Storage.
+     */
+    public void delete(ItemcaseStorage storage) {
+
+        // Delete on the writer thread.
+        this.writer.execute(() -> {
+
+            // Attempt to delete config.
+            try {
+
+                // Delete config.
+                storage.delete();
+
+            } catch (IOException e) {
+
+                // Log error.
+                ItemCaseCore.instance.getConsoleLogger().severe(
+                        "Failed to delete itemcase config.", e);
+            }
+        });
+    }
+
+    /**
+     * Stop this scheduler and write any remaining changes after the pending
+     * writes, waiting for them all to finish. Every write stays on the writer
+     * thread, so even if waiting times out no two writes to the same storage
+     * ever overlap.
+     */
+    public void flush() {
+
+        // Stop timer.
+        this.cancel();
+
+        // Queue remaining changes after pending writes.
+        this.save();
+
+        // Stop accepting writes and syncs.
+        this.writer.shutdown();
+        this.syncer.shutdown();
+
+        // Attempt to wait for writes.
+        try {
+
+            // If writer has not finished in time.
+            if(!this.writer.awaitTermination(30, TimeUnit.SECONDS)) {
+
+                // Log, the writer keeps the server running until it is done.
+                ItemCaseCore.instance.getConsoleLogger().warning(
+                        "Still saving itemcases, the server will stop once " +
+                        "they have been saved.");
+            }
+
+        } catch (InterruptedException e) {
+
+            // Restore interrupt.
+            Thread.currentThread().interrupt();
+        }
+    }
+}
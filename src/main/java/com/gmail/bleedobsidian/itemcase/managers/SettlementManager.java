@@ -0,0 +1,314 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase.managers;
+
+import com.gmail.bleedobsidian.itemcase.ItemCaseCore;
+import java.util.HashSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import net.milkbowl.vault.economy.Economy;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.scheduler.BukkitRunnable;
+
+/**
+ * Settles the payments of orders with the economy provider, away from the
+ * main thread. Economy plugins backed by a database can take milliseconds
+ * per call, which would otherwise be spent in a single tick.
+ *
+ * A settlement is started on the main thread once the goods of an order
+ * have been reserved. The money is moved by the worker, and the callback is
+ * then run on the main thread to hand over or give back the goods depending
+ * on the result.
+ *
+ * @author Jesse Prescott (BleedObsidian)
+ */
+public final class SettlementManager extends BukkitRunnable {
+
+    /**
+     * The results of a settlement.
+     */
+    public static enum Result {
+
+        /**
+         * The money was moved.
+         */
+        SUCCESS,
+
+        /**
+         * The payer does not have enough money, nothing was moved.
+         */
+        INSUFFICIENT_FUNDS,
+
+        /**
+         * The economy provider refused, nothing was moved.
+         */
+        FAILED,
+
+        /**
+         * The money was taken from the payer but could neither be given to
+         * the payee nor given back, so must be sorted out by hand.
+         */
+        UNRECOVERED
+    }
+
+    /**
+     * Called on the main thread once a settlement has finished.
+     */
+    public static interface Callback {
+
+        /**
+         * @param result Result of the settlement.
+         */
+        public void settled(Result result);
+    }
+
+    /**
+     * The economy provider.
+     */
+    private final Economy economy;
+
+    /**
+     * Runs settlements. Either a worker thread or, if economy calls must
+     * stay on the main thread, the calling thread.
+     */
+    private final Executor worker;
+
+    /**
+     * Callbacks waiting to be run on the main thread.
+     */
+    private final ConcurrentLinkedQueue<Runnable> finished =
+            new ConcurrentLinkedQueue<>();
+
+    /**
+     * UUIDs of the players that have a settlement in progress. Only used on
+     * the main thread.
+     */
+    private final HashSet<UUID> pending = new HashSet<>();
+
+    /**
+     * If callbacks are being run every tick.
+     */
+    private boolean started;
+
+    /**
+     * Constructor.
+     *
+     * @param economy The economy provider.
+     * @param worker Runs settlements.
+     */
+    public SettlementManager(Economy economy, Executor worker) {
+
+        // Set economy and worker.
+        this.economy = economy;
+        this.worker = worker;
+    }
+
+    /**
+     * Start running callbacks every tick.
+     */
+    public void start() {
+
+        // Run every tick.
+        this.runTaskTimer(ItemCaseCore.instance, 1, 1);
+        this.started = true;
+    }
+
+    /**
+     * Move the given amount of money from one account to another. Either
+     * account may be null, in which case the money comes from or goes to
+     * nowhere, as it does for infinite itemcases.
+     *
+     * @param player The UUID of the player settling, who can only settle one
+     * payment at a time.
+     * @param from Payer, or null.
+     * @param to Payee, or null.
+     * @param world World name.
+     * @param amount Amount.
+     * @param callback Called on the main thread with the result.
+     */
+    public void transfer(UUID player, OfflinePlayer from, OfflinePlayer to,
+            String world, double amount, Callback callback) {
+
+        // Mark player as settling.
+        this.pending.add(player);
+
+        // Settle on worker.
+        this.worker.execute(() -> {
+
+            // Move money.
+            Result result = this.settle(from, to, world, amount);
+
+            // Hand result back to main thread.
+            this.finished.add(() -> {
+
+                // Player may settle again.
+                this.pending.remove(player);
+
+                // Run callback.
+                callback.settled(result);
+            });
+        });
+
+        // If settled on this thread.
+        if(!(this.worker instanceof ExecutorService)) {
+
+            // Run callback straight away.
+            this.run();
+        }
+    }
+
+    /**
+     * @param player Player UUID.
+     * @return If the given player has a settlement in progress.
+     */
+    public boolean isSettling(UUID player) {
+
+        // Return if pending.
+        return this.pending.contains(player);
+    }
+
+    /**
+     * Run the callbacks of every finished settlement.
+     */
+    @Override
+    public void run() {
+
+        // For every finished settlement.
+        Runnable callback;
+        while((callback = this.finished.poll()) != null) {
+
+            // Run callback.
+            callback.run();
+        }
+    }
+
+    /**
+     * Finish every settlement in progress and run their callbacks. Called on
+     * the main thread when the plugin is disabled.
+     */
+    public void close() {
+
+        // If running every tick.
+        if(this.started) {
+
+            // Stop.
+            this.cancel();
+            this.started = false;
+        }
+
+        // If settling on a worker thread.
+        if(this.worker instanceof ExecutorService) {
+
+            // Stop accepting settlements.
+            ExecutorService service = (ExecutorService) this.worker;
+            service.shutdown();
+
+            // Attempt to wait for settlements in progress.
+            try {
+
+                // Wait for worker.
+                service.awaitTermination(30, TimeUnit.SECONDS);
+
+            } catch (InterruptedException e) {
+
+                // Restore interrupt.
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Run remaining callbacks.
+        this.run();
+    }
+
+    /**
+     * Move money. Runs on the worker.
+     *
+     * @param from Payer, or null.
+     * @param to Payee, or null.
+     * @param world World name.
+     * @param amount Amount.
+     * @return Result.
+     */
+    private Result settle(OfflinePlayer from, OfflinePlayer to, String world,
+            double amount) {
+
+        // If there is a payer.
+        if(from != null) {
+
+            // Attempt to take money.
+            try {
+
+                // If payer can't afford it.
+                if(!this.economy.has(from, world, amount)) {
+                    return Result.INSUFFICIENT_FUNDS;
+                }
+
+                // If money could not be taken.
+                if(!this.economy.withdrawPlayer(from, world, amount)
+                        .transactionSuccess()) {
+                    return Result.FAILED;
+                }
+
+            } catch (RuntimeException e) {
+
+                // Economy provider failed, nothing was taken.
+                return Result.FAILED;
+            }
+        }
+
+        // If there is a payee and money could not be given.
+        if(to != null && !this.deposit(to, world, amount)) {
+
+            // If nothing was taken, nothing was moved.
+            if(from == null) {
+                return Result.FAILED;
+            }
+
+            // Give money back to payer.
+            return this.deposit(from, world, amount) ?
+                    Result.FAILED : Result.UNRECOVERED;
+        }
+
+        // Money was moved.
+        return Result.SUCCESS;
+    }
+
+    /**
+     * Give money to an account. Runs on the worker.
+     *
+     * @param to Payee.
+     * @param world World name.
+     * @param amount Amount.
+     * @return If successful.
+     */
+    private boolean deposit(OfflinePlayer to, String world, double amount) {
+
+        // Attempt to give money.
+        try {
+
+            // Return if successful.
+            return this.economy.depositPlayer(to, world, amount)
+                    .transactionSuccess();
+
+        } catch (RuntimeException e) {
+
+            // Economy provider failed.
+            return false;
+        }
+    }
+}
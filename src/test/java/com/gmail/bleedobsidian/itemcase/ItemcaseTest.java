@@ -14,7 +14,6 @@
  */
 package com.gmail.bleedobsidian.itemcase;
 
-import com.gmail.bleedobsidian.itemcase.Itemcase.ItemcaseTask;
 import com.gmail.bleedobsidian.itemcase.Itemcase.Type;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
@@ -24,7 +23,6 @@ import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
-import org.bukkit.plugin.java.JavaPlugin;
 import static org.junit.Assert.assertEquals;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -34,7 +32,6 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.powermock.api.mockito.PowerMockito;
-import static org.powermock.api.mockito.PowerMockito.whenNew;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
@@ -219,27 +216,20 @@ public class ItemcaseTest {
         new Itemcase(type, itemstack, location, null);
     }
     
-    public void spawnItem_taskStarted_pass() throws Exception {
+    public void spawnItem_itemDropped_pass() throws Exception {
         
         // Create valid itemcase.
         Itemcase itemcase = this.createValidItemcase();
         
-        // Create mock bukkit runnable.
-        ItemcaseTask runnable = PowerMockito.mock(ItemcaseTask.class);
-        
-        // When creating a new bukkit runnable (as done so inside of spawnItem
-        // return a mock.
-        whenNew(ItemcaseTask.class).withAnyArguments().thenReturn(runnable);
-        
         // Pretend chunk is loaded.
         when(itemcase.getLocation().getWorld().isChunkLoaded(
-                any(Chunk.class))).thenReturn(true);
+                anyInt(), anyInt())).thenReturn(true);
         
         // Spawn item.
         itemcase.spawnItem();
         
-        // verify task was started.
-        verify(runnable)
-                .runTaskTimer(any(JavaPlugin.class), anyInt(), anyInt());
+        // verify display item was dropped.
+        verify(itemcase.getLocation().getWorld())
+                .dropItem(any(Location.class), any(ItemStack.class));
     }
 }
@@ -0,0 +1,85 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link com.gmail.bleedobsidian.itemcase.MessageTemplate}
+ *
+ * @author Jesse Prescott (BleedObsidian).
+ */
+public class MessageTemplateTest {
+
+    @Test
+    public void render_setPlaceholders_replaced() {
+
+        // Set placeholders.
+        Placeholders values = Placeholders.of("%PLAYER%", "Steve")
+                .with("%AMOUNT%", "5");
+
+        // Compile template.
+        MessageTemplate template = MessageTemplate.compile(
+                "%PLAYER% sold %AMOUNT% x %ITEM_NAME% to you.");
+
+        // Check set placeholders are replaced and unset are left as is.
+        assertEquals("Steve sold 5 x %ITEM_NAME% to you.",
+                template.render(values));
+    }
+
+    @Test
+    public void render_percentSigns_leftAsIs() {
+
+        // Set placeholder.
+        Placeholders values = Placeholders.of("%AMOUNT%", "50");
+
+        // Compile template with signs that are not placeholders.
+        MessageTemplate template = MessageTemplate.compile(
+                "Up 10% at 100 % off %AMOUNT%%");
+
+        // Check only the placeholder is replaced.
+        assertEquals("Up 10% at 100 % off 50%", template.render(values));
+    }
+
+    @Test
+    public void render_valueContainsPlaceholder_notReplacedAgain() {
+
+        // Set placeholders, one value looking like another placeholder.
+        Placeholders values = Placeholders.of("%ITEM_NAME%", "%MONEY%")
+                .with("%MONEY%", "$5");
+
+        // Compile template.
+        MessageTemplate template = MessageTemplate.compile("Item: %ITEM_NAME%");
+
+        // Check value is inserted as is.
+        assertEquals("Item: %MONEY%", template.render(values));
+    }
+
+    @Test
+    public void render_replacedValue_previousSetUnchanged() {
+
+        // Set placeholder, then replace it in a copy.
+        Placeholders first = Placeholders.of("%AMOUNT%", "1");
+        Placeholders second = first.with("%AMOUNT%", "2");
+
+        // Compile template.
+        MessageTemplate template = MessageTemplate.compile("%AMOUNT%");
+
+        // Check each set renders its own value.
+        assertEquals("1", template.render(first));
+        assertEquals("2", template.render(second));
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase.configurations;
+
+import com.gmail.bleedobsidian.itemcase.Itemcase;
+import com.gmail.bleedobsidian.itemcase.Itemcase.StorageType;
+import com.gmail.bleedobsidian.itemcase.Itemcase.Type;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.UUID;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.inventory.ItemFactory;
+import org.bukkit.inventory.ItemStack;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import static org.mockito.Mockito.when;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+/**
+ * Unit test for
+ * {@link com.gmail.bleedobsidian.itemcase.configurations.BinaryFormat}
+ *
+ * @author Jesse Prescott (BleedObsidian).
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(Bukkit.class)
+public class BinaryFormatTest {
+
+    /**
+     * Temporary folder for test files.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void decode_encodedItemcase_equal() throws Exception {
+
+        // Mock world.
+        World world = PowerMockito.mock(World.class);
+
+        // Mock owner.
+        UUID uuid = UUID.randomUUID();
+        OfflinePlayer owner = PowerMockito.mock(OfflinePlayer.class);
+        when(owner.getUniqueId()).thenReturn(uuid);
+
+        // Return owner when looked up.
+        PowerMockito.mockStatic(Bukkit.class);
+        when(Bukkit.getOfflinePlayer(uuid)).thenReturn(owner);
+
+        // Create itemcase.
+        Itemcase itemcase = new Itemcase(Type.SHOWCASE,
+                new ItemStack(Material.DIAMOND), new Location(world, -12, 70,
+                        30000000), owner);
+
+        // Encode and decode itemcase.
+        Itemcase decoded = BinaryFormat.decode(
+                BinaryFormat.encode(itemcase), world);
+
+        // Test itemcase is unchanged.
+        assertEquals(Type.SHOWCASE, decoded.getType());
+        assertEquals(-12, decoded.getLocation().getBlockX());
+        assertEquals(70, decoded.getLocation().getBlockY());
+        assertEquals(30000000, decoded.getLocation().getBlockZ());
+        assertEquals(owner, decoded.getOwner());
+        assertEquals(itemcase.getItemStack(), decoded.getItemStack());
+    }
+
+    @Test
+    public void decode_encodedVirtualShop_equal() throws Exception {
+
+        // Mock world.
+        World world = PowerMockito.mock(World.class);
+
+        // Mock owner.
+        UUID uuid = UUID.randomUUID();
+        OfflinePlayer owner = PowerMockito.mock(OfflinePlayer.class);
+        when(owner.getUniqueId()).thenReturn(uuid);
+
+        // Return owner when looked up.
+        PowerMockito.mockStatic(Bukkit.class);
+        when(Bukkit.getOfflinePlayer(uuid)).thenReturn(owner);
+
+        // Create shop with virtual storage.
+        Itemcase itemcase = new Itemcase(Type.SHOP_MULTI,
+                new ItemStack(Material.DIAMOND), new Location(world, 5, 64,
+                        -5), owner);
+        itemcase.setStorageType(StorageType.VIRTUAL);
+        itemcase.setQuantity(5000000000L);
+        itemcase.setBuyPrice(2.5);
+        itemcase.setSellPrice(1.5);
+
+        // Encode and decode itemcase.
+        Itemcase decoded = BinaryFormat.decode(
+                BinaryFormat.encode(itemcase), world);
+
+        // Test shop is unchanged.
+        assertEquals(Type.SHOP_MULTI, decoded.getType());
+        assertEquals(StorageType.VIRTUAL, decoded.getStorageType());
+        assertEquals(5000000000L, decoded.getQuantity());
+        assertEquals(2.5, decoded.getBuyPrice(), 0);
+        assertEquals(1.5, decoded.getSellPrice(), 0);
+        assertEquals(itemcase.getItemStack(), decoded.getItemStack());
+    }
+
+    @Test
+    public void decodeStock_encodedVirtualStock_equal() throws Exception {
+
+        // Mock world.
+        World world = PowerMockito.mock(World.class);
+
+        // Mock owner.
+        OfflinePlayer owner = PowerMockito.mock(OfflinePlayer.class);
+
+        // Create shop with virtual storage.
+        Itemcase itemcase = new Itemcase(Type.SHOP_SELL,
+                new ItemStack(Material.DIAMOND), new Location(world, 5, 64,
+                        -5), owner);
+        itemcase.setStorageType(StorageType.VIRTUAL);
+        itemcase.setQuantity(42);
+
+        // Encode stock.
+        byte[] stock = BinaryFormat.encodeStock(itemcase);
+
+        // Change quantity, then set stock twice, as when replayed again.
+        itemcase.setQuantity(7);
+        BinaryFormat.decodeStock(stock, itemcase);
+        BinaryFormat.decodeStock(stock, itemcase);
+
+        // Test stock is unchanged and can be found by coordinates.
+        assertEquals(42, itemcase.getQuantity());
+        assertArrayEquals(new int[] {5, 64, -5},
+                BinaryFormat.decodeCoordinates(stock));
+    }
+
+    @Test
+    public void read_writtenRecords_equal() throws Exception {
+
+        // Create file.
+        File file = new File(this.folder.getRoot(), "world/itemcases.dat");
+
+        // Create records.
+        ArrayList<byte[]> records = new ArrayList<>(Arrays.asList(
+                new byte[] {1, 2, 3}, new byte[0], new byte[] {4}));
+
+        // Write records.
+        BinaryFormat.write(file, records);
+
+        // Read records.
+        ArrayList<byte[]> read = BinaryFormat.read(file);
+
+        // Test records are unchanged.
+        assertEquals(records.size(), read.size());
+        for(int i = 0; i < records.size(); i++) {
+            assertArrayEquals(records.get(i), read.get(i));
+        }
+    }
+
+    @Test
+    public void write_manyItemcases_smallerThanYaml() throws Exception {
+
+        // Number of itemcases.
+        int count = 300;
+
+        // Mock world.
+        World world = PowerMockito.mock(World.class);
+
+        // Mock owner.
+        UUID uuid = UUID.randomUUID();
+        OfflinePlayer owner = PowerMockito.mock(OfflinePlayer.class);
+        when(owner.getUniqueId()).thenReturn(uuid);
+
+        // Return owner when looked up, and items without meta.
+        PowerMockito.mockStatic(Bukkit.class);
+        when(Bukkit.getOfflinePlayer(uuid)).thenReturn(owner);
+        ItemFactory factory = PowerMockito.mock(ItemFactory.class);
+        when(factory.equals(null, null)).thenReturn(true);
+        when(Bukkit.getItemFactory()).thenReturn(factory);
+
+        // Create the same itemcases for both formats, half of them shops.
+        ArrayList<Itemcase> itemcases = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+
+            // Create itemcase.
+            Itemcase itemcase = new Itemcase(
+                    i % 2 == 0 ? Type.SHOWCASE : Type.SHOP_MULTI,
+                    new ItemStack(Material.DIAMOND), new Location(world,
+                            i % 100, 64, i / 100), owner);
+
+            // If itemcase is a shop.
+            if(itemcase.getType() == Type.SHOP_MULTI) {
+
+                // Set virtual storage and prices.
+                itemcase.setStorageType(StorageType.VIRTUAL);
+                itemcase.setQuantity(i);
+                itemcase.setBuyPrice(2.5);
+                itemcase.setSellPrice(1.5);
+            }
+
+            // Add itemcase.
+            itemcases.add(itemcase);
+        }
+
+        // Create files.
+        File binaryFile = new File(this.folder.getRoot(), "itemcases.dat");
+        File yamlFile = new File(this.folder.getRoot(), "itemcases.yml");
+
+        // Encode and write in binary.
+        ArrayList<byte[]> records = new ArrayList<>(count);
+        for(Itemcase itemcase : itemcases) {
+            records.add(BinaryFormat.encode(itemcase));
+        }
+        BinaryFormat.write(binaryFile, records);
+
+        // Read and decode binary.
+        ArrayList<Itemcase> binaryLoaded = new ArrayList<>(count);
+        for(byte[] record : BinaryFormat.read(binaryFile)) {
+            binaryLoaded.add(BinaryFormat.decode(record, world));
+        }
+
+        // Encode and write in YAML.
+        LinkedHashMap<String, Object> maps = new LinkedHashMap<>();
+        for(Itemcase itemcase : itemcases) {
+            maps.put(itemcase.getLocation().getBlockX() + "/" +
+                    itemcase.getLocation().getBlockY() + "/" +
+                    itemcase.getLocation().getBlockZ(),
+                    YamlFormat.encode(itemcase));
+        }
+        try(OutputStream output = new FileOutputStream(yamlFile)) {
+            YamlFormat.write(output, maps);
+        }
+
+        // Read and decode YAML.
+        LinkedHashMap<String, Object> sections = new LinkedHashMap<>();
+        YamlFormat.read(yamlFile, sections);
+        ArrayList<Itemcase> yamlLoaded = new ArrayList<>(count);
+        for(Entry<String, Object> entry : sections.entrySet()) {
+            yamlLoaded.add(YamlFormat.decode(entry.getKey(),
+                    (ConfigurationSection) entry.getValue(), world));
+        }
+
+        // Test both formats load every itemcase the same.
+        assertEquals(count, binaryLoaded.size());
+        assertEquals(count, yamlLoaded.size());
+        for(int i = 0; i < count; i++) {
+            assertEquals(itemcases.get(i).getQuantity(),
+                    binaryLoaded.get(i).getQuantity());
+            assertEquals(itemcases.get(i).getQuantity(),
+                    yamlLoaded.get(i).getQuantity());
+        }
+
+        // Test binary is smaller.
+        assertTrue(binaryFile.length() < yamlFile.length());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase.configurations;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit test for
+ * {@link com.gmail.bleedobsidian.itemcase.configurations.SnapshotFile}
+ *
+ * @author Jesse Prescott (BleedObsidian).
+ */
+public class SnapshotFileTest {
+
+    /**
+     * Temporary folder for test files.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void write_threeTimes_keepsNewestBackupsInOrder() throws Exception {
+
+        // Write three snapshots, keeping two backups.
+        File file = new File(this.folder.getRoot(), "itemcases.dat");
+        for(byte i = 1; i <= 3; i++) {
+            byte contents = i;
+            SnapshotFile.write(file, 2, 0, output -> output.write(contents));
+        }
+
+        // Get generations.
+        ArrayList<File> generations = SnapshotFile.getGenerations(file, 2);
+
+        // Check newest first.
+        assertEquals(3, generations.size());
+        assertArrayEquals(new byte[] {3},
+                Files.readAllBytes(generations.get(0).toPath()));
+        assertArrayEquals(new byte[] {2},
+                Files.readAllBytes(generations.get(1).toPath()));
+        assertArrayEquals(new byte[] {1},
+                Files.readAllBytes(generations.get(2).toPath()));
+
+        // Check temporary file was swapped in.
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void write_withinBackupInterval_keepsNoNewBackup() throws Exception {
+
+        // Write three snapshots, taking backups an hour apart.
+        File file = new File(this.folder.getRoot(), "itemcases.dat");
+        for(byte i = 1; i <= 3; i++) {
+            byte contents = i;
+            SnapshotFile.write(file, 2, 3600000,
+                    output -> output.write(contents));
+        }
+
+        // Get generations.
+        ArrayList<File> generations = SnapshotFile.getGenerations(file, 2);
+
+        // Check only the first file was kept as a backup.
+        assertEquals(2, generations.size());
+        assertArrayEquals(new byte[] {3},
+                Files.readAllBytes(generations.get(0).toPath()));
+        assertArrayEquals(new byte[] {1},
+                Files.readAllBytes(generations.get(1).toPath()));
+    }
+
+    @Test
+    public void getGenerations_missingFile_empty() {
+
+        // Get generations of a file that was never written.
+        File file = new File(this.folder.getRoot(), "itemcases.dat");
+
+        // Check empty.
+        assertEquals(0, SnapshotFile.getGenerations(file, 3).size());
+    }
+}
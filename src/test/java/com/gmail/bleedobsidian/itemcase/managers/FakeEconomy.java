@@ -0,0 +1,379 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase.managers;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import net.milkbowl.vault.economy.Economy;
+import net.milkbowl.vault.economy.EconomyResponse;
+import net.milkbowl.vault.economy.EconomyResponse.ResponseType;
+import org.bukkit.OfflinePlayer;
+
+/**
+ * An in-memory economy for tests, where every call takes a set time like an
+ * economy plugin backed by a database, and deposits to chosen accounts can
+ * be made to fail. Only player accounts by OfflinePlayer are supported.
+ *
+ * @author Jesse Prescott (BleedObsidian).
+ */
+public final class FakeEconomy implements Economy {
+
+    /**
+     * Balance of every account.
+     */
+    private final ConcurrentHashMap<UUID, Double> balances =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Accounts that deposits fail for.
+     */
+    private final Set<UUID> failingDeposits = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The time in milliseconds every call takes.
+     */
+    private volatile long latency;
+
+    /**
+     * The thread the last call was made on.
+     */
+    private volatile Thread lastThread;
+
+    /**
+     * Constructor.
+     *
+     * @param latency The time in milliseconds every call takes.
+     */
+    public FakeEconomy(long latency) {
+
+        // Set latency.
+        this.latency = latency;
+    }
+
+    /**
+     * @param player Player.
+     * @param balance Balance.
+     */
+    public void setBalance(OfflinePlayer player, double balance) {
+
+        // Set balance.
+        this.balances.put(player.getUniqueId(), balance);
+    }
+
+    /**
+     * @param player Player.
+     * @param failing If deposits to the given player should fail.
+     */
+    public void setFailingDeposits(OfflinePlayer player, boolean failing) {
+
+        // If failing.
+        if(failing) {
+            this.failingDeposits.add(player.getUniqueId());
+        } else {
+            this.failingDeposits.remove(player.getUniqueId());
+        }
+    }
+
+    /**
+     * @return The thread the last call was made on.
+     */
+    public Thread getLastThread() {
+
+        // Return thread.
+        return this.lastThread;
+    }
+
+    /**
+     * Wait for the latency, as a slow economy plugin would.
+     */
+    private void call() {
+
+        // Record thread.
+        this.lastThread = Thread.currentThread();
+
+        // Attempt to wait.
+        try {
+
+            // Wait.
+            Thread.sleep(this.latency);
+
+        } catch (InterruptedException e) {
+
+            // Restore interrupt.
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return "Fake";
+    }
+
+    @Override
+    public boolean hasBankSupport() {
+        return false;
+    }
+
+    @Override
+    public int fractionalDigits() {
+        return 2;
+    }
+
+    @Override
+    public String format(double amount) {
+        return String.format("%.2f", amount);
+    }
+
+    @Override
+    public String currencyNamePlural() {
+        return "";
+    }
+
+    @Override
+    public String currencyNameSingular() {
+        return "";
+    }
+
+    @Override
+    public boolean hasAccount(String playerName) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean hasAccount(OfflinePlayer player) {
+        this.call();
+        return this.balances.containsKey(player.getUniqueId());
+    }
+
+    @Override
+    public boolean hasAccount(String playerName, String worldName) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean hasAccount(OfflinePlayer player, String worldName) {
+        return this.hasAccount(player);
+    }
+
+    @Override
+    public double getBalance(String playerName) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public double getBalance(OfflinePlayer player) {
+        this.call();
+        return this.balances.getOrDefault(player.getUniqueId(), 0d);
+    }
+
+    @Override
+    public double getBalance(String playerName, String world) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public double getBalance(OfflinePlayer player, String world) {
+        return this.getBalance(player);
+    }
+
+    @Override
+    public boolean has(String playerName, double amount) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean has(OfflinePlayer player, double amount) {
+        return this.getBalance(player) >= amount;
+    }
+
+    @Override
+    public boolean has(String playerName, String worldName, double amount) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean has(OfflinePlayer player, String worldName,
+            double amount) {
+        return this.has(player, amount);
+    }
+
+    @Override
+    public EconomyResponse withdrawPlayer(String playerName, double amount) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public EconomyResponse withdrawPlayer(OfflinePlayer player,
+            double amount) {
+
+        // Wait.
+        this.call();
+
+        // Get balance.
+        double balance = this.balances.getOrDefault(player.getUniqueId(), 0d);
+
+        // If not enough money.
+        if(balance < amount) {
+            return new EconomyResponse(0, balance, ResponseType.FAILURE,
+                    "Insufficient funds");
+        }
+
+        // Take money.
+        this.balances.put(player.getUniqueId(), balance - amount);
+        return new EconomyResponse(amount, balance - amount,
+                ResponseType.SUCCESS, null);
+    }
+
+    @Override
+    public EconomyResponse withdrawPlayer(String playerName, String worldName,
+            double amount) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public EconomyResponse withdrawPlayer(OfflinePlayer player,
+            String worldName, double amount) {
+        return this.withdrawPlayer(player, amount);
+    }
+
+    @Override
+    public EconomyResponse depositPlayer(String playerName, double amount) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public EconomyResponse depositPlayer(OfflinePlayer player,
+            double amount) {
+
+        // Wait.
+        this.call();
+
+        // Get balance.
+        double balance = this.balances.getOrDefault(player.getUniqueId(), 0d);
+
+        // If deposits to this account fail.
+        if(this.failingDeposits.contains(player.getUniqueId())) {
+            return new EconomyResponse(0, balance, ResponseType.FAILURE,
+                    "Deposit failed");
+        }
+
+        // Give money.
+        this.balances.put(player.getUniqueId(), balance + amount);
+        return new EconomyResponse(amount, balance + amount,
+                ResponseType.SUCCESS, null);
+    }
+
+    @Override
+    public EconomyResponse depositPlayer(String playerName, String worldName,
+            double amount) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public EconomyResponse depositPlayer(OfflinePlayer player,
+            String worldName, double amount) {
+        return this.depositPlayer(player, amount);
+    }
+
+    @Override
+    public EconomyResponse createBank(String name, String player) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public EconomyResponse createBank(String name, OfflinePlayer player) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public EconomyResponse deleteBank(String name) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public EconomyResponse bankBalance(String name) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public EconomyResponse bankHas(String name, double amount) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public EconomyResponse bankWithdraw(String name, double amount) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public EconomyResponse bankDeposit(String name, double amount) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public EconomyResponse isBankOwner(String name, String playerName) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public EconomyResponse isBankOwner(String name, OfflinePlayer player) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public EconomyResponse isBankMember(String name, String playerName) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public EconomyResponse isBankMember(String name, OfflinePlayer player) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<String> getBanks() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean createPlayerAccount(String playerName) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean createPlayerAccount(OfflinePlayer player) {
+        this.call();
+        return this.balances.putIfAbsent(player.getUniqueId(), 0d) == null;
+    }
+
+    @Override
+    public boolean createPlayerAccount(String playerName, String worldName) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean createPlayerAccount(OfflinePlayer player,
+            String worldName) {
+        return this.createPlayerAccount(player);
+    }
+}
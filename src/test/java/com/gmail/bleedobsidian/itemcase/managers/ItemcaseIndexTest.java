@@ -0,0 +1,238 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase.managers;
+
+import com.gmail.bleedobsidian.itemcase.Itemcase;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+/**
+ * Unit test for {@link com.gmail.bleedobsidian.itemcase.managers.ItemcaseIndex}
+ *
+ * @author Jesse Prescott (BleedObsidian).
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(Itemcase.class)
+public class ItemcaseIndexTest {
+
+    /**
+     * Creates a mock location.
+     *
+     * @param world World.
+     * @param x Block X.
+     * @param y Block Y.
+     * @param z Block Z.
+     * @return Location.
+     */
+    private Location createLocation(World world, int x, int y, int z) {
+
+        // Mock location.
+        Location location = PowerMockito.mock(Location.class);
+
+        // Return world and block coordinates.
+        when(location.getWorld()).thenReturn(world);
+        when(location.getBlockX()).thenReturn(x);
+        when(location.getBlockY()).thenReturn(y);
+        when(location.getBlockZ()).thenReturn(z);
+
+        // Return location.
+        return location;
+    }
+
+    /**
+     * Creates a mock location of a block of the given material.
+     *
+     * @param world World.
+     * @param x Block X.
+     * @param y Block Y.
+     * @param z Block Z.
+     * @param type Material.
+     * @return Location.
+     */
+    private Location createLocation(World world, int x, int y, int z,
+            Material type) {
+
+        // Mock location.
+        Location location = this.createLocation(world, x, y, z);
+
+        // Mock block.
+        Block block = PowerMockito.mock(Block.class);
+
+        // Return material.
+        when(block.getType()).thenReturn(type);
+
+        // Return mock block.
+        when(location.getBlock()).thenReturn(block);
+
+        // Return location.
+        return location;
+    }
+
+    /**
+     * Creates a mock itemcase at the given location.
+     *
+     * @param location Location.
+     * @return Itemcase.
+     */
+    private Itemcase createItemcase(Location location) {
+
+        // Mock itemcase.
+        Itemcase itemcase = PowerMockito.mock(Itemcase.class);
+
+        // Return location.
+        when(itemcase.getLocation()).thenReturn(location);
+
+        // Return itemcase.
+        return itemcase;
+    }
+
+    @Test
+    public void toBlockKey_neighbouringBlocks_unique() {
+
+        // Keys of a block and each of its neighbours.
+        long key = ItemcaseIndex.toBlockKey(-1, 64, -1);
+
+        // Test every axis changes the key.
+        assertNotEquals(key, ItemcaseIndex.toBlockKey(0, 64, -1));
+        assertNotEquals(key, ItemcaseIndex.toBlockKey(-1, 65, -1));
+        assertNotEquals(key, ItemcaseIndex.toBlockKey(-1, 64, 0));
+
+        // Test axes are not interchangeable.
+        assertNotEquals(ItemcaseIndex.toBlockKey(1, 2, 3),
+                ItemcaseIndex.toBlockKey(3, 2, 1));
+    }
+
+    @Test
+    public void get_indexedLocation_pass() {
+
+        // Mock world.
+        World world = PowerMockito.mock(World.class);
+
+        // Create index and itemcase.
+        ItemcaseIndex index = new ItemcaseIndex();
+        Itemcase itemcase = this.createItemcase(
+                this.createLocation(world, 10, 70, -30000000, Material.STEP));
+
+        // Add itemcase.
+        index.add(itemcase);
+
+        // Test itemcase is found from a different location instance.
+        assertEquals(itemcase,
+                index.get(this.createLocation(world, 10, 70, -30000000)));
+
+        // Test nearby block is not an itemcase.
+        assertFalse(index.contains(
+                this.createLocation(world, 10, 71, -30000000)));
+
+        // Test same block in another world is not an itemcase.
+        assertNull(index.get(this.createLocation(
+                PowerMockito.mock(World.class), 10, 70, -30000000)));
+
+        // Test view contains itemcase.
+        assertEquals(1, index.getItemcases().size());
+        assertTrue(index.getItemcases().contains(itemcase));
+
+        // Remove itemcase.
+        assertTrue(index.remove(itemcase));
+
+        // Test itemcase is gone.
+        assertTrue(index.getItemcases().isEmpty());
+    }
+
+    @Test
+    public void isProtected_nonSlab_blockAboveProtected() {
+
+        // Mock world with a loaded chunk.
+        World world = PowerMockito.mock(World.class);
+        when(world.isChunkLoaded(0, 0)).thenReturn(true);
+
+        // Create index.
+        ItemcaseIndex index = new ItemcaseIndex();
+
+        // Create a slab itemcase and a non-slab itemcase.
+        Itemcase slab = this.createItemcase(
+                this.createLocation(world, 0, 64, 0, Material.STEP));
+        Itemcase chest = this.createItemcase(
+                this.createLocation(world, 5, 64, 5, Material.CHEST));
+
+        // Add itemcases.
+        index.add(slab);
+        index.add(chest);
+
+        // Test itemcase blocks are protected.
+        assertTrue(index.isProtected(this.createLocation(world, 0, 64, 0)));
+        assertTrue(index.isProtected(this.createLocation(world, 5, 64, 5)));
+
+        // Test only the block above the non-slab is protected.
+        assertFalse(index.isProtected(this.createLocation(world, 0, 65, 0)));
+        assertTrue(index.isProtected(this.createLocation(world, 5, 65, 5)));
+
+        // Remove non-slab itemcase.
+        index.remove(chest);
+
+        // Test its blocks are no longer protected.
+        assertFalse(index.isProtected(this.createLocation(world, 5, 64, 5)));
+        assertFalse(index.isProtected(this.createLocation(world, 5, 65, 5)));
+    }
+
+    @Test
+    public void settleProtection_unloadedSlab_chunkNotLoaded() {
+
+        // Mock world with an unloaded chunk.
+        World world = PowerMockito.mock(World.class);
+
+        // Create index and slab itemcase.
+        ItemcaseIndex index = new ItemcaseIndex();
+        Location location = this.createLocation(world, 0, 64, 0,
+                Material.STEP);
+        Itemcase slab = this.createItemcase(location);
+
+        // Add itemcase.
+        index.add(slab);
+
+        // Test block above is protected without reading the block.
+        assertTrue(index.isProtected(this.createLocation(world, 0, 65, 0)));
+        verify(location, never()).getBlock();
+
+        // Load chunk.
+        when(world.isChunkLoaded(0, 0)).thenReturn(true);
+        index.settleProtection(slab);
+
+        // Test block above is no longer protected.
+        assertTrue(index.isProtected(this.createLocation(world, 0, 64, 0)));
+        assertFalse(index.isProtected(this.createLocation(world, 0, 65, 0)));
+
+        // Remove itemcase.
+        index.remove(slab);
+
+        // Test nothing is protected.
+        assertFalse(index.isProtected(this.createLocation(world, 0, 64, 0)));
+    }
+}
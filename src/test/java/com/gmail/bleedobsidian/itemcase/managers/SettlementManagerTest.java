@@ -0,0 +1,210 @@
+/*
+ * ItemCase is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+package com.gmail.bleedobsidian.itemcase.managers;
+
+import com.gmail.bleedobsidian.itemcase.managers.SettlementManager.Result;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import org.bukkit.OfflinePlayer;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit test for
+ * {@link com.gmail.bleedobsidian.itemcase.managers.SettlementManager}
+ *
+ * @author Jesse Prescott (BleedObsidian).
+ */
+public class SettlementManagerTest {
+
+    /**
+     * Creates a mock player.
+     *
+     * @return OfflinePlayer.
+     */
+    private OfflinePlayer createPlayer() {
+
+        // Mock player with a random UUID.
+        OfflinePlayer player = mock(OfflinePlayer.class);
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+
+        // Return player.
+        return player;
+    }
+
+    @Test
+    public void transfer_slowEconomy_settledOnWorker() {
+
+        // Create economy that takes 200ms per call.
+        FakeEconomy economy = new FakeEconomy(200);
+        OfflinePlayer from = this.createPlayer();
+        OfflinePlayer to = this.createPlayer();
+        economy.setBalance(from, 10);
+
+        // Create manager with worker thread.
+        SettlementManager manager = new SettlementManager(economy,
+                Executors.newSingleThreadExecutor());
+
+        // Transfer.
+        AtomicReference<Result> result = new AtomicReference<>();
+        long start = System.nanoTime();
+        manager.transfer(from.getUniqueId(), from, to, "world", 4,
+                result::set);
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        // Caller was not held up and is still settling.
+        assertTrue(elapsed < 200);
+        assertNull(result.get());
+        assertTrue(manager.isSettling(from.getUniqueId()));
+
+        // Finish.
+        manager.close();
+
+        // Money was moved on another thread.
+        assertEquals(Result.SUCCESS, result.get());
+        assertEquals(6, economy.getBalance(from), 0);
+        assertEquals(4, economy.getBalance(to), 0);
+        assertNotSame(Thread.currentThread(), economy.getLastThread());
+        assertFalse(manager.isSettling(from.getUniqueId()));
+    }
+
+    @Test
+    public void transfer_sameThread_settledImmediately() {
+
+        // Create economy and players.
+        FakeEconomy economy = new FakeEconomy(0);
+        OfflinePlayer from = this.createPlayer();
+        OfflinePlayer to = this.createPlayer();
+        economy.setBalance(from, 10);
+
+        // Create manager that settles on the calling thread.
+        SettlementManager manager = new SettlementManager(economy,
+                Runnable::run);
+
+        // Transfer.
+        AtomicReference<Result> result = new AtomicReference<>();
+        manager.transfer(from.getUniqueId(), from, to, "world", 4,
+                result::set);
+
+        // Settled before returning.
+        assertEquals(Result.SUCCESS, result.get());
+        assertSame(Thread.currentThread(), economy.getLastThread());
+        assertFalse(manager.isSettling(from.getUniqueId()));
+    }
+
+    @Test
+    public void transfer_insufficientFunds_nothingMoved() {
+
+        // Create economy and players.
+        FakeEconomy economy = new FakeEconomy(0);
+        OfflinePlayer from = this.createPlayer();
+        OfflinePlayer to = this.createPlayer();
+        economy.setBalance(from, 3);
+
+        // Create manager.
+        SettlementManager manager = new SettlementManager(economy,
+                Runnable::run);
+
+        // Transfer more than payer has.
+        AtomicReference<Result> result = new AtomicReference<>();
+        manager.transfer(from.getUniqueId(), from, to, "world", 4,
+                result::set);
+
+        // Nothing was moved.
+        assertEquals(Result.INSUFFICIENT_FUNDS, result.get());
+        assertEquals(3, economy.getBalance(from), 0);
+        assertEquals(0, economy.getBalance(to), 0);
+    }
+
+    @Test
+    public void transfer_depositFails_payerRefunded() {
+
+        // Create economy where deposits to payee fail.
+        FakeEconomy economy = new FakeEconomy(0);
+        OfflinePlayer from = this.createPlayer();
+        OfflinePlayer to = this.createPlayer();
+        economy.setBalance(from, 10);
+        economy.setFailingDeposits(to, true);
+
+        // Create manager.
+        SettlementManager manager = new SettlementManager(economy,
+                Runnable::run);
+
+        // Transfer.
+        AtomicReference<Result> result = new AtomicReference<>();
+        manager.transfer(from.getUniqueId(), from, to, "world", 4,
+                result::set);
+
+        // Payer got money back.
+        assertEquals(Result.FAILED, result.get());
+        assertEquals(10, economy.getBalance(from), 0);
+        assertEquals(0, economy.getBalance(to), 0);
+    }
+
+    @Test
+    public void transfer_depositAndRefundFail_unrecovered() {
+
+        // Create economy where every deposit fails.
+        FakeEconomy economy = new FakeEconomy(0);
+        OfflinePlayer from = this.createPlayer();
+        OfflinePlayer to = this.createPlayer();
+        economy.setBalance(from, 10);
+        economy.setFailingDeposits(to, true);
+        economy.setFailingDeposits(from, true);
+
+        // Create manager.
+        SettlementManager manager = new SettlementManager(economy,
+                Runnable::run);
+
+        // Transfer.
+        AtomicReference<Result> result = new AtomicReference<>();
+        manager.transfer(from.getUniqueId(), from, to, "world", 4,
+                result::set);
+
+        // Money is stuck.
+        assertEquals(Result.UNRECOVERED, result.get());
+        assertEquals(6, economy.getBalance(from), 0);
+        assertEquals(0, economy.getBalance(to), 0);
+    }
+
+    @Test
+    public void transfer_noPayer_onlyDeposited() {
+
+        // Create economy and player.
+        FakeEconomy economy = new FakeEconomy(0);
+        OfflinePlayer to = this.createPlayer();
+
+        // Create manager.
+        SettlementManager manager = new SettlementManager(economy,
+                Runnable::run);
+
+        // Transfer from nowhere, as an infinite itemcase does.
+        AtomicReference<Result> result = new AtomicReference<>();
+        manager.transfer(to.getUniqueId(), null, to, "world", 4,
+                result::set);
+
+        // Money was given.
+        assertEquals(Result.SUCCESS, result.get());
+        assertEquals(4, economy.getBalance(to), 0);
+    }
+}